@@ -0,0 +1,154 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Writes every {@code @PreInit} and {@code @PostInit} method to {@value #INDEX}, sorted so each method comes after the
+ * init methods of the classes it depends on. ReflectInit runs the methods from the index instead of scanning the
+ * classpath for them.
+ */
+@SupportedAnnotationTypes({ InitIndexProcessor.PRE_INIT, InitIndexProcessor.POST_INIT })
+public class InitIndexProcessor extends AbstractProcessor {
+    public static final String INDEX = "META-INF/meteor-init.idx";
+
+    static final String PRE_INIT = "meteordevelopment.meteorclient.utils.PreInit";
+    static final String POST_INIT = "meteordevelopment.meteorclient.utils.PostInit";
+
+    private final Map<String, List<Init>> inits = new HashMap<>();
+    private final List<Element> originatingElements = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        for (TypeElement annotation : annotations) {
+            String annotationName = annotation.getQualifiedName().toString();
+
+            for (Element element : round.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.METHOD) continue;
+
+                ExecutableElement method = (ExecutableElement) element;
+                Set<Modifier> modifiers = method.getModifiers();
+
+                if (!modifiers.contains(Modifier.PUBLIC) || !modifiers.contains(Modifier.STATIC) || !method.getParameters().isEmpty()) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Init methods have to be public, static and take no parameters.", method);
+                    continue;
+                }
+
+                TypeElement owner = (TypeElement) method.getEnclosingElement();
+
+                inits.computeIfAbsent(annotationName, name -> new ArrayList<>()).add(new Init(
+                    getBinaryName(owner),
+                    method.getSimpleName().toString(),
+                    getDependencies(method, annotationName)
+                ));
+
+                originatingElements.add(owner);
+            }
+        }
+
+        if (round.processingOver() && !inits.isEmpty()) write();
+        return false;
+    }
+
+    private List<String> getDependencies(ExecutableElement method, String annotationName) {
+        List<String> dependencies = new ArrayList<>();
+
+        for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            if (!((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) continue;
+
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                if (!entry.getKey().getSimpleName().contentEquals("dependencies")) continue;
+
+                @SuppressWarnings("unchecked")
+                List<? extends AnnotationValue> values = (List<? extends AnnotationValue>) entry.getValue().getValue();
+
+                for (AnnotationValue value : values) {
+                    TypeMirror type = (TypeMirror) value.getValue();
+                    dependencies.add(getBinaryName((TypeElement) ((DeclaredType) type).asElement()));
+                }
+            }
+        }
+
+        return dependencies;
+    }
+
+    private String getBinaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private void write() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX, originatingElements.toArray(new Element[0]));
+
+            try (Writer writer = file.openWriter()) {
+                writer.write("# Generated by " + getClass().getName() + ", init methods in the order they run\n");
+
+                write(writer, "pre", inits.get(PRE_INIT));
+                write(writer, "post", inits.get(POST_INIT));
+            }
+        }
+        catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write " + INDEX + ": " + e);
+        }
+    }
+
+    private static void write(Writer writer, String phase, List<Init> inits) throws IOException {
+        if (inits == null) return;
+
+        for (Init init : sort(inits)) {
+            writer.write(phase + " " + init.owner + " " + init.method + "\n");
+        }
+    }
+
+    /** Orders the methods so dependencies run first, ties are sorted by name so the index doesn't change between builds. */
+    private static List<Init> sort(List<Init> inits) {
+        List<Init> byName = new ArrayList<>(inits);
+        byName.sort(Comparator.comparing((Init init) -> init.owner).thenComparing(init -> init.method));
+
+        Map<String, List<Init>> byOwner = new HashMap<>();
+        for (Init init : byName) byOwner.computeIfAbsent(init.owner, owner -> new ArrayList<>()).add(init);
+
+        List<Init> sorted = new ArrayList<>(inits.size());
+        Set<Init> visited = new HashSet<>();
+
+        for (Init init : byName) visit(init, byOwner, visited, sorted);
+
+        return sorted;
+    }
+
+    private static void visit(Init init, Map<String, List<Init>> byOwner, Set<Init> visited, List<Init> sorted) {
+        // Marked before its dependencies, so a cycle runs in the order it was entered like the runtime scan did
+        if (!visited.add(init)) return;
+
+        for (String dependency : init.dependencies) {
+            for (Init other : byOwner.getOrDefault(dependency, Collections.emptyList())) {
+                visit(other, byOwner, visited, sorted);
+            }
+        }
+
+        sorted.add(init);
+    }
+
+    private record Init(String owner, String method, List<String> dependencies) {}
+}
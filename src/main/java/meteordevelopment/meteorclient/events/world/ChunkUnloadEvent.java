@@ -0,0 +1,19 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.events.world;
+
+public class ChunkUnloadEvent {
+    private static final ChunkUnloadEvent INSTANCE = new ChunkUnloadEvent();
+
+    public int x, z;
+
+    public static ChunkUnloadEvent get(int x, int z) {
+        INSTANCE.x = x;
+        INSTANCE.z = z;
+
+        return INSTANCE;
+    }
+}
@@ -29,13 +29,7 @@ public abstract class BlockMixin extends AbstractBlock implements ItemConvertibl
 
     @ModifyReturnValue(method = "shouldDrawSide", at = @At("RETURN"))
     private static boolean onShouldDrawSide(boolean original, BlockState state, BlockView world, BlockPos pos, Direction side, BlockPos blockPos) {
-        Xray xray = Modules.get().get(Xray.class);
-
-        if (xray.isActive()) {
-            return xray.modifyDrawSide(state, world, pos, side, original);
-        }
-
-        return original;
+        return Xray.modifyDrawSide(state, world, pos, side, original);
     }
 
     @ModifyReturnValue(method = "getSlipperiness", at = @At("RETURN"))
@@ -18,6 +18,7 @@ import meteordevelopment.meteorclient.events.packets.ContainerSlotUpdateEvent;
 import meteordevelopment.meteorclient.events.packets.InventoryEvent;
 import meteordevelopment.meteorclient.events.packets.PlaySoundPacketEvent;
 import meteordevelopment.meteorclient.events.world.ChunkDataEvent;
+import meteordevelopment.meteorclient.events.world.ChunkUnloadEvent;
 import meteordevelopment.meteorclient.mixininterface.IExplosionS2CPacket;
 import meteordevelopment.meteorclient.systems.config.Config;
 import meteordevelopment.meteorclient.systems.modules.Modules;
@@ -89,6 +90,11 @@ public abstract class ClientPlayNetworkHandlerMixin {
         MeteorClient.EVENT_BUS.post(ChunkDataEvent.get(chunk));
     }
 
+    @Inject(method = "onUnloadChunk", at = @At("TAIL"))
+    private void onUnloadChunk(UnloadChunkS2CPacket packet, CallbackInfo info) {
+        MeteorClient.EVENT_BUS.post(ChunkUnloadEvent.get(packet.getX(), packet.getZ()));
+    }
+
     @Inject(method = "onScreenHandlerSlotUpdate", at = @At("TAIL"))
     private void onContainerSlotUpdate(ScreenHandlerSlotUpdateS2CPacket packet, CallbackInfo info) {
         MeteorClient.EVENT_BUS.post(ContainerSlotUpdateEvent.get(packet));
@@ -35,7 +35,7 @@ public class FluidRendererMixin {
         }
         else {
             // Xray and Wallhack
-            int alpha = Xray.getAlpha(fluidState.getBlockState(), pos);
+            int alpha = Xray.getAlpha(fluidState.getBlockState(), world, pos);
 
             if (alpha == 0) info.cancel();
             else alphas.set(alpha);
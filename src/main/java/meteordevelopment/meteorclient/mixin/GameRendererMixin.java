@@ -12,6 +12,7 @@ import meteordevelopment.meteorclient.events.render.Render3DEvent;
 import meteordevelopment.meteorclient.events.render.RenderAfterWorldEvent;
 import meteordevelopment.meteorclient.mixininterface.IVec3d;
 import meteordevelopment.meteorclient.renderer.Renderer3D;
+import meteordevelopment.meteorclient.systems.config.Config;
 import meteordevelopment.meteorclient.systems.modules.Modules;
 import meteordevelopment.meteorclient.systems.modules.player.LiquidInteract;
 import meteordevelopment.meteorclient.systems.modules.player.NoMiningTrace;
@@ -64,6 +65,8 @@ public abstract class GameRendererMixin {
         RenderUtils.updateScreenCenter();
         NametagUtils.onRender(matrices, matrix4f);
 
+        renderer.culling.update(matrices.peek().getPositionMatrix(), matrix4f, camera.getPos().x, camera.getPos().y, camera.getPos().z, Config.get().cullDistance.get());
+
         renderer.begin();
         MeteorClient.EVENT_BUS.post(event);
         renderer.render(matrices);
@@ -16,6 +16,7 @@ import meteordevelopment.meteorclient.events.game.WindowResizedEvent;
 import meteordevelopment.meteorclient.events.world.TickEvent;
 import meteordevelopment.meteorclient.gui.WidgetScreen;
 import meteordevelopment.meteorclient.mixininterface.IMinecraftClient;
+import meteordevelopment.meteorclient.renderer.StreamBuffer;
 import meteordevelopment.meteorclient.systems.config.Config;
 import meteordevelopment.meteorclient.systems.modules.Modules;
 import meteordevelopment.meteorclient.systems.modules.player.FastUse;
@@ -177,6 +178,9 @@ public abstract class MinecraftClientMixin implements IMinecraftClient {
 
         Utils.frameTime = (time - lastTime) / 1000.0;
         lastTime = time;
+        Utils.frameCount++;
+
+        StreamBuffer.nextFrame();
     }
 
     // Interface
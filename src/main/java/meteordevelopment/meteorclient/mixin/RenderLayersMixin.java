@@ -21,7 +21,7 @@ public class RenderLayersMixin {
     private static void onGetBlockLayer(BlockState state, CallbackInfoReturnable<RenderLayer> info) {
         if (Modules.get() == null) return;
 
-        int alpha = Xray.getAlpha(state, null);
+        int alpha = Xray.getAlpha(state, null, null);
         if (alpha > 0 && alpha < 255) info.setReturnValue(RenderLayer.getTranslucent());
     }
 }
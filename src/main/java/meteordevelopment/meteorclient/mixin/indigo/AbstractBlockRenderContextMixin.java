@@ -23,7 +23,7 @@ public class AbstractBlockRenderContextMixin {
 
     @Inject(method = "renderQuad", at = @At(value = "INVOKE", target = "Lnet/fabricmc/fabric/impl/client/indigo/renderer/render/AbstractBlockRenderContext;bufferQuad(Lnet/fabricmc/fabric/impl/client/indigo/renderer/mesh/MutableQuadViewImpl;Lnet/minecraft/client/render/VertexConsumer;)V"), cancellable = true)
     private void onBufferQuad(MutableQuadViewImpl quad, boolean isVanilla, CallbackInfo ci) {
-        int alpha = Xray.getAlpha(blockInfo.blockState, blockInfo.blockPos);
+        int alpha = Xray.getAlpha(blockInfo.blockState, blockInfo.blockView, blockInfo.blockPos);
 
         if (alpha == 0) ci.cancel();
         else if (alpha != -1) {
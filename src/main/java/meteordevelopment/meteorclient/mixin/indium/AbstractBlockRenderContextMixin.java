@@ -22,7 +22,7 @@ public class AbstractBlockRenderContextMixin {
 
     @Inject(method = "renderQuad(Llink/infra/indium/renderer/mesh/MutableQuadViewImpl;Z)V", at = @At(value = "INVOKE", target = "Llink/infra/indium/renderer/render/AbstractBlockRenderContext;bufferQuad(Llink/infra/indium/renderer/mesh/MutableQuadViewImpl;Lme/jellysquid/mods/sodium/client/render/chunk/terrain/material/Material;)V"), cancellable = true)
     private void onBufferQuad(MutableQuadViewImpl quad, boolean isVanilla, CallbackInfo ci) {
-        int alpha = Xray.getAlpha(blockInfo.blockState, blockInfo.blockPos);
+        int alpha = Xray.getAlpha(blockInfo.blockState, blockInfo.blockView, blockInfo.blockPos);
 
         if (alpha == 0) ci.cancel();
     }
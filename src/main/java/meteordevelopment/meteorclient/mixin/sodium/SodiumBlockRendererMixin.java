@@ -18,7 +18,7 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 public class SodiumBlockRendererMixin {
     @Inject(method = "renderModel", at = @At("HEAD"), cancellable = true)
     private void onRenderModel(BlockRenderContext ctx, ChunkBuildBuffers buffers, CallbackInfo info) {
-        int alpha = Xray.getAlpha(ctx.state(), ctx.pos());
+        int alpha = Xray.getAlpha(ctx.state(), ctx.world(), ctx.pos());
 
         if (alpha == 0) info.cancel();
     }
@@ -44,7 +44,7 @@ public class SodiumFluidRendererMixin {
 
     @Inject(method = "render", at = @At("HEAD"), cancellable = true)
     private void onRender(WorldSlice world, FluidState fluidState, BlockPos blockPos, BlockPos offset, ChunkBuildBuffers buffers, CallbackInfo info) {
-        int alpha = Xray.getAlpha(fluidState.getBlockState(), blockPos);
+        int alpha = Xray.getAlpha(fluidState.getBlockState(), world, blockPos);
 
         if (alpha == 0) info.cancel();
     }
@@ -43,7 +43,7 @@ public class SodiumLightDataAccessMixin {
     private int compute_modifyBL(int light) {
         if (xray.isActive()) {
             BlockState state = world.getBlockState(pos);
-            if (!xray.isBlocked(state.getBlock(), pos)) return FULL_LIGHT;
+            if (!Xray.isBlocked(state, world, pos)) return FULL_LIGHT;
         }
 
         return light;
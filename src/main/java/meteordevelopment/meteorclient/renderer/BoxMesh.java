@@ -0,0 +1,308 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.renderer;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import meteordevelopment.meteorclient.utils.render.color.Color;
+import meteordevelopment.meteorclient.utils.world.Dir;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.math.Vec3d;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+
+import static meteordevelopment.meteorclient.MeteorClient.mc;
+import static org.lwjgl.opengl.GL32C.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+/**
+ * Axis aligned boxes drawn as instances of a single unit cube. Each box is one 36 byte record (min, max, side color,
+ * line color and exclude mask) instead of 8 full vertices and up to 36 indices.
+ */
+public class BoxMesh {
+    // Corners of the unit cube, bit 0 is x, bit 1 is y and bit 2 is z
+    private static final int BLB = 0b000, BRB = 0b001, TLB = 0b010, TRB = 0b011;
+    private static final int BLF = 0b100, BRF = 0b101, TLF = 0b110, TRF = 0b111;
+
+    // Pass bits stored next to the Dir bits, a box without lines or sides excludes the whole pass
+    private static final int NO_LINES = 1 << 7;
+    private static final int NO_SIDES = 1 << 8;
+
+    // Two corners and the faces the edge is shared by
+    private static final int[][] EDGES = {
+        // Bottom to top
+        { BLB, TLB, Dir.WEST | Dir.NORTH },
+        { BLF, TLF, Dir.WEST | Dir.SOUTH },
+        { BRB, TRB, Dir.EAST | Dir.NORTH },
+        { BRF, TRF, Dir.EAST | Dir.SOUTH },
+
+        // Bottom loop
+        { BLB, BLF, Dir.WEST | Dir.DOWN },
+        { BRB, BRF, Dir.EAST | Dir.DOWN },
+        { BLB, BRB, Dir.NORTH | Dir.DOWN },
+        { BLF, BRF, Dir.SOUTH | Dir.DOWN },
+
+        // Top loop
+        { TLB, TLF, Dir.WEST | Dir.UP },
+        { TRB, TRF, Dir.EAST | Dir.UP },
+        { TLB, TRB, Dir.NORTH | Dir.UP },
+        { TLF, TRF, Dir.SOUTH | Dir.UP }
+    };
+
+    // Four corners and the face itself, same winding as Renderer3D
+    private static final int[][] FACES = {
+        { BLB, BLF, TLF, TLB, Dir.WEST },
+        { BRB, TRB, TRF, BRF, Dir.EAST },
+        { BLB, TLB, TRB, BRB, Dir.NORTH },
+        { BLF, BRF, TRF, TLF, Dir.SOUTH },
+        { BLB, BRB, BRF, BLF, Dir.DOWN },
+        { TLB, TLF, TRF, TRB, Dir.UP }
+    };
+
+    private static final int CUBE_STRIDE = 16;
+    private static final int LINE_VERTICES = EDGES.length * 2;
+    private static final int SIDE_VERTICES = FACES.length * 6;
+
+    private static final int INSTANCE_STRIDE = 36;
+
+    // Shared by every box mesh, created on first use
+    private static int cubeVbo;
+
+    public boolean depthTest = false;
+
+    private final int vao;
+    private final StreamBuffer instances;
+    private long instancesOffset = -1;
+
+    private long instancesCapacity;
+    private long instancesPointer;
+    private int count;
+    private boolean hasLines, hasSides;
+
+    private boolean building;
+    private double cameraX, cameraZ;
+
+    public BoxMesh() {
+        if (cubeVbo == 0) cubeVbo = createCube();
+
+        instancesCapacity = MeshAllocator.getCapacity(INSTANCE_STRIDE * 256);
+        instancesPointer = MeshAllocator.allocate(instancesCapacity);
+
+        vao = GL.genVertexArray();
+        GL.bindVertexArray(vao);
+
+        GL.bindVertexBuffer(cubeVbo);
+        GL.enableVertexAttribute(0);
+        GL.vertexAttribute(0, 3, GL_FLOAT, false, CUBE_STRIDE, 0);
+        GL.enableVertexAttribute(1);
+        GL.vertexAttribute(1, 1, GL_FLOAT, false, CUBE_STRIDE, 12);
+
+        instances = new StreamBuffer(GL_ARRAY_BUFFER);
+        GL.bindVertexBuffer(instances.getId());
+
+        for (int i = 2; i <= 6; i++) {
+            GL.enableVertexAttribute(i);
+            GL.vertexAttributeDivisor(i, 1);
+        }
+
+        GL.bindVertexArray(0);
+        GL.bindVertexBuffer(0);
+    }
+
+    /** Points the instance attributes at the records uploaded at the offset, instanced draws can't start at a base instance in GL 3.2. */
+    private void setupInstanceAttributes(long offset) {
+        GL.bindVertexArray(vao);
+        GL.bindVertexBuffer(instances.getId());
+
+        GL.vertexAttribute(2, 3, GL_FLOAT, false, INSTANCE_STRIDE, offset);
+        GL.vertexAttribute(3, 3, GL_FLOAT, false, INSTANCE_STRIDE, offset + 12);
+        GL.vertexAttribute(4, 4, GL_UNSIGNED_BYTE, true, INSTANCE_STRIDE, offset + 24);
+        GL.vertexAttribute(5, 4, GL_UNSIGNED_BYTE, true, INSTANCE_STRIDE, offset + 28);
+        GL.vertexAttribute(6, 1, GL_FLOAT, false, INSTANCE_STRIDE, offset + 32);
+
+        GL.bindVertexArray(0);
+        GL.bindVertexBuffer(0);
+
+        instancesOffset = offset;
+    }
+
+    private static int createCube() {
+        ByteBuffer data = BufferUtils.createByteBuffer((LINE_VERTICES + SIDE_VERTICES) * CUBE_STRIDE);
+
+        for (int[] edge : EDGES) {
+            putCorner(data, edge[0], edge[2] | NO_LINES);
+            putCorner(data, edge[1], edge[2] | NO_LINES);
+        }
+
+        for (int[] face : FACES) {
+            int faces = face[4] | NO_SIDES;
+
+            putCorner(data, face[0], faces);
+            putCorner(data, face[1], faces);
+            putCorner(data, face[2], faces);
+
+            putCorner(data, face[2], faces);
+            putCorner(data, face[3], faces);
+            putCorner(data, face[0], faces);
+        }
+
+        data.flip();
+
+        int vbo = GL.genBuffer();
+        GL.bindVertexBuffer(vbo);
+        GL.bufferData(GL_ARRAY_BUFFER, data, GL_STATIC_DRAW);
+        GL.bindVertexBuffer(0);
+
+        return vbo;
+    }
+
+    private static void putCorner(ByteBuffer data, int corner, int faces) {
+        data.putFloat(corner & 1);
+        data.putFloat((corner >> 1) & 1);
+        data.putFloat((corner >> 2) & 1);
+        data.putFloat(faces);
+    }
+
+    public void destroy() {
+        instances.destroy();
+        GL.deleteVertexArray(vao);
+
+        MeshAllocator.free(instancesPointer, instancesCapacity);
+        instancesPointer = 0;
+    }
+
+    public void begin() {
+        if (building) throw new IllegalStateException("BoxMesh.begin() called while already building.");
+
+        count = 0;
+        hasLines = false;
+        hasSides = false;
+
+        Vec3d camera = mc.gameRenderer.getCamera().getPos();
+        cameraX = camera.x;
+        cameraZ = camera.z;
+
+        building = true;
+    }
+
+    /** Adds a box, colors of the parts not drawn by the shape mode may be {@code null}. */
+    public void box(double x1, double y1, double z1, double x2, double y2, double z2, Color sideColor, Color lineColor, ShapeMode mode, int excludeDir) {
+        int exclude = excludeDir;
+
+        if (mode.lines()) hasLines = true;
+        else exclude |= NO_LINES;
+
+        if (mode.sides()) hasSides = true;
+        else exclude |= NO_SIDES;
+
+        if ((count + 1L) * INSTANCE_STRIDE > instancesCapacity) grow();
+
+        long p = instancesPointer + (long) count * INSTANCE_STRIDE;
+
+        // Same space as Mesh, x and z relative to the camera and y absolute
+        memPutFloat(p, (float) (x1 - cameraX));
+        memPutFloat(p + 4, (float) y1);
+        memPutFloat(p + 8, (float) (z1 - cameraZ));
+        memPutFloat(p + 12, (float) (x2 - cameraX));
+        memPutFloat(p + 16, (float) y2);
+        memPutFloat(p + 20, (float) (z2 - cameraZ));
+
+        putColor(p + 24, sideColor);
+        putColor(p + 28, lineColor);
+
+        memPutFloat(p + 32, exclude);
+
+        count++;
+    }
+
+    private static void putColor(long p, Color c) {
+        if (c == null) {
+            memPutInt(p, 0);
+            return;
+        }
+
+        memPutByte(p, (byte) c.r);
+        memPutByte(p + 1, (byte) c.g);
+        memPutByte(p + 2, (byte) c.b);
+        memPutByte(p + 3, (byte) c.a);
+    }
+
+    private void grow() {
+        long newCapacity = MeshAllocator.getCapacity(instancesCapacity * 2);
+        long newPointer = MeshAllocator.allocate(newCapacity);
+        memCopy(instancesPointer, newPointer, (long) count * INSTANCE_STRIDE);
+
+        MeshAllocator.free(instancesPointer, instancesCapacity);
+        instancesPointer = newPointer;
+        instancesCapacity = newCapacity;
+    }
+
+    public void end() {
+        if (!building) throw new IllegalStateException("BoxMesh.end() called while not building.");
+
+        if (count > 0) {
+            long offset = instances.upload(instancesPointer, (long) count * INSTANCE_STRIDE, INSTANCE_STRIDE);
+            if (offset != instancesOffset) setupInstanceAttributes(offset);
+        }
+
+        building = false;
+    }
+
+    public void render(MatrixStack matrices) {
+        renderLines(matrices);
+        renderSides(matrices);
+    }
+
+    /** Draws the outlines only, so they can go in the same place as the other lines of a renderer. */
+    public void renderLines(MatrixStack matrices) {
+        if (building) end();
+        if (hasLines) render(matrices, true);
+    }
+
+    public void renderSides(MatrixStack matrices) {
+        if (building) end();
+        if (hasSides) render(matrices, false);
+    }
+
+    private void render(MatrixStack matrices, boolean lines) {
+        if (count == 0) return;
+
+        GL.saveState();
+
+        if (depthTest) GL.enableDepth();
+        else GL.disableDepth();
+        GL.enableBlend();
+        GL.disableCull();
+        GL.enableLineSmooth();
+
+        MatrixStack matrixStack = RenderSystem.getModelViewStack();
+        matrixStack.push();
+
+        if (matrices != null) matrixStack.multiplyPositionMatrix(matrices.peek().getPositionMatrix());
+
+        Vec3d cameraPos = mc.gameRenderer.getCamera().getPos();
+        matrixStack.translate(0, -cameraPos.y, 0);
+
+        Shaders.BOX.bind();
+        Shader.BOUND.setDefaults();
+
+        GL.bindVertexArray(vao);
+
+        Shader.BOUND.set("u_Lines", lines);
+
+        if (lines) GL.drawArraysInstanced(GL_LINES, 0, LINE_VERTICES, count);
+        else GL.drawArraysInstanced(GL_TRIANGLES, LINE_VERTICES, SIDE_VERTICES, count);
+
+        GL.bindVertexArray(0);
+
+        matrixStack.pop();
+        GL.restoreState();
+    }
+
+    public boolean isBuilding() {
+        return building;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.renderer;
+
+import net.minecraft.util.math.Box;
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+
+/**
+ * Frustum and distance checks against the camera of the current frame. Until {@link #update} is called everything
+ * is considered visible, which is what retained meshes built outside of a frame want.
+ * <p>
+ * Only the culling of the world renderer is updated, so the counters are shared.
+ */
+public class Culling {
+    private final FrustumIntersection frustum = new FrustumIntersection();
+    private final Matrix4f matrix = new Matrix4f();
+
+    private boolean enabled;
+    private double cameraX, cameraY, cameraZ;
+    private double maxDistance;
+
+    private static int submitted, culled;
+    private static int lastSubmitted, lastCulled;
+
+    /** @param maxDistance boxes further away than this from the camera are culled too, 0 to only check the frustum */
+    public void update(Matrix4f positionMatrix, Matrix4f projectionMatrix, double cameraX, double cameraY, double cameraZ, double maxDistance) {
+        frustum.set(matrix.set(projectionMatrix).mul(positionMatrix), false);
+
+        this.cameraX = cameraX;
+        this.cameraY = cameraY;
+        this.cameraZ = cameraZ;
+        this.maxDistance = maxDistance;
+        this.enabled = true;
+
+        lastSubmitted = submitted;
+        lastCulled = culled;
+        submitted = 0;
+        culled = 0;
+    }
+
+    /** Returns whether the box is inside the view frustum and within the max distance of the camera. */
+    public boolean isVisible(double x1, double y1, double z1, double x2, double y2, double z2) {
+        if (!enabled) return true;
+        submitted++;
+
+        double minX = Math.min(x1, x2) - cameraX, maxX = Math.max(x1, x2) - cameraX;
+        double minY = Math.min(y1, y2) - cameraY, maxY = Math.max(y1, y2) - cameraY;
+        double minZ = Math.min(z1, z2) - cameraZ, maxZ = Math.max(z1, z2) - cameraZ;
+
+        if (maxDistance > 0) {
+            // Distance from the camera to the closest point of the box
+            double dx = Math.max(0, Math.max(minX, -maxX));
+            double dy = Math.max(0, Math.max(minY, -maxY));
+            double dz = Math.max(0, Math.max(minZ, -maxZ));
+
+            if (dx * dx + dy * dy + dz * dz > maxDistance * maxDistance) {
+                culled++;
+                return false;
+            }
+        }
+
+        if (!frustum.testAab((float) minX, (float) minY, (float) minZ, (float) maxX, (float) maxY, (float) maxZ)) {
+            culled++;
+            return false;
+        }
+
+        return true;
+    }
+
+    public boolean isVisible(Box box) {
+        return isVisible(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
+    }
+
+    public boolean isChunkVisible(int chunkX, int chunkZ, double minY, double maxY) {
+        return isVisible(chunkX << 4, minY, chunkZ << 4, (chunkX << 4) + 16, maxY, (chunkZ << 4) + 16);
+    }
+
+    /** Number of checks made during the last full frame. */
+    public static int getSubmitted() {
+        return lastSubmitted;
+    }
+
+    /** Number of checks which failed during the last full frame. */
+    public static int getCulled() {
+        return lastCulled;
+    }
+}
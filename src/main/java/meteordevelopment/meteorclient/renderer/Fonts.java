@@ -14,9 +14,9 @@ import meteordevelopment.meteorclient.renderer.text.FontFamily;
 import meteordevelopment.meteorclient.renderer.text.FontInfo;
 import meteordevelopment.meteorclient.systems.config.Config;
 import meteordevelopment.meteorclient.utils.PreInit;
+import meteordevelopment.meteorclient.utils.render.FontIndex;
 import meteordevelopment.meteorclient.utils.render.FontUtils;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
@@ -42,9 +42,9 @@ public class Fonts {
             FontUtils.loadBuiltin(FONT_FAMILIES, builtinFont);
         }
 
-        for (String fontPath : FontUtils.getSearchPaths()) {
-            FontUtils.loadSystem(FONT_FAMILIES, new File(fontPath));
-        }
+        FontIndex index = FontIndex.load();
+        FontUtils.loadSystem(FONT_FAMILIES, index);
+        index.save();
 
         FONT_FAMILIES.sort(Comparator.comparing(FontFamily::getName));
 
@@ -58,10 +58,21 @@ public class Fonts {
     }
 
     public static void load(FontFace fontFace) {
-        if (RENDERER != null && RENDERER.fontFace.equals(fontFace)) return;
+        Config config = Config.get();
+        boolean sdf = config != null && config.sdfFont.get();
+
+        if (RENDERER != null && RENDERER.fontFace.equals(fontFace) && RENDERER.sdf == sdf) return;
 
         try {
-            RENDERER = new CustomTextRenderer(fontFace);
+            long start = System.nanoTime();
+
+            CustomTextRenderer previous = RENDERER;
+            RENDERER = new CustomTextRenderer(fontFace, sdf);
+            RENDERER.backgroundBaking = config == null || config.backgroundFontBaking.get();
+            if (previous != null) previous.destroy();
+
+            MeteorClient.LOG.info("Loaded {} font {} in {} ms, atlases take up {} MB.", sdf ? "distance field" : "bitmap", fontFace, (System.nanoTime() - start) / 1_000_000, RENDERER.getAtlasBytes() / (1024 * 1024));
+
             MeteorClient.EVENT_BUS.post(CustomFontChangedEvent.get());
         }
         catch (Exception e) {
@@ -21,6 +21,7 @@ import java.nio.FloatBuffer;
 
 import static meteordevelopment.meteorclient.MeteorClient.mc;
 import static org.lwjgl.opengl.GL32C.*;
+import static org.lwjgl.opengl.GL33C.glVertexAttribDivisor;
 
 public class GL {
     private static final FloatBuffer MAT = BufferUtils.createFloatBuffer(4 * 4);
@@ -112,10 +113,34 @@ public class GL {
         GlStateManager._glBufferData(target, data, usage);
     }
 
+    public static void bufferData(int target, long size, int usage) {
+        glBufferData(target, size, usage);
+    }
+
+    public static void bufferSubData(int target, long offset, long size, long data) {
+        nglBufferSubData(target, offset, size, data);
+    }
+
+    public static long mapBufferRange(int target, long offset, long length, int access) {
+        return nglMapBufferRange(target, offset, length, access);
+    }
+
+    public static void unmapBuffer(int target) {
+        glUnmapBuffer(target);
+    }
+
     public static void drawElements(int mode, int first, int type) {
         GlStateManager._drawElements(mode, first, type, 0);
     }
 
+    public static void drawElementsBaseVertex(int mode, int count, int type, long indicesOffset, int baseVertex) {
+        glDrawElementsBaseVertex(mode, count, type, indicesOffset, baseVertex);
+    }
+
+    public static void drawArraysInstanced(int mode, int first, int count, int instances) {
+        glDrawArraysInstanced(mode, first, count, instances);
+    }
+
     // Vertex attributes
 
     public static void enableVertexAttribute(int i) {
@@ -126,6 +151,10 @@ public class GL {
         GlStateManager._vertexAttribPointer(index, size, type, normalized, stride, pointer);
     }
 
+    public static void vertexAttributeDivisor(int index, int divisor) {
+        glVertexAttribDivisor(index, divisor);
+    }
+
     // Shaders
 
     public static int createShader(int type) {
@@ -10,9 +10,6 @@ import meteordevelopment.meteorclient.utils.Utils;
 import meteordevelopment.meteorclient.utils.render.color.Color;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.util.math.Vec3d;
-import org.lwjgl.BufferUtils;
-
-import java.nio.ByteBuffer;
 
 import static meteordevelopment.meteorclient.MeteorClient.mc;
 import static org.lwjgl.opengl.GL32C.*;
@@ -39,22 +36,37 @@ public class Mesh {
         }
     }
 
+    // Builds between checks whether the storage can shrink
+    private static final int SHRINK_CHECK_INTERVAL = 600;
+
     public boolean depthTest = false;
     public double alpha = 1;
 
     private final DrawMode drawMode;
-    private final int primitiveVerticesSize;
+    private final Attrib[] attributes;
+    private final int stride, primitiveVerticesSize;
+
+    private final int vao;
+    private final StreamBuffer vbo, ibo;
 
-    private final int vao, vbo, ibo;
+    // Storage comes from MeshAllocator, capacities are in bytes
+    private final long initialVerticesCapacity, initialIndicesCapacity;
 
-    private ByteBuffer vertices;
+    private long verticesCapacity;
     private long verticesPointerStart, verticesPointer;
 
-    private ByteBuffer indices;
+    private long indicesCapacity;
     private long indicesPointer;
 
     private int vertexI, indicesCount;
 
+    // Largest build since the last shrink check, so storage grown by a spike can be given back
+    private long peakVerticesSize, peakIndicesSize;
+    private int buildsSinceShrinkCheck;
+
+    // Where the last upload ended up in the stream buffers
+    private long verticesUploadOffset, indicesUploadOffset;
+
     private boolean building, rendering3D;
     private double cameraX, cameraZ;
     private boolean beganRendering;
@@ -64,23 +76,36 @@ public class Mesh {
         for (Attrib attribute : attributes) stride += attribute.size;
 
         this.drawMode = drawMode;
+        this.attributes = attributes;
+        this.stride = stride;
         this.primitiveVerticesSize = stride * drawMode.indicesCount;
 
-        vertices = BufferUtils.createByteBuffer(primitiveVerticesSize * 256 * 4);
-        verticesPointerStart = memAddress0(vertices);
+        initialVerticesCapacity = MeshAllocator.getCapacity(primitiveVerticesSize * 256 * 4L);
+        verticesCapacity = initialVerticesCapacity;
+        verticesPointerStart = MeshAllocator.allocate(verticesCapacity);
 
-        indices = BufferUtils.createByteBuffer(drawMode.indicesCount * 512 * 4);
-        indicesPointer = memAddress0(indices);
+        initialIndicesCapacity = MeshAllocator.getCapacity(drawMode.indicesCount * 512 * 4L);
+        indicesCapacity = initialIndicesCapacity;
+        indicesPointer = MeshAllocator.allocate(indicesCapacity);
 
         vao = GL.genVertexArray();
         GL.bindVertexArray(vao);
 
-        vbo = GL.genBuffer();
-        GL.bindVertexBuffer(vbo);
+        vbo = new StreamBuffer(GL_ARRAY_BUFFER);
+        GL.bindVertexBuffer(vbo.getId());
 
-        ibo = GL.genBuffer();
-        GL.bindIndexBuffer(ibo);
+        ibo = new StreamBuffer(GL_ELEMENT_ARRAY_BUFFER);
+        GL.bindIndexBuffer(ibo.getId());
+
+        setupAttributes();
+
+        GL.bindVertexArray(0);
+        GL.bindVertexBuffer(0);
+        GL.bindIndexBuffer(0);
+    }
 
+    /** Describes the vertex layout of this mesh to the currently bound vertex array and buffer. */
+    void setupAttributes() {
         int offset = 0;
         for (int i = 0; i < attributes.length; i++) {
             Attrib attrib = attributes[i];
@@ -90,21 +115,25 @@ public class Mesh {
 
             offset += attrib.size;
         }
-
-        GL.bindVertexArray(0);
-        GL.bindVertexBuffer(0);
-        GL.bindIndexBuffer(0);
     }
 
     public void destroy() {
-        GL.deleteBuffer(ibo);
-        GL.deleteBuffer(vbo);
+        ibo.destroy();
+        vbo.destroy();
         GL.deleteVertexArray(vao);
+
+        MeshAllocator.free(verticesPointerStart, verticesCapacity);
+        MeshAllocator.free(indicesPointer, indicesCapacity);
+
+        verticesPointerStart = 0;
+        indicesPointer = 0;
     }
 
     public void begin() {
         if (building) throw new IllegalStateException("Mesh.end() called while already building.");
 
+        shrinkIfNeeded();
+
         verticesPointer = verticesPointerStart;
         vertexI = 0;
         indicesCount = 0;
@@ -199,49 +228,78 @@ public class Mesh {
 
     public void growIfNeeded() {
         // Vertices
-        if ((vertexI + 1) * primitiveVerticesSize >= vertices.capacity()) {
+        if ((vertexI + 1L) * primitiveVerticesSize >= verticesCapacity) {
             int offset = getVerticesOffset();
 
-            int newSize = vertices.capacity() * 2;
-            if (newSize % primitiveVerticesSize != 0) newSize += newSize % primitiveVerticesSize;
+            long newCapacity = MeshAllocator.getCapacity(verticesCapacity * 2);
+            verticesPointerStart = reallocate(verticesPointerStart, verticesCapacity, newCapacity, offset);
+            verticesCapacity = newCapacity;
 
-            ByteBuffer newVertices = BufferUtils.createByteBuffer(newSize);
-            memCopy(memAddress0(vertices), memAddress0(newVertices), offset);
-
-            vertices = newVertices;
-            verticesPointerStart = memAddress0(vertices);
             verticesPointer = verticesPointerStart + offset;
         }
 
         // Indices
-        if (indicesCount * 4 >= indices.capacity()) {
-            int newSize = indices.capacity() * 2;
-            if (newSize % drawMode.indicesCount != 0) newSize += newSize % (drawMode.indicesCount * 4);
+        if (indicesCount * 4L >= indicesCapacity) {
+            long newCapacity = MeshAllocator.getCapacity(indicesCapacity * 2);
+            indicesPointer = reallocate(indicesPointer, indicesCapacity, newCapacity, indicesCount * 4L);
+            indicesCapacity = newCapacity;
+        }
+    }
+
+    private void shrinkIfNeeded() {
+        if (++buildsSinceShrinkCheck < SHRINK_CHECK_INTERVAL) return;
 
-            ByteBuffer newIndices = BufferUtils.createByteBuffer(newSize);
-            memCopy(memAddress0(indices), memAddress0(newIndices), indicesCount * 4L);
+        // Only give memory back when recent builds used a small part of it, so steady meshes don't bounce
+        if (verticesCapacity > initialVerticesCapacity && peakVerticesSize * 4 < verticesCapacity) {
+            long newCapacity = Math.max(initialVerticesCapacity, MeshAllocator.getCapacity(peakVerticesSize * 2));
+            verticesPointerStart = reallocate(verticesPointerStart, verticesCapacity, newCapacity, 0);
+            verticesCapacity = newCapacity;
+        }
 
-            indices = newIndices;
-            indicesPointer = memAddress0(indices);
+        if (indicesCapacity > initialIndicesCapacity && peakIndicesSize * 4 < indicesCapacity) {
+            long newCapacity = Math.max(initialIndicesCapacity, MeshAllocator.getCapacity(peakIndicesSize * 2));
+            indicesPointer = reallocate(indicesPointer, indicesCapacity, newCapacity, 0);
+            indicesCapacity = newCapacity;
         }
+
+        peakVerticesSize = 0;
+        peakIndicesSize = 0;
+        buildsSinceShrinkCheck = 0;
+    }
+
+    private static long reallocate(long pointer, long capacity, long newCapacity, long size) {
+        long newPointer = MeshAllocator.allocate(newCapacity);
+        if (size > 0) memCopy(pointer, newPointer, size);
+
+        MeshAllocator.free(pointer, capacity);
+        return newPointer;
     }
 
     public void end() {
         if (!building) throw new IllegalStateException("Mesh.end() called while not building.");
 
-        if (indicesCount > 0) {
-            GL.bindVertexBuffer(vbo);
-            GL.bufferData(GL_ARRAY_BUFFER, vertices.limit(getVerticesOffset()), GL_DYNAMIC_DRAW);
-            GL.bindVertexBuffer(0);
+        trackPeak();
 
-            GL.bindIndexBuffer(ibo);
-            GL.bufferData(GL_ELEMENT_ARRAY_BUFFER, indices.limit(indicesCount * 4), GL_DYNAMIC_DRAW);
-            GL.bindIndexBuffer(0);
+        if (indicesCount > 0) {
+            // Vertices are aligned to the stride so the draw can address them with a base vertex
+            verticesUploadOffset = vbo.upload(verticesPointerStart, getVerticesOffset(), stride);
+            indicesUploadOffset = ibo.upload(indicesPointer, indicesCount * 4L, 4);
         }
 
         building = false;
     }
 
+    /** Finishes building and uploads the result into a retained mesh instead of this one, which is left empty. */
+    public void end(RetainedMesh mesh) {
+        if (!building) throw new IllegalStateException("Mesh.end() called while not building.");
+
+        trackPeak();
+        mesh.upload(memByteBuffer(verticesPointerStart, getVerticesOffset()), memByteBuffer(indicesPointer, indicesCount * 4), indicesCount, cameraX, cameraZ);
+
+        indicesCount = 0;
+        building = false;
+    }
+
     public void beginRender(MatrixStack matrices) {
         GL.saveState();
 
@@ -278,7 +336,7 @@ public class Mesh {
             Shader.BOUND.setDefaults();
 
             GL.bindVertexArray(vao);
-            GL.drawElements(drawMode.getGL(), indicesCount, GL_UNSIGNED_INT);
+            GL.drawElementsBaseVertex(drawMode.getGL(), indicesCount, GL_UNSIGNED_INT, indicesUploadOffset, (int) (verticesUploadOffset / stride));
 
             // Cleanup opengl state and matrix stack
             GL.bindVertexArray(0);
@@ -299,8 +357,17 @@ public class Mesh {
         return building;
     }
 
+    DrawMode getDrawMode() {
+        return drawMode;
+    }
+
     protected void beforeRender() {}
 
+    private void trackPeak() {
+        peakVerticesSize = Math.max(peakVerticesSize, getVerticesOffset());
+        peakIndicesSize = Math.max(peakIndicesSize, indicesCount * 4L);
+    }
+
     private int getVerticesOffset() {
         return (int) (verticesPointer - verticesPointerStart);
     }
@@ -0,0 +1,109 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.renderer;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import static org.lwjgl.system.MemoryUtil.nmemAlloc;
+import static org.lwjgl.system.MemoryUtil.nmemFree;
+
+/**
+ * Shared native memory for mesh vertex and index storage. Blocks are sized in powers of two and have to be freed
+ * explicitly, freed blocks are kept around for reuse up to a limit so meshes growing and shrinking don't keep hitting
+ * the system allocator.
+ */
+public class MeshAllocator {
+    private static final int MIN_SHIFT = 10;
+    private static final int MAX_POOLED_SHIFT = 24;
+
+    // Memory kept for reuse, anything freed above this goes straight back to the system
+    private static final long MAX_POOLED_BYTES = 32L * 1024 * 1024;
+
+    private static final LongArrayList[] pool = new LongArrayList[MAX_POOLED_SHIFT - MIN_SHIFT + 1];
+
+    private static long usedBytes, pooledBytes;
+    private static int blocks;
+
+    static {
+        for (int i = 0; i < pool.length; i++) pool[i] = new LongArrayList();
+    }
+
+    /** Size of the block {@link #allocate(long)} returns for the requested size. */
+    public static long getCapacity(long size) {
+        if (size <= 1L << MIN_SHIFT) return 1L << MIN_SHIFT;
+        return Long.highestOneBit(size - 1) << 1;
+    }
+
+    /** Allocates at least {@code size} bytes, the block must be freed with its {@link #getCapacity(long)}. */
+    public static synchronized long allocate(long size) {
+        long capacity = getCapacity(size);
+        int sizeClass = getSizeClass(capacity);
+
+        long address;
+
+        if (sizeClass < pool.length && !pool[sizeClass].isEmpty()) {
+            address = pool[sizeClass].popLong();
+            pooledBytes -= capacity;
+        }
+        else {
+            address = nmemAlloc(capacity);
+            if (address == 0) throw new OutOfMemoryError("Failed to allocate " + capacity + " bytes for a mesh.");
+
+            blocks++;
+        }
+
+        usedBytes += capacity;
+        return address;
+    }
+
+    public static synchronized void free(long address, long capacity) {
+        if (address == 0) return;
+
+        usedBytes -= capacity;
+        int sizeClass = getSizeClass(capacity);
+
+        if (sizeClass < pool.length && pooledBytes + capacity <= MAX_POOLED_BYTES) {
+            pool[sizeClass].add(address);
+            pooledBytes += capacity;
+        }
+        else {
+            nmemFree(address);
+            blocks--;
+        }
+    }
+
+    /** Returns all pooled blocks to the system. */
+    public static synchronized void trim() {
+        for (LongArrayList blocks : pool) {
+            for (int i = 0; i < blocks.size(); i++) nmemFree(blocks.getLong(i));
+
+            MeshAllocator.blocks -= blocks.size();
+            blocks.clear();
+        }
+
+        pooledBytes = 0;
+    }
+
+    private static int getSizeClass(long capacity) {
+        return Long.numberOfTrailingZeros(capacity) - MIN_SHIFT;
+    }
+
+    // Stats
+
+    /** Native memory held by live meshes. */
+    public static synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /** Native memory freed by meshes and kept for reuse. */
+    public static synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    public static synchronized int getBlocks() {
+        return blocks;
+    }
+}
@@ -15,19 +15,39 @@ public class Renderer3D {
     public final Mesh lines = new ShaderMesh(Shaders.POS_COLOR, DrawMode.Lines, Mesh.Attrib.Vec3, Mesh.Attrib.Color);
     public final Mesh triangles = new ShaderMesh(Shaders.POS_COLOR, DrawMode.Triangles, Mesh.Attrib.Vec3, Mesh.Attrib.Color);
 
+    /** Instanced boxes, {@code null} when boxes are built from lines and triangles instead. */
+    public final BoxMesh boxes;
+
+    /** Boxes and sides outside of the view are skipped. Lines and quads aren't checked, modules drawing objects from them check each object once. */
+    public final Culling culling = new Culling();
+
+    public Renderer3D() {
+        this(true);
+    }
+
+    /** Renderers whose meshes get copied elsewhere, like {@link RetainedRenderer3D}, need boxes as plain geometry. */
+    public Renderer3D(boolean instancedBoxes) {
+        boxes = instancedBoxes ? new BoxMesh() : null;
+    }
+
     public void begin() {
         lines.begin();
         triangles.begin();
+        if (boxes != null) boxes.begin();
     }
 
     public void end() {
         lines.end();
         triangles.end();
+        if (boxes != null) boxes.end();
     }
 
     public void render(MatrixStack matrices) {
+        // Box outlines and sides are drawn with the other lines and triangles, so shapes overlap like before boxes were instanced
         lines.render(matrices);
+        if (boxes != null) boxes.renderLines(matrices);
         triangles.render(matrices);
+        if (boxes != null) boxes.renderSides(matrices);
     }
 
     // Lines
@@ -43,8 +63,15 @@ public class Renderer3D {
         line(x1, y1, z1, x2, y2, z2, color, color);
     }
 
-    @SuppressWarnings("Duplicates")
     public void boxLines(double x1, double y1, double z1, double x2, double y2, double z2, Color color, int excludeDir) {
+        if (!culling.isVisible(x1, y1, z1, x2, y2, z2)) return;
+
+        if (boxes != null) boxes.box(x1, y1, z1, x2, y2, z2, null, color, ShapeMode.Lines, excludeDir);
+        else addBoxLines(x1, y1, z1, x2, y2, z2, color, excludeDir);
+    }
+
+    @SuppressWarnings("Duplicates")
+    private void addBoxLines(double x1, double y1, double z1, double x2, double y2, double z2, Color color, int excludeDir) {
         int blb = lines.vec3(x1, y1, z1).color(color).next();
         int blf = lines.vec3(x1, y1, z2).color(color).next();
         int brb = lines.vec3(x2, y1, z1).color(color).next();
@@ -131,6 +158,9 @@ public class Renderer3D {
 
     @SuppressWarnings("Duplicates")
     public void side(double x1, double y1, double z1, double x2, double y2, double z2, double x3, double y3, double z3, double x4, double y4, double z4, Color sideColor, Color lineColor, ShapeMode mode) {
+        if (!culling.isVisible(Math.min(Math.min(x1, x2), Math.min(x3, x4)), Math.min(Math.min(y1, y2), Math.min(y3, y4)), Math.min(Math.min(z1, z2), Math.min(z3, z4)),
+            Math.max(Math.max(x1, x2), Math.max(x3, x4)), Math.max(Math.max(y1, y2), Math.max(y3, y4)), Math.max(Math.max(z1, z2), Math.max(z3, z4)))) return;
+
         if (mode.lines()) {
             int i1 = lines.vec3(x1, y1, z1).color(lineColor).next();
             int i2 = lines.vec3(x2, y2, z2).color(lineColor).next();
@@ -158,8 +188,15 @@ public class Renderer3D {
 
     // Boxes
 
-    @SuppressWarnings("Duplicates")
     public void boxSides(double x1, double y1, double z1, double x2, double y2, double z2, Color color, int excludeDir) {
+        if (!culling.isVisible(x1, y1, z1, x2, y2, z2)) return;
+
+        if (boxes != null) boxes.box(x1, y1, z1, x2, y2, z2, color, null, ShapeMode.Sides, excludeDir);
+        else addBoxSides(x1, y1, z1, x2, y2, z2, color, excludeDir);
+    }
+
+    @SuppressWarnings("Duplicates")
+    private void addBoxSides(double x1, double y1, double z1, double x2, double y2, double z2, Color color, int excludeDir) {
         int blb = triangles.vec3(x1, y1, z1).color(color).next();
         int blf = triangles.vec3(x1, y1, z2).color(color).next();
         int brb = triangles.vec3(x2, y1, z1).color(color).next();
@@ -204,17 +241,22 @@ public class Renderer3D {
     }
 
     public void box(double x1, double y1, double z1, double x2, double y2, double z2, Color sideColor, Color lineColor, ShapeMode mode, int excludeDir) {
-        if (mode.lines()) boxLines(x1, y1, z1, x2, y2, z2, lineColor, excludeDir);
-        if (mode.sides()) boxSides(x1, y1, z1, x2, y2, z2, sideColor, excludeDir);
+        if (!culling.isVisible(x1, y1, z1, x2, y2, z2)) return;
+
+        if (boxes != null) {
+            boxes.box(x1, y1, z1, x2, y2, z2, sideColor, lineColor, mode, excludeDir);
+            return;
+        }
+
+        if (mode.lines()) addBoxLines(x1, y1, z1, x2, y2, z2, lineColor, excludeDir);
+        if (mode.sides()) addBoxSides(x1, y1, z1, x2, y2, z2, sideColor, excludeDir);
     }
 
     public void box(BlockPos pos, Color sideColor, Color lineColor, ShapeMode mode, int excludeDir) {
-        if (mode.lines()) boxLines(pos.getX(), pos.getY(), pos.getZ(), pos.getX() + 1, pos.getY() + 1, pos.getZ() + 1, lineColor, excludeDir);
-        if (mode.sides()) boxSides(pos.getX(), pos.getY(), pos.getZ(), pos.getX() + 1, pos.getY() + 1, pos.getZ() + 1, sideColor, excludeDir);
+        box(pos.getX(), pos.getY(), pos.getZ(), pos.getX() + 1, pos.getY() + 1, pos.getZ() + 1, sideColor, lineColor, mode, excludeDir);
     }
 
     public void box(Box box, Color sideColor, Color lineColor, ShapeMode mode, int excludeDir) {
-        if (mode.lines()) boxLines(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ, lineColor, excludeDir);
-        if (mode.sides()) boxSides(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ, sideColor, excludeDir);
+        box(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ, sideColor, lineColor, mode, excludeDir);
     }
 }
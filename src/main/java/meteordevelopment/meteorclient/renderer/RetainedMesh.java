@@ -0,0 +1,155 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.renderer;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.math.Vec3d;
+
+import java.nio.ByteBuffer;
+
+import static meteordevelopment.meteorclient.MeteorClient.mc;
+import static org.lwjgl.opengl.GL32C.*;
+
+/**
+ * GPU copy of geometry built with a {@link Mesh}, which can be drawn every frame without building it again. Only the
+ * GL buffers are kept, the vertex layout and shader come from the mesh it was built with.
+ */
+public class RetainedMesh {
+    private final Mesh mesh;
+
+    private final int vao, vbo, ibo;
+    private int indicesCount;
+
+    // Camera position the vertices were built relative to
+    private double cameraX, cameraZ;
+
+    private boolean destroyed;
+
+    public RetainedMesh(Mesh mesh) {
+        this.mesh = mesh;
+
+        vao = GL.genVertexArray();
+        GL.bindVertexArray(vao);
+
+        vbo = GL.genBuffer();
+        GL.bindVertexBuffer(vbo);
+
+        ibo = GL.genBuffer();
+        GL.bindIndexBuffer(ibo);
+
+        mesh.setupAttributes();
+
+        GL.bindVertexArray(0);
+        GL.bindVertexBuffer(0);
+        GL.bindIndexBuffer(0);
+    }
+
+    void upload(ByteBuffer vertices, ByteBuffer indices, int indicesCount, double cameraX, double cameraZ) {
+        this.indicesCount = indicesCount;
+        this.cameraX = cameraX;
+        this.cameraZ = cameraZ;
+
+        if (indicesCount > 0) {
+            GL.bindVertexBuffer(vbo);
+            GL.bufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
+            GL.bindVertexBuffer(0);
+
+            GL.bindIndexBuffer(ibo);
+            GL.bufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
+            GL.bindIndexBuffer(0);
+        }
+    }
+
+    public void render(MatrixStack matrices) {
+        if (destroyed || indicesCount == 0) return;
+
+        GL.saveState();
+
+        if (mesh.depthTest) GL.enableDepth();
+        else GL.disableDepth();
+        GL.enableBlend();
+        GL.disableCull();
+        GL.enableLineSmooth();
+
+        MatrixStack matrixStack = RenderSystem.getModelViewStack();
+        matrixStack.push();
+
+        if (matrices != null) matrixStack.multiplyPositionMatrix(matrices.peek().getPositionMatrix());
+
+        // Vertices are relative to where the camera was when they were built
+        Vec3d cameraPos = mc.gameRenderer.getCamera().getPos();
+        matrixStack.translate(cameraX - cameraPos.x, -cameraPos.y, cameraZ - cameraPos.z);
+
+        mesh.beforeRender();
+        Shader.BOUND.setDefaults();
+
+        GL.bindVertexArray(vao);
+        GL.drawElements(mesh.getDrawMode().getGL(), indicesCount, GL_UNSIGNED_INT);
+        GL.bindVertexArray(0);
+
+        matrixStack.pop();
+        GL.restoreState();
+    }
+
+    /** Sets up the GL state and shader for drawing many meshes with {@link #renderBatched()}. */
+    static void beginBatch(MatrixStack matrices, Shader shader, boolean depthTest) {
+        GL.saveState();
+
+        if (depthTest) GL.enableDepth();
+        else GL.disableDepth();
+        GL.enableBlend();
+        GL.disableCull();
+        GL.enableLineSmooth();
+
+        MatrixStack matrixStack = RenderSystem.getModelViewStack();
+        matrixStack.push();
+
+        if (matrices != null) matrixStack.multiplyPositionMatrix(matrices.peek().getPositionMatrix());
+
+        shader.bind();
+        Shader.BOUND.setDefaults();
+    }
+
+    /** Draws inside {@link #beginBatch(MatrixStack, Shader, boolean)}, only the model view matrix is set per mesh. */
+    void renderBatched() {
+        if (destroyed || indicesCount == 0) return;
+
+        MatrixStack matrixStack = RenderSystem.getModelViewStack();
+        matrixStack.push();
+
+        Vec3d cameraPos = mc.gameRenderer.getCamera().getPos();
+        matrixStack.translate(cameraX - cameraPos.x, -cameraPos.y, cameraZ - cameraPos.z);
+        Shader.BOUND.set("u_ModelView", matrixStack.peek().getPositionMatrix());
+
+        GL.bindVertexArray(vao);
+        GL.drawElements(mesh.getDrawMode().getGL(), indicesCount, GL_UNSIGNED_INT);
+
+        matrixStack.pop();
+    }
+
+    static void endBatch() {
+        GL.bindVertexArray(0);
+
+        RenderSystem.getModelViewStack().pop();
+        GL.restoreState();
+    }
+
+    /** Frees the GL buffers, can be called from any thread. */
+    public void destroy() {
+        if (destroyed) return;
+        destroyed = true;
+
+        if (RenderSystem.isOnRenderThread()) delete();
+        else RenderSystem.recordRenderCall(this::delete);
+    }
+
+    private void delete() {
+        GL.deleteBuffer(ibo);
+        GL.deleteBuffer(vbo);
+        GL.deleteVertexArray(vao);
+    }
+}
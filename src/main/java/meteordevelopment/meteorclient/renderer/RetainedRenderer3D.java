@@ -0,0 +1,74 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.renderer;
+
+import net.minecraft.client.util.math.MatrixStack;
+
+/**
+ * Shapes built once with a {@link Renderer3D} and drawn every frame until they are built again, for geometry which
+ * rarely changes. Must only be built and rendered on the render thread.
+ */
+public class RetainedRenderer3D {
+    // Building goes through one shared renderer so retained instances only own GPU memory
+    private static Renderer3D builder;
+
+    private RetainedMesh lines, triangles;
+
+    /** Starts building, the shapes are added to the returned renderer and become visible after {@link #end()}. */
+    public Renderer3D begin() {
+        if (builder == null) builder = new Renderer3D(false);
+
+        if (lines == null) {
+            lines = new RetainedMesh(builder.lines);
+            triangles = new RetainedMesh(builder.triangles);
+        }
+
+        builder.begin();
+        return builder;
+    }
+
+    public void end() {
+        builder.lines.end(lines);
+        builder.triangles.end(triangles);
+    }
+
+    public void render(MatrixStack matrices) {
+        if (lines == null) return;
+
+        lines.render(matrices);
+        triangles.render(matrices);
+    }
+
+    /**
+     * Sets up the GL state, shader and matrices once for drawing many renderers with {@link #renderLines()} and
+     * {@link #renderTriangles()}. The shader has to take the same attributes as {@link Shaders#POS_COLOR}.
+     */
+    public static void beginBatch(MatrixStack matrices, Shader shader) {
+        RetainedMesh.beginBatch(matrices, shader, builder != null && builder.lines.depthTest);
+    }
+
+    public void renderLines() {
+        if (lines != null) lines.renderBatched();
+    }
+
+    public void renderTriangles() {
+        if (triangles != null) triangles.renderBatched();
+    }
+
+    public static void endBatch() {
+        RetainedMesh.endBatch();
+    }
+
+    public void destroy() {
+        if (lines == null) return;
+
+        lines.destroy();
+        triangles.destroy();
+
+        lines = null;
+        triangles = null;
+    }
+}
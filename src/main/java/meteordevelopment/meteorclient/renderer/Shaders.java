@@ -11,11 +11,17 @@ public class Shaders {
     public static Shader POS_COLOR;
     public static Shader POS_TEX_COLOR;
     public static Shader TEXT;
+    public static Shader TEXT_SDF;
+    public static Shader BOX;
+    public static Shader POS_PALETTE;
 
     @PreInit
     public static void init() {
         POS_COLOR = new Shader("pos_color.vert", "pos_color.frag");
         POS_TEX_COLOR = new Shader("pos_tex_color.vert", "pos_tex_color.frag");
         TEXT = new Shader("text.vert", "text.frag");
+        TEXT_SDF = new Shader("text.vert", "text_sdf.frag");
+        BOX = new Shader("box.vert", "pos_color.frag");
+        POS_PALETTE = new Shader("pos_palette.vert", "pos_color.frag");
     }
 }
@@ -0,0 +1,107 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.renderer;
+
+import static org.lwjgl.opengl.GL32C.*;
+import static org.lwjgl.system.MemoryUtil.memCopy;
+
+/**
+ * GL buffer for data which is rewritten every frame. Each upload is appended behind the data earlier draws may still
+ * be reading and written through an unsynchronized mapping. Once the buffer is full its storage is orphaned, so the
+ * driver never has to wait for the GPU to finish with the old contents.
+ */
+public class StreamBuffer {
+    private static final long MIN_CAPACITY = 16 * 1024;
+
+    // Room for this many uploads of the same size before the storage has to be orphaned
+    private static final int RING_LENGTH = 4;
+
+    private static long uploadedBytes, uploadedBytesLastFrame;
+    private static int uploads, uploadsLastFrame, orphans, orphansLastFrame;
+
+    private final int target;
+    private final int id;
+
+    private long capacity, cursor;
+
+    public StreamBuffer(int target) {
+        this.target = target;
+        this.id = GL.genBuffer();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /** Copies {@code size} bytes from {@code address} into the buffer and returns the offset, which is a multiple of {@code alignment}. */
+    public long upload(long address, long size, int alignment) {
+        long offset = (cursor + alignment - 1) / alignment * alignment;
+
+        bind(id);
+
+        if (offset + size > capacity) {
+            // Keep the capacity between frames, only grow it when it can't hold a few uploads of this size anymore
+            if (size * RING_LENGTH > capacity) capacity = Math.max(MIN_CAPACITY, Long.highestOneBit(size * RING_LENGTH - 1) << 1);
+
+            // Draws still using the old storage keep it alive, we get a fresh one without waiting for them
+            GL.bufferData(target, capacity, GL_STREAM_DRAW);
+
+            offset = 0;
+            orphans++;
+        }
+
+        long pointer = GL.mapBufferRange(target, offset, size, GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_RANGE_BIT | GL_MAP_UNSYNCHRONIZED_BIT);
+
+        if (pointer != 0) {
+            memCopy(address, pointer, size);
+            GL.unmapBuffer(target);
+        }
+        else GL.bufferSubData(target, offset, size, address);
+
+        bind(0);
+
+        cursor = offset + size;
+
+        uploadedBytes += size;
+        uploads++;
+
+        return offset;
+    }
+
+    public void destroy() {
+        GL.deleteBuffer(id);
+    }
+
+    private void bind(int buffer) {
+        if (target == GL_ELEMENT_ARRAY_BUFFER) GL.bindIndexBuffer(buffer);
+        else GL.bindVertexBuffer(buffer);
+    }
+
+    // Stats
+
+    /** Called at the start of every frame. */
+    public static void nextFrame() {
+        uploadedBytesLastFrame = uploadedBytes;
+        uploadsLastFrame = uploads;
+        orphansLastFrame = orphans;
+
+        uploadedBytes = 0;
+        uploads = 0;
+        orphans = 0;
+    }
+
+    public static long getUploadedBytes() {
+        return uploadedBytesLastFrame;
+    }
+
+    public static int getUploads() {
+        return uploadsLastFrame;
+    }
+
+    public static int getOrphans() {
+        return orphansLastFrame;
+    }
+}
@@ -5,8 +5,10 @@
 
 package meteordevelopment.meteorclient.renderer.text;
 
+import meteordevelopment.meteorclient.MeteorClient;
 import meteordevelopment.meteorclient.renderer.*;
 import meteordevelopment.meteorclient.utils.Utils;
+import meteordevelopment.meteorclient.utils.network.MeteorExecutor;
 import meteordevelopment.meteorclient.utils.render.color.Color;
 import net.minecraft.client.util.math.MatrixStack;
 import org.lwjgl.BufferUtils;
@@ -14,30 +16,135 @@ import org.lwjgl.BufferUtils;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
+import static meteordevelopment.meteorclient.MeteorClient.mc;
+
 public class CustomTextRenderer implements TextRenderer {
     public static final Color SHADOW_COLOR = new Color(60, 60, 60, 180);
 
-    private final Mesh mesh = new ShaderMesh(Shaders.TEXT, DrawMode.Triangles, Mesh.Attrib.Vec2, Mesh.Attrib.Vec2, Mesh.Attrib.Color);
+    // Height the distance field font is rasterized at, it is scaled up and down from there
+    private static final int SDF_HEIGHT = 32;
+
+    // Sizes besides the first one are released after not being drawn for this long
+    private static final long FONT_TIMEOUT = 60 * 1000;
+
+    private final Mesh mesh;
 
     public final FontFace fontFace;
+    public final boolean sdf;
 
+    /** Bakes missing sizes on another thread and draws them with the first size until they are done. */
+    public boolean backgroundBaking;
+
+    private final ByteBuffer buffer;
     private final Font[] fonts;
+    private final long[] fontsLastUsed;
+    private final boolean[] fontsBaking;
     private Font font;
 
+    private long lastReleaseCheck;
+    private boolean destroyed;
+
     private boolean building;
     private boolean scaleOnly;
-    private double scale = 1;
+
+    // Scale which draws the first font at 18 pixels, used outside begin() and end()
+    private final double baseScale;
+    private double scale;
 
     public CustomTextRenderer(FontFace fontFace) {
+        this(fontFace, false);
+    }
+
+    public CustomTextRenderer(FontFace fontFace, boolean sdf) {
         this.fontFace = fontFace;
+        this.sdf = sdf;
+
+        mesh = new ShaderMesh(sdf ? Shaders.TEXT_SDF : Shaders.TEXT, DrawMode.Triangles, Mesh.Attrib.Vec2, Mesh.Attrib.Vec2, Mesh.Attrib.Color);
 
         byte[] bytes = Utils.readBytes(fontFace.toStream());
-        ByteBuffer buffer = BufferUtils.createByteBuffer(bytes.length).put(bytes);
+        buffer = BufferUtils.createByteBuffer(bytes.length).put(bytes);
+        ((Buffer) buffer).flip();
+
+        fonts = new Font[sdf ? 1 : 5];
+        fontsLastUsed = new long[fonts.length];
+        fontsBaking = new boolean[fonts.length];
+
+        // The other sizes fall back to the first one and text is measured with it outside begin() and end(), so it's always baked
+        fonts[0] = bake(0);
 
-        fonts = new Font[5];
-        for (int i = 0; i < fonts.length; i++) {
-            ((Buffer) buffer).flip();
-            fonts[i] = new Font(buffer, (int) Math.round(18 * ((i * 0.5) + 1)));
+        baseScale = 18.0 / fonts[0].getHeight();
+        scale = baseScale;
+    }
+
+    /** The only font of a distance field renderer, it is drawn at every scale. */
+    public Font getSdfFont() {
+        return sdf ? fonts[0] : null;
+    }
+
+    /** Bytes of texture memory taken up by the font atlases baked so far. */
+    public long getAtlasBytes() {
+        long bytes = 0;
+
+        for (Font font : fonts) {
+            if (font != null) bytes += font.getAtlasBytes();
+        }
+
+        return bytes;
+    }
+
+    private Font bake(int i) {
+        if (sdf) return new Font(buffer, SDF_HEIGHT, true);
+        return new Font(buffer, (int) Math.round(18 * ((i * 0.5) + 1)));
+    }
+
+    private Font getFont(int i) {
+        fontsLastUsed[i] = System.currentTimeMillis();
+
+        if (fonts[i] != null) return fonts[i];
+
+        if (!backgroundBaking) {
+            fonts[i] = bake(i);
+            return fonts[i];
+        }
+
+        if (!fontsBaking[i]) {
+            fontsBaking[i] = true;
+
+            MeteorExecutor.execute(() -> {
+                Font font;
+
+                try {
+                    font = bake(i);
+                }
+                catch (Exception e) {
+                    // Stays marked as baking, so the size keeps using the fallback instead of failing every frame
+                    MeteorClient.LOG.error("Failed to bake font: " + fontFace, e);
+                    return;
+                }
+
+                mc.execute(() -> {
+                    fontsBaking[i] = false;
+
+                    if (destroyed) font.destroy();
+                    else fonts[i] = font;
+                });
+            });
+        }
+
+        return fonts[0];
+    }
+
+    private void releaseUnusedFonts() {
+        long time = System.currentTimeMillis();
+        if (time - lastReleaseCheck < 1000) return;
+
+        lastReleaseCheck = time;
+
+        for (int i = 1; i < fonts.length; i++) {
+            if (fonts[i] != null && time - fontsLastUsed[i] > FONT_TIMEOUT) {
+                fonts[i].destroy();
+                fonts[i] = null;
+            }
         }
     }
 
@@ -52,8 +159,10 @@ public class CustomTextRenderer implements TextRenderer {
 
         if (!scaleOnly) mesh.begin();
 
-        if (big) {
-            this.font = fonts[fonts.length - 1];
+        releaseUnusedFonts();
+
+        if (sdf || big) {
+            this.font = getFont(fonts.length - 1);
         }
         else {
             double scaleA = Math.floor(scale * 10) / 10;
@@ -65,7 +174,7 @@ public class CustomTextRenderer implements TextRenderer {
             else if (scaleA >= 1.5) scaleI = 2;
             else scaleI = 1;
 
-            font = fonts[scaleI - 1];
+            font = getFont(scaleI - 1);
         }
 
         this.building = true;
@@ -124,11 +233,20 @@ public class CustomTextRenderer implements TextRenderer {
         if (!scaleOnly) {
             mesh.end();
 
-            GL.bindTexture(font.texture.getGlId());
+            font.bindTexture();
             mesh.render(matrices);
         }
 
         building = false;
-        scale = 1;
+        scale = baseScale;
+    }
+
+    public void destroy() {
+        for (Font font : fonts) {
+            if (font != null) font.destroy();
+        }
+
+        mesh.destroy();
+        destroyed = true;
     }
 }
@@ -5,10 +5,16 @@
 
 package meteordevelopment.meteorclient.renderer.text;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+import meteordevelopment.meteorclient.renderer.GL;
 import meteordevelopment.meteorclient.renderer.Mesh;
+import meteordevelopment.meteorclient.utils.Utils;
 import meteordevelopment.meteorclient.utils.render.ByteTexture;
 import meteordevelopment.meteorclient.utils.render.color.Color;
-import net.minecraft.client.texture.AbstractTexture;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.stb.STBTTFontinfo;
 import org.lwjgl.stb.STBTTPackContext;
@@ -18,36 +24,77 @@ import org.lwjgl.system.MemoryStack;
 
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.util.Arrays;
 
+import static org.lwjgl.system.MemoryUtil.*;
+
+/**
+ * Glyphs of a font at one pixel height. The first 128 code points from space are baked when the font is created, every
+ * other code point is rasterized the first time it is drawn into one of the pages below them. Once all pages are full
+ * the page drawn least recently is cleared and reused. Distance field fonts store the distance to the glyph outline
+ * instead of coverage, they stay sharp at any scale when drawn with {@link meteordevelopment.meteorclient.renderer.Shaders#TEXT_SDF}.
+ */
 public class Font {
-    public AbstractTexture texture;
+    private static final int ATLAS_SIZE = 2048;
+    private static final int PAGE_HEIGHT = 256;
+
+    // A screen full of new glyphs is rasterized over a few frames instead of stalling one, the rest show up a bit later
+    private static final int MAX_RASTERIZED_PER_FRAME = 32;
+
+    // Pixels around distance field glyphs, the distance falls from the outline to zero over this many pixels
+    private static final int SDF_PADDING = 4;
+
+    // Layouts kept per font, longer strings are rarely drawn twice so they aren't cached at all
+    private static final int MAX_LAYOUTS = 512;
+    private static final int MAX_LAYOUT_LENGTH = 128;
+
+    private static final int NOT_RASTERIZED = -1;
+    private static final int NO_BITMAP = -2;
+
+    // Created on the render thread the first time the font is drawn, so fonts can be baked on any thread
+    public ByteTexture texture;
+    private ByteBuffer bitmap;
+
+    // stb_truetype reads glyphs straight out of the font data, so it has to outlive the font info
+    private final ByteBuffer buffer;
+    private final STBTTFontinfo fontInfo;
 
     private final int height;
+    private final boolean sdf;
     private final float scale;
     private final float ascent;
     private final CharData[] charData;
 
+    private final Int2ObjectMap<Glyph> glyphs = new Int2ObjectOpenHashMap<>();
+    private final Page[] pages;
+    private Page page;
+
+    private long rasterizedFrame;
+    private int rasterized;
+
+    // Strings drawn recently with their glyph quads, rebuilt after a page is evicted since the quads point into it
+    private final Object2ObjectLinkedOpenHashMap<String, Layout> layouts = new Object2ObjectLinkedOpenHashMap<>();
+    private final IntOpenHashSet seenStrings = new IntOpenHashSet();
+    private final Layout scratchLayout = new Layout(8 * 32);
+    private int generation;
+
+    private static long layoutHits, layoutMisses;
+
+    // Bounds of the last rasterized bitmap, including its border
+    private int bitmapX, bitmapY, bitmapWidth, bitmapHeight;
+
     public Font(ByteBuffer buffer, int height) {
+        this(buffer, height, false);
+    }
+
+    public Font(ByteBuffer buffer, int height, boolean sdf) {
+        this.buffer = buffer;
         this.height = height;
+        this.sdf = sdf;
 
         // Initialize font
-        STBTTFontinfo fontInfo = STBTTFontinfo.create();
+        fontInfo = STBTTFontinfo.create();
         STBTruetype.stbtt_InitFont(fontInfo, buffer);
-
-        // Allocate STBTTPackedchar buffer
-        charData = new CharData[128];
-        STBTTPackedchar.Buffer cdata = STBTTPackedchar.create(charData.length);
-        ByteBuffer bitmap = BufferUtils.createByteBuffer(2048 * 2048);
-
-        // Create font texture
-        STBTTPackContext packContext = STBTTPackContext.create();
-        STBTruetype.stbtt_PackBegin(packContext, bitmap, 2048, 2048, 0, 1);
-        STBTruetype.stbtt_PackSetOversampling(packContext, 2, 2);
-        STBTruetype.stbtt_PackFontRange(packContext, buffer, 0, height, 32, cdata);
-        STBTruetype.stbtt_PackEnd(packContext);
-
-        // Create texture object and get font scale
-        texture = new ByteTexture(2048, 2048, bitmap, ByteTexture.Format.A, ByteTexture.Filter.Linear, ByteTexture.Filter.Linear);
         scale = STBTruetype.stbtt_ScaleForPixelHeight(fontInfo, height);
 
         // Get font vertical ascent
@@ -57,12 +104,31 @@ public class Font {
             this.ascent = ascent.get(0);
         }
 
+        charData = new CharData[128];
+        ByteBuffer bitmap = BufferUtils.createByteBuffer(ATLAS_SIZE * ATLAS_SIZE);
+
+        // Bake into as few rows as the glyphs fit in, the rest of the atlas is left for pages
+        int bakedHeight = sdf ? bakeDistanceFields(bitmap) : bakeOversampled(bitmap);
+
+        pages = new Page[(ATLAS_SIZE - bakedHeight) / PAGE_HEIGHT];
+        for (int i = 0; i < pages.length; i++) pages[i] = new Page(i, bakedHeight + i * PAGE_HEIGHT, PAGE_HEIGHT);
+
+        this.bitmap = bitmap;
+    }
+
+    private int bakeOversampled(ByteBuffer bitmap) {
+        // Allocate STBTTPackedchar buffer
+        STBTTPackedchar.Buffer cdata = STBTTPackedchar.create(charData.length);
+
+        int bakedHeight = PAGE_HEIGHT;
+        while (!bake(bitmap, bakedHeight, cdata) && bakedHeight < ATLAS_SIZE) bakedHeight *= 2;
+
         // Populate charData array
         for (int i = 0; i < charData.length; i++) {
             STBTTPackedchar packedChar = cdata.get(i);
 
-            float ipw = 1f / 2048;
-            float iph = 1f / 2048;
+            float ipw = 1f / ATLAS_SIZE;
+            float iph = 1f / ATLAS_SIZE;
 
             charData[i] = new CharData(
                     packedChar.xoff(),
@@ -76,17 +142,84 @@ public class Font {
                     packedChar.xadvance()
             );
         }
+
+        return bakedHeight;
+    }
+
+    private boolean bake(ByteBuffer bitmap, int rows, STBTTPackedchar.Buffer cdata) {
+        memSet(memAddress(bitmap), 0, (long) rows * ATLAS_SIZE);
+
+        STBTTPackContext packContext = STBTTPackContext.create();
+        STBTruetype.stbtt_PackBegin(packContext, bitmap, ATLAS_SIZE, rows, 0, 1);
+        STBTruetype.stbtt_PackSetOversampling(packContext, 2, 2);
+        boolean packed = STBTruetype.stbtt_PackFontRange(packContext, buffer, 0, height, 32, cdata);
+        STBTruetype.stbtt_PackEnd(packContext);
+
+        return packed;
+    }
+
+    private int bakeDistanceFields(ByteBuffer bitmap) {
+        Page baked = new Page(-1, 0, ATLAS_SIZE);
+        float ipw = 1f / ATLAS_SIZE;
+
+        for (int i = 0; i < charData.length; i++) {
+            int cp = 32 + i;
+            float xAdvance = getAdvance(cp);
+
+            long pixels = rasterize(cp);
+            if (pixels == NULL || !baked.fit(bitmapWidth, bitmapHeight)) {
+                if (pixels != NULL) nmemFree(pixels);
+
+                charData[i] = new CharData(0, 0, 0, 0, 0, 0, 0, 0, xAdvance);
+                continue;
+            }
+
+            for (int row = 0; row < bitmapHeight; row++) {
+                memCopy(pixels + (long) row * bitmapWidth, memAddress(bitmap) + (long) (baked.packY + row) * ATLAS_SIZE + baked.packX, bitmapWidth);
+            }
+
+            nmemFree(pixels);
+
+            charData[i] = new CharData(
+                bitmapX,
+                bitmapY,
+                bitmapX + bitmapWidth,
+                bitmapY + bitmapHeight,
+                baked.packX * ipw,
+                baked.packY * ipw,
+                (baked.packX + bitmapWidth) * ipw,
+                (baked.packY + bitmapHeight) * ipw,
+                xAdvance
+            );
+        }
+
+        int usedHeight = baked.getUsedHeight();
+        return (usedHeight + PAGE_HEIGHT - 1) / PAGE_HEIGHT * PAGE_HEIGHT;
     }
 
     public double getWidth(String string, int length) {
+        // Widths are cheap to add up, so they only use layouts cached by rendering and don't count towards the hit rate
+        if (length == string.length() && length <= MAX_LAYOUT_LENGTH) {
+            Layout layout = layouts.get(string);
+            if (layout != null && layout.generation == generation) return layout.width;
+        }
+
         double width = 0;
 
         for (int i = 0; i < length; i++) {
             int cp = string.charAt(i);
-            if (cp < 32 || cp > 128) cp = 32;
-            CharData c = charData[cp - 32];
+            if (cp < 32) cp = 32;
+
+            if (cp < 32 + charData.length) {
+                width += charData[cp - 32].xAdvance;
+                continue;
+            }
 
-            width += c.xAdvance;
+            if (Character.isHighSurrogate((char) cp) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                cp = Character.toCodePoint((char) cp, string.charAt(++i));
+            }
+
+            width += getGlyph(cp).xAdvance;
         }
 
         return width;
@@ -96,24 +229,457 @@ public class Font {
         return height;
     }
 
+    public boolean isSdf() {
+        return sdf;
+    }
+
+    /** Bytes of texture memory the atlas takes up. */
+    public long getAtlasBytes() {
+        return (long) ATLAS_SIZE * ATLAS_SIZE;
+    }
+
     public double render(Mesh mesh, String string, double x, double y, Color color, double scale) {
+        Layout layout = getLayout(string);
+        float[] quads = layout.quads;
+
+        // Glyphs drawn from a cached layout still count as used this frame
+        for (long pages = layout.pages; pages != 0; pages &= pages - 1) {
+            this.pages[Long.numberOfTrailingZeros(pages)].lastUsedFrame = Utils.frameCount;
+        }
+
         y += ascent * this.scale * scale;
 
+        for (int i = 0; i < layout.size; i += 8) {
+            quad(mesh, x, y, scale, color, quads[i], quads[i + 1], quads[i + 2], quads[i + 3], quads[i + 4], quads[i + 5], quads[i + 6], quads[i + 7]);
+        }
+
+        return x + layout.width * scale;
+    }
+
+    private static void quad(Mesh mesh, double x, double y, double scale, Color color, float x0, float y0, float x1, float y1, float u0, float v0, float u1, float v1) {
+        mesh.quad(
+            mesh.vec2(x + x0 * scale, y + y0 * scale).vec2(u0, v0).color(color).next(),
+            mesh.vec2(x + x0 * scale, y + y1 * scale).vec2(u0, v1).color(color).next(),
+            mesh.vec2(x + x1 * scale, y + y1 * scale).vec2(u1, v1).color(color).next(),
+            mesh.vec2(x + x1 * scale, y + y0 * scale).vec2(u1, v0).color(color).next()
+        );
+    }
+
+    /** Uploads glyphs rasterized since the last call and binds the atlas, has to be called before rendering a mesh built with this font. */
+    public void bindTexture() {
+        if (texture == null) {
+            texture = new ByteTexture(ATLAS_SIZE, ATLAS_SIZE, bitmap, ByteTexture.Format.A, ByteTexture.Filter.Linear, ByteTexture.Filter.Linear);
+            bitmap = null;
+        }
+
+        for (Page page : pages) {
+            if (page.isDirty()) page.upload(texture);
+        }
+
+        GL.bindTexture(texture.getGlId());
+    }
+
+    public void destroy() {
+        if (texture != null) texture.clearGlId();
+        bitmap = null;
+        layouts.clear();
+
+        for (Page page : pages) page.free();
+    }
+
+    // Layouts
+
+    private Layout getCachedLayout(String string) {
+        if (string.length() > MAX_LAYOUT_LENGTH) return null;
+
+        Layout layout = layouts.getAndMoveToLast(string);
+
+        if (layout != null && layout.generation == generation) {
+            layoutHits++;
+            return layout;
+        }
+
+        layoutMisses++;
+        return null;
+    }
+
+    private Layout getLayout(String string) {
+        Layout layout = getCachedLayout(string);
+        if (layout != null) return layout;
+
+        Layout scratch = scratchLayout;
+        build(string, scratch);
+
+        // Strings which change every frame, like coordinates, would only push everything else out, so a string is cached the second time it's built
+        if (string.length() > MAX_LAYOUT_LENGTH || !scratch.complete) return scratch;
+        if (!layouts.containsKey(string) && seenStrings.add(string.hashCode())) {
+            if (seenStrings.size() > MAX_LAYOUTS * 4) seenStrings.clear();
+            return scratch;
+        }
+
+        layout = scratch.copy();
+        layout.generation = generation;
+
+        layouts.putAndMoveToLast(string, layout);
+        if (layouts.size() > MAX_LAYOUTS) layouts.removeFirst();
+
+        return layout;
+    }
+
+    /** Lays out the glyph quads at scale 1 with the origin on the baseline. */
+    private void build(String string, Layout layout) {
+        layout.size = 0;
+        layout.pages = 0;
+        layout.complete = true;
+
+        float x = 0;
+
         for (int i = 0; i < string.length(); i++) {
             int cp = string.charAt(i);
-            if (cp < 32 || cp > 128) cp = 32;
-            CharData c = charData[cp - 32];
-
-            mesh.quad(
-                mesh.vec2(x + c.x0 * scale, y + c.y0 * scale).vec2(c.u0, c.v0).color(color).next(),
-                mesh.vec2(x + c.x0 * scale, y + c.y1 * scale).vec2(c.u0, c.v1).color(color).next(),
-                mesh.vec2(x + c.x1 * scale, y + c.y1 * scale).vec2(c.u1, c.v1).color(color).next(),
-                mesh.vec2(x + c.x1 * scale, y + c.y0 * scale).vec2(c.u1, c.v0).color(color).next()
-            );
+            if (cp < 32) cp = 32;
+
+            if (cp < 32 + charData.length) {
+                CharData c = charData[cp - 32];
+
+                layout.add(x + c.x0, c.y0, x + c.x1, c.y1, c.u0, c.v0, c.u1, c.v1);
+                x += c.xAdvance;
+
+                continue;
+            }
+
+            if (Character.isHighSurrogate((char) cp) && i + 1 < string.length() && Character.isLowSurrogate(string.charAt(i + 1))) {
+                cp = Character.toCodePoint((char) cp, string.charAt(++i));
+            }
+
+            Glyph g = getGlyph(cp);
+            if (g.page == NOT_RASTERIZED) rasterize(cp, g);
+
+            if (g.page >= 0) {
+                // Keeps the page from being evicted by glyphs rasterized later in the string
+                pages[g.page].lastUsedFrame = Utils.frameCount;
+
+                layout.add(x + g.x0, g.y0, x + g.x1, g.y1, g.u0, g.v0, g.u1, g.v1);
+                layout.pages |= 1L << g.page;
+            }
+            else if (g.page == NOT_RASTERIZED) layout.complete = false;
+
+            x += g.xAdvance;
+        }
+
+        layout.width = x;
+    }
+
+    public static long getLayoutHits() {
+        return layoutHits;
+    }
+
+    public static long getLayoutMisses() {
+        return layoutMisses;
+    }
+
+    // Glyphs outside the baked range
+
+    private Glyph getGlyph(int cp) {
+        Glyph glyph = glyphs.get(cp);
+
+        if (glyph == null) {
+            if (STBTruetype.stbtt_FindGlyphIndex(fontInfo, cp) == 0) {
+                // Missing from the font, drawn as a space
+                glyph = new Glyph(charData[0].xAdvance);
+                glyph.page = NO_BITMAP;
+            }
+            else glyph = new Glyph(getAdvance(cp));
+
+            glyphs.put(cp, glyph);
+        }
+
+        return glyph;
+    }
+
+    private float getAdvance(int cp) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer advance = stack.mallocInt(1);
+            STBTruetype.stbtt_GetCodepointHMetrics(fontInfo, cp, advance, null);
+            return advance.get(0) * scale;
+        }
+    }
+
+    private void rasterize(int cp, Glyph glyph) {
+        if (rasterizedFrame != Utils.frameCount) {
+            rasterizedFrame = Utils.frameCount;
+            rasterized = 0;
+        }
+
+        if (rasterized >= MAX_RASTERIZED_PER_FRAME) return;
+        rasterized++;
+
+        long pixels = rasterize(cp);
+
+        if (pixels == NULL || bitmapWidth > ATLAS_SIZE || bitmapHeight > PAGE_HEIGHT) {
+            if (pixels != NULL) nmemFree(pixels);
+
+            glyph.page = NO_BITMAP;
+            return;
+        }
+
+        Page page = allocate(bitmapWidth, bitmapHeight);
+
+        if (page == null) {
+            nmemFree(pixels);
+            return;
+        }
+
+        page.write(page.packX, page.packY, bitmapWidth, bitmapHeight, pixels);
+        nmemFree(pixels);
+
+        glyph.x0 = bitmapX;
+        glyph.y0 = bitmapY;
+        glyph.x1 = bitmapX + bitmapWidth;
+        glyph.y1 = bitmapY + bitmapHeight;
+        glyph.u0 = page.packX / (float) ATLAS_SIZE;
+        glyph.v0 = page.packY / (float) ATLAS_SIZE;
+        glyph.u1 = (page.packX + bitmapWidth) / (float) ATLAS_SIZE;
+        glyph.v1 = (page.packY + bitmapHeight) / (float) ATLAS_SIZE;
+        glyph.page = page.index;
+
+        page.codePoints.add(cp);
+    }
+
+    /**
+     * Renders a glyph into newly allocated memory which has to be freed, or returns {@code NULL} if it has no pixels.
+     * The bitmap gets an empty border so linear filtering doesn't pick up its neighbours or leftovers of evicted
+     * glyphs, its bounds relative to the baseline are stored in the bitmap fields.
+     */
+    private long rasterize(int cp) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer x = stack.mallocInt(1);
+            IntBuffer y = stack.mallocInt(1);
+            IntBuffer width = stack.mallocInt(1);
+            IntBuffer height = stack.mallocInt(1);
+
+            if (sdf) {
+                ByteBuffer field = STBTruetype.stbtt_GetCodepointSDF(fontInfo, scale, cp, SDF_PADDING, (byte) 128, 128f / SDF_PADDING, width, height, x, y);
+                if (field == null) return NULL;
+
+                long pixels = allocateBitmap(x.get(0), y.get(0), width.get(0), height.get(0));
+
+                for (int row = 0; row < height.get(0); row++) {
+                    memCopy(memAddress(field) + (long) row * width.get(0), pixels + (long) (row + 1) * bitmapWidth + 1, width.get(0));
+                }
+
+                STBTruetype.stbtt_FreeSDF(field);
+                return pixels;
+            }
+
+            // Width and height hold the second corner here
+            STBTruetype.stbtt_GetCodepointBitmapBox(fontInfo, cp, scale, scale, x, y, width, height);
+
+            int x0 = x.get(0);
+            int y0 = y.get(0);
+            int w = width.get(0) - x0;
+            int h = height.get(0) - y0;
+
+            if (w <= 0 || h <= 0) return NULL;
 
-            x += c.xAdvance * scale;
+            long pixels = allocateBitmap(x0, y0, w, h);
+            STBTruetype.nstbtt_MakeCodepointBitmap(fontInfo.address(), pixels + bitmapWidth + 1, w, h, bitmapWidth, scale, scale, cp);
+
+            return pixels;
         }
+    }
+
+    private long allocateBitmap(int x, int y, int width, int height) {
+        bitmapX = x - 1;
+        bitmapY = y - 1;
+        bitmapWidth = width + 2;
+        bitmapHeight = height + 2;
+
+        long pixels = nmemCalloc(bitmapWidth, bitmapHeight);
+        if (pixels == NULL) throw new OutOfMemoryError("Failed to allocate a glyph bitmap.");
+
+        return pixels;
+    }
+
+    private Page allocate(int width, int height) {
+        if (page != null && page.fit(width, height)) return page;
 
-        return x;
+        // Empty pages were never drawn so they come first, pages drawn this frame have to stay until it is rendered
+        Page next = null;
+
+        for (Page p : pages) {
+            if (p.lastUsedFrame == Utils.frameCount) continue;
+            if (next == null || p.lastUsedFrame < next.lastUsedFrame) next = p;
+        }
+
+        if (next == null) return null;
+
+        evict(next);
+        page = next;
+
+        return page.fit(width, height) ? page : null;
+    }
+
+    private void evict(Page page) {
+        generation++;
+
+        for (int i = 0; i < page.codePoints.size(); i++) {
+            glyphs.get(page.codePoints.getInt(i)).page = NOT_RASTERIZED;
+        }
+
+        page.clear();
+    }
+
+    private static class Layout {
+        public float[] quads;
+        public int size;
+
+        public float width;
+        public long pages;
+        public boolean complete;
+        public int generation;
+
+        public Layout(int capacity) {
+            quads = new float[capacity];
+        }
+
+        public void add(float x0, float y0, float x1, float y1, float u0, float v0, float u1, float v1) {
+            if (size + 8 > quads.length) quads = Arrays.copyOf(quads, quads.length * 2);
+
+            quads[size] = x0;
+            quads[size + 1] = y0;
+            quads[size + 2] = x1;
+            quads[size + 3] = y1;
+            quads[size + 4] = u0;
+            quads[size + 5] = v0;
+            quads[size + 6] = u1;
+            quads[size + 7] = v1;
+
+            size += 8;
+        }
+
+        public Layout copy() {
+            Layout layout = new Layout(size);
+
+            System.arraycopy(quads, 0, layout.quads, 0, size);
+            layout.size = size;
+            layout.width = width;
+            layout.pages = pages;
+            layout.complete = complete;
+
+            return layout;
+        }
+    }
+
+    private static class Glyph {
+        public final float xAdvance;
+
+        public float x0, y0, x1, y1;
+        public float u0, v0, u1, v1;
+        public int page = NOT_RASTERIZED;
+
+        public Glyph(float xAdvance) {
+            this.xAdvance = xAdvance;
+        }
+    }
+
+    /**
+     * Band of the atlas filled with shelves of glyphs from left to right. Glyphs are written to a copy of the band in
+     * memory first, so everything rasterized in a frame reaches the texture as one rectangle.
+     */
+    private static class Page {
+        public final int index, y, height;
+        public final IntArrayList codePoints = new IntArrayList();
+
+        public long lastUsedFrame = -1;
+
+        private int cursorX, cursorY, shelfHeight;
+        public int packX, packY;
+
+        // Allocated when the first glyph is written, rows are a full atlas width apart
+        private long pixels = NULL;
+        private int dirtyX1, dirtyY1, dirtyX2, dirtyY2 = -1;
+
+        public Page(int index, int y, int height) {
+            this.index = index;
+            this.y = y;
+            this.height = height;
+        }
+
+        public boolean fit(int width, int height) {
+            if (cursorX + width > ATLAS_SIZE) {
+                cursorY += shelfHeight;
+                cursorX = 0;
+                shelfHeight = 0;
+            }
+
+            if (cursorY + height > this.height) return false;
+
+            packX = cursorX;
+            packY = y + cursorY;
+
+            cursorX += width;
+            shelfHeight = Math.max(shelfHeight, height);
+
+            return true;
+        }
+
+        public int getUsedHeight() {
+            return cursorY + shelfHeight;
+        }
+
+        /** Copies a tightly packed bitmap to the atlas position and grows the rectangle waiting to be uploaded. */
+        public void write(int x, int y, int width, int height, long bitmap) {
+            if (pixels == NULL) {
+                pixels = nmemCalloc(ATLAS_SIZE, this.height);
+                if (pixels == NULL) throw new OutOfMemoryError("Failed to allocate a font page.");
+            }
+
+            y -= this.y;
+
+            for (int row = 0; row < height; row++) {
+                memCopy(bitmap + (long) row * width, pixels + (long) (y + row) * ATLAS_SIZE + x, width);
+            }
+
+            if (!isDirty()) {
+                dirtyX1 = x;
+                dirtyY1 = y;
+                dirtyX2 = x + width;
+                dirtyY2 = y + height;
+            }
+            else {
+                dirtyX1 = Math.min(dirtyX1, x);
+                dirtyY1 = Math.min(dirtyY1, y);
+                dirtyX2 = Math.max(dirtyX2, x + width);
+                dirtyY2 = Math.max(dirtyY2, y + height);
+            }
+        }
+
+        public boolean isDirty() {
+            return dirtyY2 != -1;
+        }
+
+        public void upload(ByteTexture texture) {
+            long start = pixels + (long) dirtyY1 * ATLAS_SIZE + dirtyX1;
+            texture.upload(dirtyX1, y + dirtyY1, dirtyX2 - dirtyX1, dirtyY2 - dirtyY1, ATLAS_SIZE, ByteTexture.Format.A, start);
+
+            dirtyY2 = -1;
+        }
+
+        public void free() {
+            if (pixels != NULL) {
+                nmemFree(pixels);
+                pixels = NULL;
+            }
+
+            dirtyY2 = -1;
+        }
+
+        public void clear() {
+            codePoints.clear();
+
+            cursorX = 0;
+            cursorY = 0;
+            shelfHeight = 0;
+        }
     }
 }
@@ -5,6 +5,7 @@
 
 package meteordevelopment.meteorclient.settings;
 
+import meteordevelopment.meteorclient.utils.misc.RegistryIdSet;
 import net.minecraft.block.Block;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
@@ -22,10 +23,24 @@ import java.util.function.Predicate;
 public class BlockListSetting extends Setting<List<Block>> {
     public final Predicate<Block> filter;
 
+    private final RegistryIdSet<Block> ids = new RegistryIdSet<>(Registries.BLOCK);
+
     public BlockListSetting(String name, String description, List<Block> defaultValue, Consumer<List<Block>> onChanged, Consumer<Setting<List<Block>>> onModuleActivated, Predicate<Block> filter, IVisible visible) {
         super(name, description, defaultValue, onChanged, onModuleActivated, visible);
 
         this.filter = filter;
+
+        ids.update(value);
+    }
+
+    @Override
+    public void onChanged() {
+        ids.update(value);
+        super.onChanged();
+    }
+
+    public boolean contains(Block block) {
+        return ids.contains(block);
     }
 
     @Override
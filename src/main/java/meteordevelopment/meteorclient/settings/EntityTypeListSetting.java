@@ -7,6 +7,7 @@ package meteordevelopment.meteorclient.settings;
 
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import meteordevelopment.meteorclient.utils.entity.EntityUtils;
+import meteordevelopment.meteorclient.utils.misc.RegistryIdSet;
 import net.minecraft.entity.EntityType;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
@@ -22,10 +23,24 @@ import java.util.function.Predicate;
 public class EntityTypeListSetting extends Setting<Set<EntityType<?>>> {
     public final Predicate<EntityType<?>> filter;
 
+    private final RegistryIdSet<EntityType<?>> ids = new RegistryIdSet<>(Registries.ENTITY_TYPE);
+
     public EntityTypeListSetting(String name, String description, Set<EntityType<?>> defaultValue, Consumer<Set<EntityType<?>>> onChanged, Consumer<Setting<Set<EntityType<?>>>> onModuleActivated, IVisible visible, Predicate<EntityType<?>> filter) {
         super(name, description, defaultValue, onChanged, onModuleActivated, visible);
 
         this.filter = filter;
+
+        ids.update(value);
+    }
+
+    @Override
+    public void onChanged() {
+        ids.update(value);
+        super.onChanged();
+    }
+
+    public boolean contains(EntityType<?> entityType) {
+        return ids.contains(entityType);
     }
 
     @Override
@@ -5,6 +5,7 @@
 
 package meteordevelopment.meteorclient.settings;
 
+import meteordevelopment.meteorclient.utils.misc.RegistryIdSet;
 import net.minecraft.item.Item;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
@@ -23,11 +24,25 @@ public class ItemListSetting extends Setting<List<Item>> {
     public final Predicate<Item> filter;
     private final boolean bypassFilterWhenSavingAndLoading;
 
+    private final RegistryIdSet<Item> ids = new RegistryIdSet<>(Registries.ITEM);
+
     public ItemListSetting(String name, String description, List<Item> defaultValue, Consumer<List<Item>> onChanged, Consumer<Setting<List<Item>>> onModuleActivated, IVisible visible, Predicate<Item> filter, boolean bypassFilterWhenSavingAndLoading) {
         super(name, description, defaultValue, onChanged, onModuleActivated, visible);
 
         this.filter = filter;
         this.bypassFilterWhenSavingAndLoading = bypassFilterWhenSavingAndLoading;
+
+        ids.update(value);
+    }
+
+    @Override
+    public void onChanged() {
+        ids.update(value);
+        super.onChanged();
+    }
+
+    public boolean contains(Item item) {
+        return ids.contains(item);
     }
 
     @Override
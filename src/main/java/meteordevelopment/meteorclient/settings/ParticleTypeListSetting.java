@@ -5,6 +5,7 @@
 
 package meteordevelopment.meteorclient.settings;
 
+import meteordevelopment.meteorclient.utils.misc.RegistryIdSet;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
 import net.minecraft.nbt.NbtList;
@@ -20,8 +21,22 @@ import java.util.List;
 import java.util.function.Consumer;
 
 public class ParticleTypeListSetting extends Setting<List<ParticleType<?>>> {
+    private final RegistryIdSet<ParticleType<?>> ids = new RegistryIdSet<>(Registries.PARTICLE_TYPE);
+
     public ParticleTypeListSetting(String name, String description, List<ParticleType<?>> defaultValue, Consumer<List<ParticleType<?>>> onChanged, Consumer<Setting<List<ParticleType<?>>>> onModuleActivated, IVisible visible) {
         super(name, description, defaultValue, onChanged, onModuleActivated, visible);
+
+        ids.update(value);
+    }
+
+    @Override
+    public void onChanged() {
+        ids.update(value);
+        super.onChanged();
+    }
+
+    public boolean contains(ParticleType<?> particleType) {
+        return ids.contains(particleType);
     }
 
     @Override
@@ -5,6 +5,7 @@
 
 package meteordevelopment.meteorclient.settings;
 
+import meteordevelopment.meteorclient.utils.misc.RegistryIdSet;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
 import net.minecraft.nbt.NbtList;
@@ -19,8 +20,22 @@ import java.util.List;
 import java.util.function.Consumer;
 
 public class SoundEventListSetting extends Setting<List<SoundEvent>> {
+    private final RegistryIdSet<SoundEvent> ids = new RegistryIdSet<>(Registries.SOUND_EVENT);
+
     public SoundEventListSetting(String name, String description, List<SoundEvent> defaultValue, Consumer<List<SoundEvent>> onChanged, Consumer<Setting<List<SoundEvent>>> onModuleActivated, IVisible visible) {
         super(name, description, defaultValue, onChanged, onModuleActivated, visible);
+
+        ids.update(value);
+    }
+
+    @Override
+    public void onChanged() {
+        ids.update(value);
+        super.onChanged();
+    }
+
+    public boolean contains(SoundEvent sound) {
+        return ids.contains(sound);
     }
 
     @Override
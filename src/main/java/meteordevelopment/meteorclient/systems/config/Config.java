@@ -46,6 +46,34 @@ public class Config extends System<Config> {
         .build()
     );
 
+    public final Setting<Boolean> sdfFont = sgVisual.add(new BoolSetting.Builder()
+        .name("距离场字体")
+        .description("所有大小共用一张距离场字体图集,占用更少显存,切换字体也更快")
+        .defaultValue(false)
+        .visible(customFont::get)
+        .onChanged(value -> Fonts.load(font.get()))
+        .build()
+    );
+
+    public final Setting<Boolean> backgroundFontBaking = sgVisual.add(new BoolSetting.Builder()
+        .name("后台烘焙字体")
+        .description("在后台线程生成新的字体大小,完成前先用较小的字体代替,避免卡顿")
+        .defaultValue(true)
+        .visible(customFont::get)
+        .onChanged(value -> {
+            if (Fonts.RENDERER != null) Fonts.RENDERER.backgroundBaking = value;
+        })
+        .build()
+    );
+
+    public final Setting<Integer> cullDistance = sgVisual.add(new IntSetting.Builder()
+        .name("渲染剔除距离")
+        .description("离镜头超过这个距离的方框不再渲染,0为不限制")
+        .defaultValue(0)
+        .min(0).sliderMax(256)
+        .build()
+    );
+
     public final Setting<Double> rainbowSpeed = sgVisual.add(new DoubleSetting.Builder()
         .name("彩色渐变速度")
         .description("控制全局彩色渐变速度")
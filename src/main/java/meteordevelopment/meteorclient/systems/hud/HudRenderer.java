@@ -50,6 +50,9 @@ public class HudRenderer {
         })
         .build(CacheLoader.from(HudRenderer::loadFont));
 
+    // Distance field fonts are drawn at every height, so there's only one
+    private FontHolder sdfFontHolder;
+
     public DrawContext drawContext;
     public double delta;
 
@@ -78,7 +81,7 @@ public class HudRenderer {
                 FontHolder fontHolder = it.next();
 
                 if (fontHolder.visited) {
-                    GL.bindTexture(fontHolder.font.texture.getGlId());
+                    fontHolder.font.bindTexture();
                     fontHolder.getMesh().render(null);
                 }
                 else {
@@ -88,6 +91,12 @@ public class HudRenderer {
 
                 fontHolder.visited = false;
             }
+
+            if (sdfFontHolder != null && sdfFontHolder.visited) {
+                sdfFontHolder.font.bindTexture();
+                sdfFontHolder.getMesh().render(null);
+                sdfFontHolder.visited = false;
+            }
         }
         else {
             VanillaTextRenderer.INSTANCE.end();
@@ -137,6 +146,8 @@ public class HudRenderer {
         Font font = fontHolder.font;
         Mesh mesh = fontHolder.getMesh();
 
+        scale *= getFontScale(font, scale);
+
         double width;
 
         if (shadow) {
@@ -162,8 +173,12 @@ public class HudRenderer {
         if (text.isEmpty()) return 0;
 
         if (hud.hasCustomFont()) {
-            double width = getFont(scale).getWidth(text, text.length());
-            return (width + (shadow ? 1 : 0)) * (scale == -1 ? hud.getTextScale() : scale) + (shadow ? 1 : 0);
+            if (scale == -1) scale = hud.getTextScale();
+
+            Font font = getFont(scale);
+            double width = font.getWidth(text, text.length()) * getFontScale(font, scale);
+
+            return (width + (shadow ? 1 : 0)) * scale + (shadow ? 1 : 0);
         }
 
         VanillaTextRenderer.INSTANCE.scale = (scale == -1 ? hud.getTextScale() : scale) * 2;
@@ -181,8 +196,12 @@ public class HudRenderer {
 
     public double textHeight(boolean shadow, double scale) {
         if (hud.hasCustomFont()) {
-            double height = getFont(scale).getHeight() + 1;
-            return (height + (shadow ? 1 : 0)) * (scale == -1 ? hud.getTextScale() : scale);
+            if (scale == -1) scale = hud.getTextScale();
+
+            Font font = getFont(scale);
+            double height = font.getHeight() * getFontScale(font, scale) + 1;
+
+            return (height + (shadow ? 1 : 0)) * scale;
         }
 
         VanillaTextRenderer.INSTANCE.scale = (scale == -1 ? hud.getTextScale() : scale) * 2;
@@ -212,6 +231,14 @@ public class HudRenderer {
         if (scale == -1) scale = hud.getTextScale();
         int height = (int) Math.round(scale / SCALE_TO_HEIGHT);
 
+        Font sdfFont = Fonts.RENDERER.getSdfFont();
+        if (sdfFont != null) {
+            if (sdfFontHolder == null) sdfFontHolder = new FontHolder(sdfFont, false);
+            if (render) sdfFontHolder.visited = true;
+
+            return sdfFontHolder;
+        }
+
         // Check fonts in use
         FontHolder fontHolder = fontsInUse.get(height);
         if (fontHolder != null) {
@@ -239,42 +266,52 @@ public class HudRenderer {
         return getFontHolder(scale, false).font;
     }
 
+    /** Scale a font is drawn at on top of the text scale, so it matches the height a font baked for that scale would have. */
+    private static double getFontScale(Font font, double scale) {
+        return Math.round(scale / SCALE_TO_HEIGHT) / (double) font.getHeight();
+    }
+
     @EventHandler
     private void onCustomFontChanged(CustomFontChangedEvent event) {
         // Need to destroy both fonts in use and in cache because they were not evicted from the cache automatically
         for (FontHolder fontHolder : fontsInUse.values()) fontHolder.destroy();
         for (FontHolder fontHolder : fontCache.asMap().values()) fontHolder.destroy();
+        if (sdfFontHolder != null) sdfFontHolder.destroy();
 
         // Clear collections
         fontsInUse.clear();
         fontCache.invalidateAll();
+        sdfFontHolder = null;
     }
 
     private static FontHolder loadFont(int height) {
         byte[] data = Utils.readBytes(Fonts.RENDERER.fontFace.toStream());
         ByteBuffer buffer = BufferUtils.createByteBuffer(data.length).put(data).flip();
 
-        return new FontHolder(new Font(buffer, height));
+        return new FontHolder(new Font(buffer, height), true);
     }
 
     private static class FontHolder {
         public final Font font;
         public boolean visited;
 
+        // The distance field font belongs to the text renderer
+        private final boolean ownsFont;
         private Mesh mesh;
 
-        public FontHolder(Font font) {
+        public FontHolder(Font font, boolean ownsFont) {
             this.font = font;
+            this.ownsFont = ownsFont;
         }
 
         public Mesh getMesh() {
-            if (mesh == null) mesh = new ShaderMesh(Shaders.TEXT, DrawMode.Triangles, Mesh.Attrib.Vec2, Mesh.Attrib.Vec2, Mesh.Attrib.Color);
+            if (mesh == null) mesh = new ShaderMesh(font.isSdf() ? Shaders.TEXT_SDF : Shaders.TEXT, DrawMode.Triangles, Mesh.Attrib.Vec2, Mesh.Attrib.Vec2, Mesh.Attrib.Color);
             if (!mesh.isBuilding()) mesh.begin();
             return mesh;
         }
 
         public void destroy() {
-            font.texture.clearGlId();
+            if (ownsFont) font.destroy();
             if (mesh != null) mesh.destroy();
         }
     }
@@ -33,6 +33,7 @@ import meteordevelopment.meteorclient.utils.render.color.SettingColor;
 import meteordevelopment.meteorclient.utils.world.BlockIterator;
 import meteordevelopment.meteorclient.utils.world.BlockUtils;
 import meteordevelopment.meteorclient.utils.world.TickRate;
+import meteordevelopment.meteorclient.utils.world.WorldWindow;
 import meteordevelopment.orbit.EventHandler;
 import meteordevelopment.orbit.EventPriority;
 import net.minecraft.block.Blocks;
@@ -910,20 +911,18 @@ public class CrystalAura extends Module {
         AtomicReference<BlockPos.Mutable> bestBlockPos = new AtomicReference<>(new BlockPos.Mutable());
         AtomicBoolean isSupport = new AtomicBoolean(support.get() != SupportMode.Disabled);
 
-        // Find best position to place the crystal on
-        BlockIterator.register((int) Math.ceil(placeRange.get()), (int) Math.ceil(placeRange.get()), (bp, blockState) -> {
+        // Find best position to place the crystal on, the air checks reach 2 blocks above the searched area
+        int range = (int) Math.ceil(placeRange.get());
+        WorldWindow.request(range, range + 2);
+
+        BlockIterator.register(range, range, (bp, blockState) -> {
             // Check if its bedrock or obsidian and return if isSupport is false
             boolean hasBlock = blockState.isOf(Blocks.BEDROCK) || blockState.isOf(Blocks.OBSIDIAN);
             if (!hasBlock && (!isSupport.get() || !blockState.isReplaceable())) return;
 
             // Check if there is air on top
-            blockPos.set(bp.getX(), bp.getY() + 1, bp.getZ());
-            if (!mc.world.getBlockState(blockPos).isAir()) return;
-
-            if (placement112.get()) {
-                blockPos.move(0, 1, 0);
-                if (!mc.world.getBlockState(blockPos).isAir()) return;
-            }
+            if (!WorldWindow.getBlockState(bp.getX(), bp.getY() + 1, bp.getZ()).isAir()) return;
+            if (placement112.get() && !WorldWindow.getBlockState(bp.getX(), bp.getY() + 2, bp.getZ()).isAir()) return;
 
             // Check range
             ((IVec3d) vec3d).set(bp.getX() + 0.5, bp.getY() + 1, bp.getZ() + 0.5);
@@ -7,7 +7,6 @@ package meteordevelopment.meteorclient.systems.modules.combat;
 
 import meteordevelopment.meteorclient.events.render.Render3DEvent;
 import meteordevelopment.meteorclient.events.world.TickEvent;
-import meteordevelopment.meteorclient.mixin.AbstractBlockAccessor;
 import meteordevelopment.meteorclient.mixininterface.IBox;
 import meteordevelopment.meteorclient.renderer.ShapeMode;
 import meteordevelopment.meteorclient.settings.*;
@@ -19,13 +18,11 @@ import meteordevelopment.meteorclient.utils.player.FindItemResult;
 import meteordevelopment.meteorclient.utils.player.InvUtils;
 import meteordevelopment.meteorclient.utils.render.color.Color;
 import meteordevelopment.meteorclient.utils.render.color.SettingColor;
-import meteordevelopment.meteorclient.utils.world.BlockIterator;
 import meteordevelopment.meteorclient.utils.world.BlockUtils;
-import meteordevelopment.meteorclient.utils.world.Dir;
+import meteordevelopment.meteorclient.utils.world.HoleIndex;
 import meteordevelopment.orbit.EventHandler;
 import meteordevelopment.orbit.EventPriority;
 import net.minecraft.block.Block;
-import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.entity.TntEntity;
 import net.minecraft.entity.decoration.EndCrystalEntity;
@@ -246,54 +243,36 @@ public class HoleFiller extends Module {
         FindItemResult block = InvUtils.findInHotbar(itemStack -> blocks.get().contains(Block.getBlockFromItem(itemStack.getItem())));
         if (!block.found()) return;
 
-        BlockIterator.register(searchRadius.get(), searchRadius.get(), (blockPos, blockState) -> {
-            if (!validHole(blockPos)) return;
+        HoleIndex.request(searchRadius.get(), searchRadius.get());
 
-            int bedrock = 0, obsidian = 0;
-            Direction air = null;
+        int px = mc.player.getBlockX();
+        int py = mc.player.getBlockY();
+        int pz = mc.player.getBlockZ();
 
-            for (Direction direction : Direction.values()) {
-                if (direction == Direction.UP) continue;
+        for (HoleIndex.Hole hole : HoleIndex.getHoles()) {
+            BlockPos pos = hole.pos();
+            if (Math.abs(pos.getX() - px) > searchRadius.get() || Math.abs(pos.getY() - py) > searchRadius.get() || Math.abs(pos.getZ() - pz) > searchRadius.get()) continue;
 
-                BlockState state = mc.world.getBlockState(blockPos.offset(direction));
+            // Holes a player can stand in
+            if (hole.height() < 2 || hole.web()) continue;
+            if (hole.isDouble() && !doubles.get()) continue;
 
-                if (state.getBlock() == Blocks.BEDROCK) bedrock++;
-                else if (state.getBlock() == Blocks.OBSIDIAN) obsidian++;
-                else if (direction == Direction.DOWN) return;
-                else if (validHole(blockPos.offset(direction)) && air == null) {
-                    for (Direction dir : Direction.values()) {
-                        if (dir == direction.getOpposite() || dir == Direction.UP) continue;
+            if (!validHole(pos)) continue;
+            if (hole.isDouble() && !validHole(pos.offset(hole.partner()))) continue;
 
-                        BlockState blockState1 = mc.world.getBlockState(blockPos.offset(direction).offset(dir));
-
-                        if (blockState1.getBlock() == Blocks.BEDROCK) bedrock++;
-                        else if (blockState1.getBlock() == Blocks.OBSIDIAN) obsidian++;
-                        else return;
-                    }
-
-                    air = direction;
-                }
-
-                if (obsidian + bedrock == 5 && air == null) holes.add(new Hole(blockPos, (byte) 0));
-                else if (obsidian + bedrock == 8 && doubles.get() && air != null) {
-                    holes.add(new Hole(blockPos, Dir.get(air)));
-                }
-            }
-        });
-
-        BlockIterator.after(() -> {
-            if (timer > 0 || holes.isEmpty()) return;
+            holes.add(new Hole(pos, hole.exclude()));
+        }
 
-            int bpt = 0;
-            for (Hole hole : holes) {
-                if (bpt >= blocksPerTick.get()) continue;
-                if (BlockUtils.place(hole.blockPos, block, rotate.get(), 10, swing.get(), true)) bpt++;
-            }
+        timer--;
+        if (timer > 0 || holes.isEmpty()) return;
 
-            timer = placeDelay.get();
-        });
+        int bpt = 0;
+        for (Hole hole : holes) {
+            if (bpt >= blocksPerTick.get()) continue;
+            if (BlockUtils.place(hole.blockPos, block, rotate.get(), 10, swing.get(), true)) bpt++;
+        }
 
-        timer--;
+        timer = placeDelay.get();
     }
 
     @EventHandler(priority = EventPriority.HIGH)
@@ -319,12 +298,6 @@ public class HoleFiller extends Module {
 
         if (mc.player.getBlockPos().equals(testPos)) return false;
         if (distance(mc.player, testPos, false) > placeRange.get()) return false;
-        if (mc.world.getBlockState(testPos).getBlock() == Blocks.COBWEB) return false;
-
-        if (((AbstractBlockAccessor) mc.world.getBlockState(testPos).getBlock()).isCollidable()) return false;
-        testPos.add(0, 1, 0);
-        if (((AbstractBlockAccessor) mc.world.getBlockState(testPos).getBlock()).isCollidable()) return false;
-        testPos.add(0, -1, 0);
 
         ((IBox) box).set(pos);
         if (!mc.world.getOtherEntities(null, box, entity
@@ -7,7 +7,6 @@ package meteordevelopment.meteorclient.systems.modules.render;
 
 import meteordevelopment.meteorclient.events.render.Render3DEvent;
 import meteordevelopment.meteorclient.events.world.TickEvent;
-import meteordevelopment.meteorclient.mixin.AbstractBlockAccessor;
 import meteordevelopment.meteorclient.renderer.Renderer3D;
 import meteordevelopment.meteorclient.renderer.ShapeMode;
 import meteordevelopment.meteorclient.settings.*;
@@ -15,23 +14,21 @@ import meteordevelopment.meteorclient.systems.modules.Categories;
 import meteordevelopment.meteorclient.systems.modules.Module;
 import meteordevelopment.meteorclient.systems.modules.Modules;
 import meteordevelopment.meteorclient.utils.misc.Pool;
+import meteordevelopment.meteorclient.utils.render.GreedyMesher;
 import meteordevelopment.meteorclient.utils.render.color.Color;
 import meteordevelopment.meteorclient.utils.render.color.SettingColor;
-import meteordevelopment.meteorclient.utils.world.BlockIterator;
 import meteordevelopment.meteorclient.utils.world.Dir;
+import meteordevelopment.meteorclient.utils.world.HoleIndex;
 import meteordevelopment.orbit.EventHandler;
-import net.minecraft.block.Block;
-import net.minecraft.block.BlockState;
-import net.minecraft.block.Blocks;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.util.math.Direction;
-import net.minecraft.world.chunk.WorldChunk;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class HoleESP extends Module {
+    private static final Hole.Type[] HOLE_TYPES = Hole.Type.values();
+
     private final SettingGroup sgGeneral = settings.getDefaultGroup();
     private final SettingGroup sgRender = settings.createGroup("Render");
 
@@ -59,8 +56,8 @@ public class HoleESP extends Module {
         .name("min-height")
         .description("Minimum hole height required to be rendered.")
         .defaultValue(3)
-        .min(1)
-        .sliderMin(1)
+        .range(1, HoleIndex.MAX_HEIGHT)
+        .sliderRange(1, HoleIndex.MAX_HEIGHT)
         .build()
     );
 
@@ -94,6 +91,13 @@ public class HoleESP extends Module {
         .build()
     );
 
+    private final Setting<Boolean> mergeFaces = sgRender.add(new BoolSetting.Builder()
+        .name("merge-faces")
+        .description("Merges the faces and edges of double holes into a single shape.")
+        .defaultValue(false)
+        .build()
+    );
+
     private final Setting<Double> height = sgRender.add(new DoubleSetting.Builder()
         .name("height")
         .description("The height of rendering.")
@@ -161,7 +165,7 @@ public class HoleESP extends Module {
     private final Pool<Hole> holePool = new Pool<>(Hole::new);
     private final List<Hole> holes = new ArrayList<>();
 
-    private final byte NULL = 0;
+    private final GreedyMesher mesher = new GreedyMesher();
 
     public HoleESP() {
         super(Categories.Render, "hole-esp", "Displays holes that you will take less damage in.");
@@ -172,63 +176,120 @@ public class HoleESP extends Module {
         for (Hole hole : holes) holePool.free(hole);
         holes.clear();
 
-        BlockIterator.register(horizontalRadius.get(), verticalRadius.get(), (blockPos, blockState) -> {
-            if (!validHole(blockPos)) return;
+        HoleIndex.request(horizontalRadius.get(), verticalRadius.get());
 
-            int bedrock = 0, obsidian = 0;
-            Direction air = null;
+        int px = mc.player.getBlockX();
+        int py = mc.player.getBlockY();
+        int pz = mc.player.getBlockZ();
 
-            for (Direction direction : Direction.values()) {
-                if (direction == Direction.UP) continue;
-                BlockPos offsetPos = blockPos.offset(direction);
-                BlockState state = mc.world.getBlockState(offsetPos);
+        for (HoleIndex.Hole hole : HoleIndex.getHoles()) {
+            BlockPos pos = hole.pos();
 
-                if (state.getBlock() == Blocks.BEDROCK) bedrock++;
-                else if (state.getBlock() == Blocks.OBSIDIAN) obsidian++;
-                else if (direction == Direction.DOWN) return;
-                else if (doubles.get() && air == null && validHole(offsetPos)) {
-                    for (Direction dir : Direction.values()) {
-                        if (dir == direction.getOpposite() || dir == Direction.UP) continue;
+            // The index can cover a larger area when other modules use it too
+            if (Math.abs(pos.getX() - px) > horizontalRadius.get() || Math.abs(pos.getY() - py) > verticalRadius.get() || Math.abs(pos.getZ() - pz) > horizontalRadius.get()) continue;
 
-                        BlockState blockState1 = mc.world.getBlockState(offsetPos.offset(dir));
+            if (hole.height() < holeHeight.get()) continue;
+            if (hole.isDouble() && !doubles.get()) continue;
+            if (hole.web() && !webs.get()) continue;
+            if (ignoreOwn.get() && hole.covers(px, py, pz)) continue;
 
-                        if (blockState1.getBlock() == Blocks.BEDROCK) bedrock++;
-                        else if (blockState1.getBlock() == Blocks.OBSIDIAN) obsidian++;
-                        else return;
-                    }
-
-                    air = direction;
-                }
-            }
+            holes.add(holePool.get().set(pos, getType(hole.type()), hole.exclude()));
+        }
+    }
 
-            if (obsidian + bedrock == 5 && air == null) {
-                holes.add(holePool.get().set(blockPos, obsidian == 5 ? Hole.Type.Obsidian : (bedrock == 5 ? Hole.Type.Bedrock : Hole.Type.Mixed), NULL));
-            }
-            else if (obsidian + bedrock == 8 && doubles.get() && air != null) {
-                holes.add(holePool.get().set(blockPos, obsidian == 8 ? Hole.Type.Obsidian : (bedrock == 8 ? Hole.Type.Bedrock : Hole.Type.Mixed), Dir.get(air)));
-            }
-        });
+    private static Hole.Type getType(HoleIndex.Type type) {
+        return switch (type) {
+            case Bedrock -> Hole.Type.Bedrock;
+            case Obsidian -> Hole.Type.Obsidian;
+            case Mixed -> Hole.Type.Mixed;
+        };
     }
 
-    private boolean validHole(BlockPos pos) {
-        if (ignoreOwn.get() && mc.player.getBlockPos().equals(pos)) return false;
+    @EventHandler
+    private void onRender(Render3DEvent event) {
+        if (mergeFaces.get()) {
+            renderMerged(event.renderer);
+            return;
+        }
 
-        WorldChunk chunk = mc.world.getChunk(ChunkSectionPos.getSectionCoord(pos.getX()), ChunkSectionPos.getSectionCoord(pos.getZ()));
-        Block block = chunk.getBlockState(pos).getBlock();
-        if (!webs.get() && block == Blocks.COBWEB) return false;
+        for (HoleESP.Hole hole : holes) {
+            BlockPos pos = hole.blockPos;
+            if (!event.renderer.culling.isVisible(pos.getX(), pos.getY(), pos.getZ(), pos.getX() + 1, pos.getY() + height.get(), pos.getZ() + 1)) continue;
 
-        if (((AbstractBlockAccessor) block).isCollidable()) return false;
+            hole.render(event.renderer, shapeMode.get(), height.get(), topQuad.get(), bottomQuad.get());
+        }
+    }
+
+    private void renderMerged(Renderer3D renderer) {
+        mesher.begin(height.get(), false, null);
 
-        for (int i = 0; i < holeHeight.get(); i++) {
-            if (((AbstractBlockAccessor) chunk.getBlockState(pos.up(i)).getBlock()).isCollidable()) return false;
+        for (HoleESP.Hole hole : holes) {
+            BlockPos pos = hole.blockPos;
+            if (!renderer.culling.isVisible(pos.getX(), pos.getY(), pos.getZ(), pos.getX() + 1, pos.getY() + height.get(), pos.getZ() + 1)) continue;
+
+            // Holes are only ever next to each other when they form a double hole, which always has a single type
+            mesher.add(pos.getX(), pos.getY(), pos.getZ(), hole.type.ordinal());
         }
 
-        return true;
+        if (mesher.isEmpty()) return;
+
+        ShapeMode mode = shapeMode.get();
+
+        mesher.end(new GreedyMesher.Output() {
+            @Override
+            public void face(Direction side, double x1, double y1, double z1, double x2, double y2, double z2, int key) {
+                if (!mode.sides()) return;
+
+                Hole.Type type = HOLE_TYPES[key];
+                Color top = getTopColor(type);
+                Color bottom = getBottomColor(type);
+
+                int originalTopA = top.a;
+                int originalBottomA = bottom.a;
+
+                top.a = originalTopA / 2;
+                bottom.a = originalBottomA / 2;
+
+                switch (side) {
+                    case UP -> {
+                        if (topQuad.get()) renderer.quad(x1, y1, z1, x1, y1, z2, x2, y1, z2, x2, y1, z1, top);
+                    }
+                    case DOWN -> {
+                        if (bottomQuad.get()) renderer.quad(x1, y1, z1, x1, y1, z2, x2, y1, z2, x2, y1, z1, bottom);
+                    }
+                    default -> renderer.gradientQuadVertical(x1, y1, z1, x2, y2, z2, top, bottom);
+                }
+
+                top.a = originalTopA;
+                bottom.a = originalBottomA;
+            }
+
+            @Override
+            public void line(double x1, double y1, double z1, double x2, double y2, double z2, int key, boolean top) {
+                if (!mode.lines()) return;
+
+                Hole.Type type = HOLE_TYPES[key];
+
+                if (y1 != y2) renderer.line(x1, y1, z1, x2, y2, z2, getBottomColor(type), getTopColor(type));
+                else renderer.line(x1, y1, z1, x2, y2, z2, top ? getTopColor(type) : getBottomColor(type));
+            }
+        });
     }
 
-    @EventHandler
-    private void onRender(Render3DEvent event) {
-        for (HoleESP.Hole hole : holes) hole.render(event.renderer, shapeMode.get(), height.get(), topQuad.get(), bottomQuad.get());
+    private Color getTopColor(Hole.Type type) {
+        return switch (type) {
+            case Obsidian -> obsidianColorTop.get();
+            case Bedrock  -> bedrockColorTop.get();
+            default       -> mixedColorTop.get();
+        };
+    }
+
+    private Color getBottomColor(Hole.Type type) {
+        return switch (type) {
+            case Obsidian -> obsidianColorBottom.get();
+            case Bedrock  -> bedrockColorBottom.get();
+            default       -> mixedColorBottom.get();
+        };
     }
 
     private static class Hole {
@@ -245,19 +306,11 @@ public class HoleESP extends Module {
         }
 
         public Color getTopColor() {
-            return switch (this.type) {
-                case Obsidian -> Modules.get().get(HoleESP.class).obsidianColorTop.get();
-                case Bedrock  -> Modules.get().get(HoleESP.class).bedrockColorTop.get();
-                default       -> Modules.get().get(HoleESP.class).mixedColorTop.get();
-            };
+            return Modules.get().get(HoleESP.class).getTopColor(type);
         }
 
         public Color getBottomColor() {
-            return switch (this.type) {
-                case Obsidian -> Modules.get().get(HoleESP.class).obsidianColorBottom.get();
-                case Bedrock  -> Modules.get().get(HoleESP.class).bedrockColorBottom.get();
-                default       -> Modules.get().get(HoleESP.class).mixedColorBottom.get();
-            };
+            return Modules.get().get(HoleESP.class).getBottomColor(type);
         }
 
         public void render(Renderer3D renderer, ShapeMode mode, double height, boolean topQuad, boolean bottomQuad) {
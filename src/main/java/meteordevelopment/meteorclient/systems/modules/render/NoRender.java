@@ -13,12 +13,8 @@ import meteordevelopment.meteorclient.systems.modules.Module;
 import meteordevelopment.orbit.EventHandler;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
-import net.minecraft.particle.ParticleType;
 import net.minecraft.particle.ParticleTypes;
 
-import java.util.List;
-import java.util.Set;
-
 public class NoRender extends Module {
     private final SettingGroup sgOverlay = settings.createGroup("Overlay");
     private final SettingGroup sgHUD = settings.createGroup("HUD");
@@ -277,7 +273,7 @@ public class NoRender extends Module {
         .build()
     );
 
-    private final Setting<List<ParticleType<?>>> particles = sgWorld.add(new ParticleTypeListSetting.Builder()
+    private final ParticleTypeListSetting particles = sgWorld.add(new ParticleTypeListSetting.Builder()
         .name("particles")
         .description("Particles to not render.")
         .build()
@@ -300,7 +296,7 @@ public class NoRender extends Module {
 
     // Entity
 
-    private final Setting<Set<EntityType<?>>> entities = sgEntity.add(new EntityTypeListSetting.Builder()
+    private final EntityTypeListSetting entities = sgEntity.add(new EntityTypeListSetting.Builder()
         .name("entities")
         .description("Disables rendering of selected entities.")
         .build()
@@ -521,7 +517,7 @@ public class NoRender extends Module {
     private void onAddParticle(ParticleEvent event) {
         if (noWeather.get() && event.particle.getType() == ParticleTypes.RAIN) event.cancel();
         else if (noFireworkExplosions.get() && event.particle.getType() == ParticleTypes.FIREWORK) event.cancel();
-        else if (particles.get().contains(event.particle.getType())) event.cancel();
+        else if (particles.contains(event.particle.getType())) event.cancel();
     }
 
     public boolean noBarrierInvis() {
@@ -535,11 +531,11 @@ public class NoRender extends Module {
     // Entity
 
     public boolean noEntity(Entity entity) {
-        return isActive() && entities.get().contains(entity.getType());
+        return isActive() && entities.contains(entity.getType());
     }
 
     public boolean noEntity(EntityType<?> entity) {
-        return isActive() && entities.get().contains(entity);
+        return isActive() && entities.contains(entity);
     }
 
     public boolean getDropSpawnPacket() {
@@ -14,13 +14,15 @@ import meteordevelopment.meteorclient.MeteorClient;
 import meteordevelopment.meteorclient.events.render.Render3DEvent;
 import meteordevelopment.meteorclient.events.world.TickEvent;
 import meteordevelopment.meteorclient.renderer.Renderer3D;
+import meteordevelopment.meteorclient.renderer.RetainedRenderer3D;
 import meteordevelopment.meteorclient.renderer.ShapeMode;
 import meteordevelopment.meteorclient.settings.*;
 import meteordevelopment.meteorclient.systems.modules.Categories;
 import meteordevelopment.meteorclient.systems.modules.Module;
 import meteordevelopment.meteorclient.utils.Utils;
-import meteordevelopment.meteorclient.utils.network.MeteorExecutor;
+import meteordevelopment.meteorclient.utils.render.GreedyMesher;
 import meteordevelopment.meteorclient.utils.render.color.SettingColor;
+import meteordevelopment.meteorclient.utils.world.ChunkScanner;
 import meteordevelopment.meteorclient.utils.world.Dir;
 import meteordevelopment.orbit.EventHandler;
 import net.minecraft.block.BlockState;
@@ -28,14 +30,20 @@ import net.minecraft.block.Blocks;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.Direction;
+import net.minecraft.world.EmptyBlockView;
 import net.minecraft.world.Heightmap;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.ChunkSection;
 import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
 
 public class TunnelESP extends Module {
-    private static final BlockPos.Mutable BP = new BlockPos.Mutable();
     private static final Direction[] DIRECTIONS = { Direction.EAST, Direction.NORTH, Direction.SOUTH, Direction.WEST };
 
     private final SettingGroup sgGeneral = settings.getDefaultGroup();
@@ -55,6 +63,14 @@ public class TunnelESP extends Module {
         .build()
     );
 
+    private final Setting<Boolean> mergeFaces = sgGeneral.add(new BoolSetting.Builder()
+        .name("merge-faces")
+        .description("Merges the faces and edges of connected holes, which renders a lot less geometry for long tunnels.")
+        .defaultValue(false)
+        .visible(connected::get)
+        .build()
+    );
+
     private final Setting<ShapeMode> shapeMode = sgGeneral.add(new EnumSetting.Builder<ShapeMode>()
         .name("shape-mode")
         .description("How the shapes are rendered.")
@@ -76,7 +92,27 @@ public class TunnelESP extends Module {
         .build()
     );
 
-    private final Long2ObjectMap<TChunk> chunks = new Long2ObjectOpenHashMap<>();
+    // Replaced as a whole on the main thread, so the render and scanner threads can read it without locking
+    private volatile Long2ObjectMap<TChunk> chunks = new Long2ObjectOpenHashMap<>();
+
+    // Only used on the render thread
+    private final GreedyMesher mesher = new GreedyMesher();
+
+    private final ChunkScanner.Consumer scanner = new ChunkScanner.Consumer() {
+        // Same as canWalkThrough(), tunnels can only be in blocks you can walk through
+        private final Predicate<BlockState> filter = state -> state.isAir() || (state.getFluidState().isEmpty() && state.getCollisionShape(EmptyBlockView.INSTANCE, BlockPos.ORIGIN).isEmpty());
+
+        @Override
+        public Predicate<BlockState> blockFilter() {
+            return filter;
+        }
+
+        @Override
+        public ChunkScanner.Scan begin(WorldChunk chunk) {
+            TChunk tChunk = chunks.get(chunk.getPos().toLong());
+            return tChunk == null ? null : new TunnelSearch(chunk, tChunk);
+        }
+    };
 
     public TunnelESP() {
         super(Categories.Render, "tunnel-esp", "Highlights tunnels.");
@@ -84,7 +120,8 @@ public class TunnelESP extends Module {
 
     @Override
     public void onDeactivate() {
-        chunks.clear();
+        for (TChunk tChunk : chunks.values()) tChunk.destroyMesh();
+        chunks = new Long2ObjectOpenHashMap<>();
     }
 
     private static int pack(int x, int y, int z) {
@@ -103,56 +140,6 @@ public class TunnelESP extends Module {
         return (byte) (p & 0xFF);
     }
 
-    private void searchChunk(Chunk chunk, TChunk tChunk) {
-        // Prepare variables
-        Context ctx = new Context();
-        IntSet set = new IntOpenHashSet();
-
-        int startX = chunk.getPos().getStartX();
-        int startZ = chunk.getPos().getStartZ();
-
-        int endX = chunk.getPos().getEndX();
-        int endZ = chunk.getPos().getEndZ();
-
-        // Search for first set of tunnels
-        for (int x = startX; x <= endX; x++) {
-            for (int z = startZ; z <= endZ; z++) {
-                int height = chunk.getHeightmap(Heightmap.Type.WORLD_SURFACE).get(x - startX, z - startZ);
-
-                for (short y = (short) mc.world.getBottomY(); y < height; y++) {
-                    if (isTunnel(ctx, x, y, z)) set.add(pack(x - startX, y, z - startZ));
-                }
-            }
-        }
-
-        // Remove tunnels which are 1 block long
-        IntSet positions = new IntOpenHashSet();
-
-        for (IntIterator it = set.iterator(); it.hasNext();) {
-            int packed = it.nextInt();
-
-            byte x = getPackedX(packed);
-            short y = getPackedY(packed);
-            byte z = getPackedZ(packed);
-
-            if (x == 0 || x == 15 || z == 0 || z == 15) positions.add(packed);
-            else {
-                boolean has = false;
-
-                for (Direction dir : DIRECTIONS) {
-                    if (set.contains(pack(x + dir.getOffsetX(), y, z + dir.getOffsetZ()))) {
-                        has = true;
-                        break;
-                    }
-                }
-
-                if (has) positions.add(packed);
-            }
-        }
-
-        tChunk.positions = positions;
-    }
-
     private boolean isTunnel(Context ctx, int x, int y, int z) {
         if (!canWalkIn(ctx, x, y, z)) return false;
 
@@ -183,7 +170,7 @@ public class TunnelESP extends Module {
         if (state.isAir()) return false;
         if (!state.getFluidState().isEmpty()) return false;
 
-        return !state.getCollisionShape(mc.world, BP.set(x, y, z)).isEmpty();
+        return !state.getCollisionShape(mc.world, ctx.pos.set(x, y, z)).isEmpty();
     }
 
     private boolean canWalkThrough(Context ctx, int x, int y, int z) {
@@ -192,7 +179,7 @@ public class TunnelESP extends Module {
         if (state.isAir()) return true;
         if (!state.getFluidState().isEmpty()) return false;
 
-        return state.getCollisionShape(mc.world, BP.set(x, y, z)).isEmpty();
+        return state.getCollisionShape(mc.world, ctx.pos.set(x, y, z)).isEmpty();
     }
 
     private boolean canWalkIn(Context ctx, int x, int y, int z) {
@@ -204,35 +191,56 @@ public class TunnelESP extends Module {
 
     @EventHandler
     private void onTick(TickEvent.Post event) {
-        synchronized (chunks) {
-            for (TChunk tChunk : chunks.values()) tChunk.marked = false;
-            int added = 0;
+        Long2ObjectMap<TChunk> chunks = this.chunks;
+        for (TChunk tChunk : chunks.values()) tChunk.marked = false;
 
-            for (Chunk chunk : Utils.chunks(true)) {
-                long key = ChunkPos.toLong(chunk.getPos().x, chunk.getPos().z);
+        List<TChunk> added = new ArrayList<>();
+        List<WorldChunk> toScan = new ArrayList<>();
+        int marked = 0;
 
-                if (chunks.containsKey(key)) chunks.get(key).marked = true;
-                else if (added < 48) {
-                    TChunk tChunk = new TChunk(chunk.getPos().x, chunk.getPos().z);
-                    chunks.put(tChunk.getKey(), tChunk);
+        for (Chunk chunk : Utils.chunks(true)) {
+            TChunk tChunk = chunks.get(ChunkPos.toLong(chunk.getPos().x, chunk.getPos().z));
 
-                    MeteorExecutor.execute(() -> searchChunk(chunk, tChunk));
-                    added++;
-                }
+            if (tChunk != null) {
+                tChunk.marked = true;
+                marked++;
+            }
+            else if (added.size() < 48) {
+                added.add(new TChunk(chunk.getPos().x, chunk.getPos().z));
+                if (chunk instanceof WorldChunk worldChunk) toScan.add(worldChunk);
             }
+        }
+
+        if (!added.isEmpty() || marked < chunks.size()) {
+            Long2ObjectMap<TChunk> newChunks = new Long2ObjectOpenHashMap<>(marked + added.size());
 
-            chunks.values().removeIf(tChunk -> !tChunk.marked);
+            for (TChunk tChunk : chunks.values()) {
+                if (tChunk.marked) newChunks.put(tChunk.getKey(), tChunk);
+                else tChunk.destroyMesh();
+            }
+            for (TChunk tChunk : added) newChunks.put(tChunk.getKey(), tChunk);
+
+            // Publish before scanning so the scanner threads can find the new chunks
+            this.chunks = newChunks;
         }
+
+        for (WorldChunk chunk : toScan) ChunkScanner.scan(chunk, scanner);
     }
 
     @EventHandler
     private void onRender3D(Render3DEvent event) {
-        synchronized (chunks) {
-            for (TChunk chunk : chunks.values()) chunk.render(event.renderer);
-        }
+        Long2ObjectMap<TChunk> chunks = this.chunks;
+        int settingsHash = Objects.hash(height.get(), connected.get(), mergeFaces.get(), shapeMode.get(), sideColor.get(), lineColor.get());
+
+        for (TChunk chunk : chunks.values()) chunk.render(event, chunks, settingsHash);
     }
 
-    private boolean chunkContains(TChunk chunk, int x, int y, int z) {
+    private static IntSet getPositions(Long2ObjectMap<TChunk> chunks, int x, int z) {
+        TChunk chunk = chunks.get(ChunkPos.toLong(x, z));
+        return chunk == null ? null : chunk.positions;
+    }
+
+    private boolean chunkContains(Long2ObjectMap<TChunk> chunks, TChunk chunk, int x, int y, int z) {
         int key;
 
         if (x == -1) {
@@ -253,23 +261,117 @@ public class TunnelESP extends Module {
         }
         else key = pack(x, y, z);
 
-        return chunk != null && chunk.positions != null && chunk.positions.contains(key);
+        if (chunk == null) return false;
+
+        IntSet positions = chunk.positions;
+        return positions != null && positions.contains(key);
+    }
+
+    private class TunnelSearch implements ChunkScanner.Scan {
+        private final Context ctx = new Context();
+        private final IntSet set = new IntOpenHashSet();
+
+        private final Heightmap heightmap;
+        private final TChunk tChunk;
+        private final int startX, startZ;
+
+        public TunnelSearch(WorldChunk chunk, TChunk tChunk) {
+            this.heightmap = chunk.getHeightmap(Heightmap.Type.WORLD_SURFACE);
+            this.tChunk = tChunk;
+            this.startX = chunk.getPos().getStartX();
+            this.startZ = chunk.getPos().getStartZ();
+        }
+
+        @Override
+        public void block(int x, int y, int z, BlockState state) {
+            // Search for first set of tunnels
+            if (y < heightmap.get(x - startX, z - startZ) && isTunnel(ctx, x, y, z)) set.add(pack(x - startX, y, z - startZ));
+        }
+
+        @Override
+        public void end() {
+            // Remove tunnels which are 1 block long
+            IntSet positions = new IntOpenHashSet();
+
+            for (IntIterator it = set.iterator(); it.hasNext();) {
+                int packed = it.nextInt();
+
+                byte x = getPackedX(packed);
+                short y = getPackedY(packed);
+                byte z = getPackedZ(packed);
+
+                if (x == 0 || x == 15 || z == 0 || z == 15) positions.add(packed);
+                else {
+                    boolean has = false;
+
+                    for (Direction dir : DIRECTIONS) {
+                        if (set.contains(pack(x + dir.getOffsetX(), y, z + dir.getOffsetZ()))) {
+                            has = true;
+                            break;
+                        }
+                    }
+
+                    if (has) positions.add(packed);
+                }
+            }
+
+            tChunk.positions = positions;
+        }
     }
 
     private class TChunk {
         private final int x, z;
-        public IntSet positions;
+        // Immutable once published by a scanner thread
+        public volatile IntSet positions;
 
         public boolean marked;
 
+        // What the retained mesh was built from, only touched on the render thread
+        private RetainedRenderer3D mesh;
+        private IntSet meshPositions;
+        private final IntSet[] meshNeighbours = new IntSet[4];
+        private int meshSettingsHash;
+
         public TChunk(int x, int z) {
             this.x = x;
             this.z = z;
             this.marked = true;
         }
 
-        public void render(Renderer3D renderer) {
-            if (positions == null) return;
+        /** Draws the retained mesh, rebuilding it when the tunnels of this or a neighbouring chunk or the settings changed. */
+        public void render(Render3DEvent event, Long2ObjectMap<TChunk> chunks, int settingsHash) {
+            IntSet positions = this.positions;
+            if (positions == null || !event.renderer.culling.isChunkVisible(x, z, mc.world.getBottomY(), mc.world.getTopY())) return;
+
+            IntSet north = getPositions(chunks, x, z - 1);
+            IntSet south = getPositions(chunks, x, z + 1);
+            IntSet west = getPositions(chunks, x - 1, z);
+            IntSet east = getPositions(chunks, x + 1, z);
+
+            boolean changed = mesh == null || positions != meshPositions || settingsHash != meshSettingsHash;
+            if (!changed && connected.get()) changed = north != meshNeighbours[0] || south != meshNeighbours[1] || west != meshNeighbours[2] || east != meshNeighbours[3];
+
+            if (changed) {
+                if (mesh == null) mesh = new RetainedRenderer3D();
+                build(mesh.begin(), positions, chunks);
+                mesh.end();
+
+                meshPositions = positions;
+                meshSettingsHash = settingsHash;
+                meshNeighbours[0] = north;
+                meshNeighbours[1] = south;
+                meshNeighbours[2] = west;
+                meshNeighbours[3] = east;
+            }
+
+            mesh.render(event.matrices);
+        }
+
+        private void build(Renderer3D renderer, IntSet positions, Long2ObjectMap<TChunk> chunks) {
+            if (connected.get() && mergeFaces.get()) {
+                buildMerged(renderer, positions, chunks);
+                return;
+            }
 
             // Manual iteration to avoid boxing
             for (IntIterator it = positions.iterator(); it.hasNext();) {
@@ -283,7 +385,7 @@ public class TunnelESP extends Module {
 
                 if (connected.get()) {
                     for (Direction dir : DIRECTIONS) {
-                        if (chunkContains(this, x + dir.getOffsetX(), y, z + dir.getOffsetZ())) excludeDir |= Dir.get(dir);
+                        if (chunkContains(chunks, this, x + dir.getOffsetX(), y, z + dir.getOffsetZ())) excludeDir |= Dir.get(dir);
                     }
                 }
 
@@ -294,6 +396,46 @@ public class TunnelESP extends Module {
             }
         }
 
+        private void buildMerged(Renderer3D renderer, IntSet positions, Long2ObjectMap<TChunk> chunks) {
+            int startX = this.x * 16;
+            int startZ = this.z * 16;
+
+            // Tunnels in neighbouring chunks connect to ours but are built by their own chunk
+            mesher.begin(height.get(), false, (x, y, z) -> {
+                IntSet chunkPositions = getPositions(chunks, x >> 4, z >> 4);
+                return chunkPositions != null && chunkPositions.contains(pack(x & 15, y, z & 15)) ? 0 : -1;
+            });
+
+            for (IntIterator it = positions.iterator(); it.hasNext();) {
+                int pos = it.nextInt();
+                mesher.add(startX + getPackedX(pos), getPackedY(pos), startZ + getPackedZ(pos), 0);
+            }
+
+            ShapeMode mode = shapeMode.get();
+
+            mesher.end(new GreedyMesher.Output() {
+                @Override
+                public void face(Direction side, double x1, double y1, double z1, double x2, double y2, double z2, int key) {
+                    if (!mode.sides()) return;
+
+                    if (side.getAxis() == Direction.Axis.Y) renderer.quadHorizontal(x1, y1, z1, x2, z2, sideColor.get());
+                    else renderer.quadVertical(x1, y1, z1, x2, y2, z2, sideColor.get());
+                }
+
+                @Override
+                public void line(double x1, double y1, double z1, double x2, double y2, double z2, int key, boolean top) {
+                    if (mode.lines()) renderer.line(x1, y1, z1, x2, y2, z2, lineColor.get());
+                }
+            });
+        }
+
+        public void destroyMesh() {
+            if (mesh != null) {
+                mesh.destroy();
+                mesh = null;
+            }
+        }
+
         public long getKey() {
             return ChunkPos.toLong(x, z);
         }
@@ -301,6 +443,7 @@ public class TunnelESP extends Module {
 
     private static class Context {
         private final World world;
+        private final BlockPos.Mutable pos = new BlockPos.Mutable();
 
         private Chunk lastChunk;
 
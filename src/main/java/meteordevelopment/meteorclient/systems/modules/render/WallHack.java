@@ -12,11 +12,9 @@ import meteordevelopment.meteorclient.gui.widgets.WWidget;
 import meteordevelopment.meteorclient.settings.*;
 import meteordevelopment.meteorclient.systems.modules.Categories;
 import meteordevelopment.meteorclient.systems.modules.Module;
+import meteordevelopment.meteorclient.systems.modules.Modules;
 import meteordevelopment.orbit.EventHandler;
 import net.irisshaders.iris.api.v0.IrisApi;
-import net.minecraft.block.Block;
-
-import java.util.List;
 
 public class WallHack extends Module {
     private final SettingGroup sgGeneral = settings.getDefaultGroup();
@@ -27,21 +25,15 @@ public class WallHack extends Module {
         .defaultValue(0)
         .range(0, 255)
         .sliderMax(255)
-        .onChanged(onChanged -> {
-            if (this.isActive()) {
-                mc.worldRenderer.reload();
-            }
-        })
+        .onChanged(onChanged -> Xray.refreshStateTable())
         .build()
     );
 
-    public final Setting<List<Block>> blocks = sgGeneral.add(new BlockListSetting.Builder()
+    public final BlockListSetting blocks = sgGeneral.add(new BlockListSetting.Builder()
         .name("blocks")
         .description("What blocks should be targeted for Wall Hack.")
         .defaultValue()
-        .onChanged(onChanged -> {
-            if (isActive()) mc.worldRenderer.reload();
-        })
+        .onChanged(onChanged -> Xray.refreshStateTable())
         .build()
     );
 
@@ -58,11 +50,13 @@ public class WallHack extends Module {
 
     @Override
     public void onActivate() {
+        Xray.updateStateTable();
         mc.worldRenderer.reload();
     }
 
     @Override
     public void onDeactivate() {
+        Xray.updateStateTable(Modules.get().get(Xray.class).isActive(), false);
         mc.worldRenderer.reload();
     }
 
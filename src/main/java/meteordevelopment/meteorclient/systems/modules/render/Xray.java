@@ -15,31 +15,34 @@ import meteordevelopment.meteorclient.settings.*;
 import meteordevelopment.meteorclient.systems.modules.Categories;
 import meteordevelopment.meteorclient.systems.modules.Module;
 import meteordevelopment.meteorclient.systems.modules.Modules;
+import meteordevelopment.meteorclient.utils.Utils;
 import meteordevelopment.meteorclient.utils.world.BlockUtils;
 import meteordevelopment.orbit.EventHandler;
 import net.irisshaders.iris.api.v0.IrisApi;
 import net.minecraft.block.Block;
+import net.minecraft.block.BlockRenderType;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.util.shape.VoxelShapes;
 import net.minecraft.world.BlockView;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
 
 import java.util.List;
+import java.util.function.Predicate;
 
 public class Xray extends Module {
     private final SettingGroup sgGeneral = settings.getDefaultGroup();
 
     public static final List<Block> ORES = List.of(Blocks.COAL_ORE, Blocks.DEEPSLATE_COAL_ORE, Blocks.IRON_ORE, Blocks.DEEPSLATE_IRON_ORE, Blocks.GOLD_ORE, Blocks.DEEPSLATE_GOLD_ORE, Blocks.LAPIS_ORE, Blocks.DEEPSLATE_LAPIS_ORE, Blocks.REDSTONE_ORE, Blocks.REDSTONE_ORE, Blocks.DIAMOND_ORE, Blocks.DEEPSLATE_DIAMOND_ORE, Blocks.EMERALD_ORE, Blocks.DEEPSLATE_EMERALD_ORE, Blocks.COPPER_ORE, Blocks.DEEPSLATE_COPPER_ORE, Blocks.NETHER_GOLD_ORE, Blocks.NETHER_QUARTZ_ORE, Blocks.ANCIENT_DEBRIS);
 
-    private final Setting<List<Block>> blocks = sgGeneral.add(new BlockListSetting.Builder()
+    private final BlockListSetting blocks = sgGeneral.add(new BlockListSetting.Builder()
         .name("whitelist")
         .description("Which blocks to show x-rayed.")
         .defaultValue(ORES)
-        .onChanged(v -> {
-            if (isActive()) mc.worldRenderer.reload();
-        })
+        .onChanged(v -> refreshStateTable())
         .build()
     );
 
@@ -49,9 +52,7 @@ public class Xray extends Module {
         .defaultValue(25)
         .range(0, 255)
         .sliderMax(255)
-        .onChanged(onChanged -> {
-            if (isActive()) mc.worldRenderer.reload();
-        })
+        .onChanged(onChanged -> refreshStateTable())
         .build()
     );
 
@@ -59,22 +60,24 @@ public class Xray extends Module {
         .name("exposed-only")
         .description("Show only exposed ores.")
         .defaultValue(false)
-        .onChanged(onChanged -> {
-            if (isActive()) mc.worldRenderer.reload();
-        })
+        .onChanged(onChanged -> refreshStateTable())
         .build());
 
+    private static volatile StateTable table = new StateTable(new int[0], false);
+
     public Xray() {
         super(Categories.Render, "xray", "Only renders specified blocks. Good for mining.");
     }
 
     @Override
     public void onActivate() {
+        updateStateTable();
         mc.worldRenderer.reload();
     }
 
     @Override
     public void onDeactivate() {
+        updateStateTable(false, Modules.get().get(WallHack.class).isActive());
         mc.worldRenderer.reload();
     }
 
@@ -101,38 +104,154 @@ public class Xray extends Module {
         event.lightLevel = 1;
     }
 
-    public boolean modifyDrawSide(BlockState state, BlockView view, BlockPos pos, Direction facing, boolean returns) {
-        if (!returns && !isBlocked(state.getBlock(), pos)) {
+    public static boolean modifyDrawSide(BlockState state, BlockView view, BlockPos pos, Direction facing, boolean returns) {
+        StateTable table = Xray.table;
+
+        if (table.xrayActive && !returns && !isBlocked(table, state, view, pos)) {
             BlockPos adjPos = pos.offset(facing);
             BlockState adjState = view.getBlockState(adjPos);
-            return adjState.getCullingFace(view, adjPos, facing.getOpposite()) != VoxelShapes.fullCube() || adjState.getBlock() != state.getBlock() || BlockUtils.isExposed(adjPos);
+            return adjState.getCullingFace(view, adjPos, facing.getOpposite()) != VoxelShapes.fullCube() || adjState.getBlock() != state.getBlock() || BlockUtils.isExposed(view, adjPos);
         }
 
         return returns;
     }
 
     public boolean isBlocked(Block block, BlockPos blockPos) {
-        return !(blocks.get().contains(block) && (!exposedOnly.get() || (blockPos == null || BlockUtils.isExposed(blockPos))));
+        return !(blocks.contains(block) && (!exposedOnly.get() || (blockPos == null || BlockUtils.isExposed(blockPos))));
+    }
+
+    /** Table backed variant of {@link #isBlocked(Block, BlockPos)} which is safe to call from chunk building threads. */
+    public static boolean isBlocked(BlockState state, BlockView view, BlockPos pos) {
+        return isBlocked(table, state, view, pos);
+    }
+
+    private static boolean isBlocked(StateTable table, BlockState state, BlockView view, BlockPos pos) {
+        int entry = table.get(state);
+
+        if ((entry & StateTable.BLOCKED) != 0) return true;
+        return (entry & StateTable.BLOCKED_IF_HIDDEN) != 0 && pos != null && !BlockUtils.isExposed(view, pos);
     }
 
     public static int getAlpha(BlockState state, BlockPos pos) {
+        return getAlpha(state, mc.world, pos);
+    }
+
+    /**
+     * Returns the alpha Xray and WallHack want the state rendered with, 0 to skip it entirely or -1 to leave it alone.
+     * Safe to call from chunk building threads, {@code view} is only read around {@code pos} for the exposed-only check.
+     */
+    public static int getAlpha(BlockState state, BlockView view, BlockPos pos) {
+        int entry = table.get(state);
+
+        if ((entry & StateTable.ALPHA) == 0) {
+            if ((entry & StateTable.ALPHA_IF_HIDDEN) == 0 || pos == null || BlockUtils.isExposed(view, pos)) return -1;
+        }
+
+        if (MixinPlugin.isSodiumPresent || (MixinPlugin.isIrisPresent && IrisApi.getInstance().isShaderPackInUse())) return 0;
+        return entry & StateTable.ALPHA_MASK;
+    }
+
+    public static void updateStateTable() {
+        Xray xray = Modules.get().get(Xray.class);
         WallHack wallHack = Modules.get().get(WallHack.class);
+
+        // Settings fire change callbacks while modules are still being constructed
+        if (xray == null || wallHack == null) return;
+
+        updateStateTable(xray.isActive(), wallHack.isActive());
+    }
+
+    /**
+     * Rebuilds the table after a setting change and only re-meshes the loaded chunk sections containing a state whose
+     * rendering changed, instead of reloading every chunk.
+     */
+    public static void refreshStateTable() {
+        StateTable oldTable = table;
+        updateStateTable();
+
+        if (Utils.canUpdate() && table != oldTable) scheduleChangedSections(oldTable, table);
+    }
+
+    private static void scheduleChangedSections(StateTable oldTable, StateTable newTable) {
+        boolean[] changed = new boolean[Block.STATE_IDS.size()];
+        boolean any = false;
+
+        for (BlockState state : Block.STATE_IDS) {
+            // States without a model or fluid look the same whatever their alpha is
+            if (state.getRenderType() == BlockRenderType.INVISIBLE && state.getFluidState().isEmpty()) continue;
+
+            if (oldTable.get(state) != newTable.get(state)) {
+                changed[Block.STATE_IDS.getRawId(state)] = true;
+                any = true;
+            }
+        }
+
+        if (!any) return;
+
+        Predicate<BlockState> predicate = state -> changed[Block.STATE_IDS.getRawId(state)];
+
+        for (Chunk chunk : Utils.chunks()) {
+            ChunkSection[] sections = chunk.getSectionArray();
+
+            for (int i = 0; i < sections.length; i++) {
+                ChunkSection section = sections[i];
+                if (section == null || section.isEmpty() || !section.hasAny(predicate)) continue;
+
+                mc.worldRenderer.scheduleBlockRenders(chunk.getPos().x, chunk.sectionIndexToCoord(i), chunk.getPos().z);
+            }
+        }
+    }
+
+    /** Rebuilds the per state table read by the chunk renderers, active flags are explicit since modules are still active inside onDeactivate(). */
+    static void updateStateTable(boolean xrayActive, boolean wallHackActive) {
         Xray xray = Modules.get().get(Xray.class);
+        WallHack wallHack = Modules.get().get(WallHack.class);
+
+        int xrayAlpha = xray.opacity.get();
+        int wallHackAlpha = xrayActive ? xray.opacity.get() : wallHack.opacity.get();
 
-        if (wallHack.isActive() && wallHack.blocks.get().contains(state.getBlock())) {
-            if (MixinPlugin.isSodiumPresent || (MixinPlugin.isIrisPresent && IrisApi.getInstance().isShaderPackInUse())) return 0;
+        int[] entries = new int[Block.STATE_IDS.size()];
 
-            int alpha;
+        for (BlockState state : Block.STATE_IDS) {
+            Block block = state.getBlock();
+            boolean whitelisted = xray.blocks.contains(block);
+            int entry = 0;
 
-            if (xray.isActive()) alpha = xray.opacity.get();
-            else alpha = wallHack.opacity.get();
+            if (xrayActive) {
+                if (!whitelisted) entry |= StateTable.BLOCKED;
+                else if (xray.exposedOnly.get()) entry |= StateTable.BLOCKED_IF_HIDDEN;
+            }
 
-            return alpha;
+            if (wallHackActive && wallHack.blocks.contains(block)) entry |= StateTable.ALPHA | wallHackAlpha;
+            else if (xrayActive && !wallHackActive) {
+                if ((entry & StateTable.BLOCKED) != 0) entry |= StateTable.ALPHA | xrayAlpha;
+                else if ((entry & StateTable.BLOCKED_IF_HIDDEN) != 0) entry |= StateTable.ALPHA_IF_HIDDEN | xrayAlpha;
+            }
+
+            entries[Block.STATE_IDS.getRawId(state)] = entry;
         }
-        else if (xray.isActive() && !wallHack.isActive() && xray.isBlocked(state.getBlock(), pos)) {
-            return (MixinPlugin.isSodiumPresent || (MixinPlugin.isIrisPresent && IrisApi.getInstance().isShaderPackInUse())) ? 0 : xray.opacity.get();
+
+        table = new StateTable(entries, xrayActive);
+    }
+
+    private static class StateTable {
+        public static final int ALPHA_MASK = 0xFF;
+        public static final int ALPHA = 1 << 8;
+        public static final int ALPHA_IF_HIDDEN = 1 << 9;
+        public static final int BLOCKED = 1 << 10;
+        public static final int BLOCKED_IF_HIDDEN = 1 << 11;
+
+        private final int[] entries;
+        public final boolean xrayActive;
+
+        public StateTable(int[] entries, boolean xrayActive) {
+            this.entries = entries;
+            this.xrayActive = xrayActive;
         }
 
-        return -1;
+        public int get(BlockState state) {
+            int id = Block.STATE_IDS.getRawId(state);
+            return id >= 0 && id < entries.length ? entries[id] : 0;
+        }
     }
 }
@@ -5,43 +5,60 @@
 
 package meteordevelopment.meteorclient.systems.modules.render.blockesp;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import meteordevelopment.meteorclient.events.game.GameLeftEvent;
 import meteordevelopment.meteorclient.events.render.Render3DEvent;
 import meteordevelopment.meteorclient.events.world.BlockUpdateEvent;
-import meteordevelopment.meteorclient.events.world.ChunkDataEvent;
 import meteordevelopment.meteorclient.events.world.TickEvent;
+import meteordevelopment.meteorclient.gui.GuiTheme;
+import meteordevelopment.meteorclient.gui.widgets.WWidget;
+import meteordevelopment.meteorclient.gui.widgets.pressable.WButton;
+import meteordevelopment.meteorclient.renderer.RetainedRenderer3D;
+import meteordevelopment.meteorclient.renderer.Shaders;
 import meteordevelopment.meteorclient.renderer.ShapeMode;
 import meteordevelopment.meteorclient.settings.*;
 import meteordevelopment.meteorclient.systems.modules.Categories;
 import meteordevelopment.meteorclient.systems.modules.Module;
 import meteordevelopment.meteorclient.utils.Utils;
-import meteordevelopment.meteorclient.utils.misc.UnorderedArrayList;
 import meteordevelopment.meteorclient.utils.network.MeteorExecutor;
 import meteordevelopment.meteorclient.utils.player.PlayerUtils;
 import meteordevelopment.meteorclient.utils.render.color.RainbowColors;
 import meteordevelopment.meteorclient.utils.render.color.SettingColor;
+import meteordevelopment.meteorclient.utils.world.ChunkScanner;
 import meteordevelopment.meteorclient.utils.world.Dimension;
 import meteordevelopment.orbit.EventHandler;
 import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
-import net.minecraft.world.chunk.Chunk;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.chunk.WorldChunk;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static meteordevelopment.meteorclient.utils.Utils.getRenderDistance;
 
 public class BlockESP extends Module {
     private final SettingGroup sgGeneral = settings.getDefaultGroup();
 
     // General
 
-    private final Setting<List<Block>> blocks = sgGeneral.add(new BlockListSetting.Builder()
+    private final BlockListSetting blocks = sgGeneral.add(new BlockListSetting.Builder()
         .name("blocks")
         .description("Blocks to search for.")
         .onChanged(blocks1 -> {
-            if (isActive() && Utils.canUpdate()) onActivate();
+            if (isActive() && Utils.canUpdate()) onBlocksChanged();
         })
         .build()
     );
@@ -68,6 +85,13 @@ public class BlockESP extends Module {
         .build()
     );
 
+    private final Setting<Boolean> mergeFaces = sgGeneral.add(new BoolSetting.Builder()
+        .name("merge-faces")
+        .description("Merges the faces and edges of connected full blocks, which renders a lot less geometry for large areas.")
+        .defaultValue(false)
+        .build()
+    );
+
     private final Setting<Boolean> tracers = sgGeneral.add(new BoolSetting.Builder()
         .name("tracers")
         .description("Render tracer lines.")
@@ -78,9 +102,30 @@ public class BlockESP extends Module {
     private final BlockPos.Mutable blockPos = new BlockPos.Mutable();
 
     private final Long2ObjectMap<ESPChunk> chunks = new Long2ObjectOpenHashMap<>();
-    private final List<ESPGroup> groups = new UnorderedArrayList<>();
+    private final Int2ObjectMap<ESPGroup> groups = new Int2ObjectOpenHashMap<>();
+
+    private final ChunkScanner.Consumer scanner = new BlockScanner(state -> blocks.contains(state.getBlock()), false);
+
+    // Results of the dimensions we're not in, shown when going back until the chunks the server sends again are rescanned
+    private final Map<Dimension, DimensionCache> dimensionCaches = new EnumMap<>(Dimension.class);
+    private final Set<Block> lastBlocks = new ReferenceOpenHashSet<>();
 
     private Dimension lastDimension;
+    private int nextGroupId = ESPGroup.NONE + 1;
+
+    // Block updates received during the current tick, only touched on the main thread
+    private final Long2ObjectMap<BlockState> blockUpdates = new Long2ObjectOpenHashMap<>();
+
+    // What the render thread draws, rebuilt at most once per tick so rendering never has to take the chunks lock
+    private volatile RenderSnapshot renderSnapshot = RenderSnapshot.EMPTY;
+    private boolean dirty;
+
+    // Last snapshot drawn, chunks owning meshes are only ever touched on the render thread
+    private RenderSnapshot lastRenderSnapshot = RenderSnapshot.EMPTY;
+
+    // Render thread only
+    private final ESPPalette palette = new ESPPalette();
+    private final List<ESPChunk.Snapshot> visibleChunks = new ArrayList<>();
 
     public BlockESP() {
         super(Categories.Render, "block-esp", "Renders specified blocks through walls.");
@@ -88,26 +133,128 @@ public class BlockESP extends Module {
         RainbowColors.register(this::onTickRainbow);
     }
 
+    @Override
+    public WWidget getWidget(GuiTheme theme) {
+        WButton report = theme.button("Memory Report");
+        report.action = this::memoryReport;
+
+        return report;
+    }
+
     @Override
     public void onActivate() {
         synchronized (chunks) {
             chunks.clear();
             groups.clear();
-        }
+            dimensionCaches.clear();
+
+            lastBlocks.clear();
+            lastBlocks.addAll(blocks.get());
+
+            lastDimension = PlayerUtils.getDimension();
 
-        for (Chunk chunk : Utils.chunks()) {
-            searchChunk(chunk, null);
+            renderSnapshot = RenderSnapshot.EMPTY;
+            dirty = false;
         }
 
-        lastDimension = PlayerUtils.getDimension();
+        blockUpdates.clear();
+
+        ChunkScanner.register(scanner);
+        ChunkScanner.scanLoaded(scanner);
     }
 
     @Override
     public void onDeactivate() {
+        ChunkScanner.unregister(scanner);
+
         synchronized (chunks) {
             chunks.clear();
             groups.clear();
+            dimensionCaches.clear();
+
+            renderSnapshot = RenderSnapshot.EMPTY;
+        }
+
+        releaseMeshes(lastRenderSnapshot, RenderSnapshot.EMPTY);
+        lastRenderSnapshot = RenderSnapshot.EMPTY;
+    }
+
+    private void onBlocksChanged() {
+        Set<Block> added = new ReferenceOpenHashSet<>();
+        Set<Block> removed = new ReferenceOpenHashSet<>();
+
+        synchronized (chunks) {
+            for (Block block : blocks.get()) {
+                if (!lastBlocks.contains(block)) added.add(block);
+            }
+
+            for (Block block : lastBlocks) {
+                if (!blocks.contains(block)) removed.add(block);
+            }
+
+            lastBlocks.clear();
+            lastBlocks.addAll(blocks.get());
+
+            // Cached dimensions would need the same diff applied, just let them be searched again
+            dimensionCaches.clear();
+
+            // Blocks only ever neighbour blocks of the same type so dropping whole types leaves the rest intact
+            if (!removed.isEmpty()) {
+                for (Iterator<ESPChunk> it = chunks.values().iterator(); it.hasNext();) {
+                    ESPChunk chunk = it.next();
+
+                    chunk.removeIf(removed::contains);
+                    if (chunk.size() == 0) it.remove();
+                }
+
+                groups.values().removeIf(group -> removed.contains(group.block));
+                dirty = true;
+            }
         }
+
+        // Only search for the newly added blocks, the section palettes let most of the world be skipped
+        if (!added.isEmpty()) ChunkScanner.scanLoaded(new BlockScanner(state -> added.contains(state.getBlock()), true));
+    }
+
+    /** Swaps in the results for the current dimension, must be called while holding the chunks lock. */
+    private void checkDimension() {
+        Dimension dimension = PlayerUtils.getDimension();
+        if (dimension == lastDimension) return;
+
+        if (lastDimension != null) dimensionCaches.put(lastDimension, new DimensionCache(chunks, groups));
+
+        chunks.clear();
+        groups.clear();
+
+        DimensionCache cache = dimensionCaches.remove(dimension);
+
+        if (cache != null) {
+            chunks.putAll(cache.chunks);
+            groups.putAll(cache.groups);
+        }
+
+        lastDimension = dimension;
+        dirty = true;
+    }
+
+    private void memoryReport() {
+        int chunkCount, blockCount = 0;
+        long bytes = 0;
+
+        synchronized (chunks) {
+            chunkCount = chunks.size();
+
+            for (ESPChunk chunk : chunks.values()) {
+                blockCount += chunk.size();
+                bytes += chunk.getMemoryUsage();
+            }
+
+            for (ESPGroup group : groups.values()) bytes += group.getMemoryUsage();
+        }
+
+        info("Tracking (highlight)%d(default) blocks in (highlight)%d(default) chunks using (highlight)%.1f KiB(default), (highlight)%.1f(default) bytes per block.",
+            blockCount, chunkCount, bytes / 1024.0, blockCount == 0 ? 0.0 : (double) bytes / blockCount
+        );
     }
 
     private void onTickRainbow() {
@@ -117,6 +264,14 @@ public class BlockESP extends Module {
         for (ESPBlockData blockData : blockConfigs.get().values()) blockData.tickRainbow();
     }
 
+    boolean isMergingFaces() {
+        return mergeFaces.get();
+    }
+
+    ESPPalette getPalette() {
+        return palette;
+    }
+
     ESPBlockData getBlockData(Block block) {
         ESPBlockData blockData = blockConfigs.get().get(block);
         return blockData == null ? defaultBlockConfig.get() : blockData;
@@ -137,129 +292,302 @@ public class BlockESP extends Module {
         return chunk == null ? null : chunk.get(x, y, z);
     }
 
+    /** Returns the neighbour flags of the block at the packed position or -1 if it isn't tracked. */
+    int getNeighbours(long pos) {
+        int x = BlockPos.unpackLongX(pos);
+        int z = BlockPos.unpackLongZ(pos);
+
+        ESPChunk chunk = chunks.get(ChunkPos.toLong(x >> 4, z >> 4));
+        return chunk == null ? -1 : chunk.getNeighbours(x, BlockPos.unpackLongY(pos), z);
+    }
+
+    ESPGroup getGroup(long pos) {
+        int x = BlockPos.unpackLongX(pos);
+        int z = BlockPos.unpackLongZ(pos);
+
+        ESPChunk chunk = chunks.get(ChunkPos.toLong(x >> 4, z >> 4));
+        return chunk == null ? null : getGroup(chunk.getGroup(x, BlockPos.unpackLongY(pos), z));
+    }
+
+    ESPGroup getGroup(int id) {
+        return id == ESPGroup.NONE ? null : groups.get(id);
+    }
+
+    void setGroup(int x, int y, int z, int id) {
+        ESPChunk chunk = chunks.get(ChunkPos.toLong(x >> 4, z >> 4));
+        if (chunk != null) chunk.setGroup(x, y, z, id);
+    }
+
     public ESPGroup newGroup(Block block) {
         synchronized (chunks) {
-            ESPGroup group = new ESPGroup(block);
-            groups.add(group);
+            ESPGroup group = new ESPGroup(nextGroupId++, block);
+            groups.put(group.id, group);
             return group;
         }
     }
 
     public void removeGroup(ESPGroup group) {
         synchronized (chunks) {
-            groups.remove(group);
+            groups.remove(group.id);
         }
     }
 
     @EventHandler
-    private void onChunkData(ChunkDataEvent event) {
-        searchChunk(event.chunk, event);
+    private void onGameLeft(GameLeftEvent event) {
+        // Results of another server are of no use, the next tick drops the current ones as well
+        synchronized (chunks) {
+            dimensionCaches.clear();
+            lastDimension = null;
+        }
     }
 
-    private void searchChunk(Chunk chunk, ChunkDataEvent event) {
+    @EventHandler
+    private void onBlockUpdate(BlockUpdateEvent event) {
+        if (blocks.contains(event.newState.getBlock()) == blocks.contains(event.oldState.getBlock())) return;
+
+        // Only the last state of a position matters, the updates of a tick are applied together in onPostTick()
+        blockUpdates.put(event.pos.asLong(), event.newState);
+    }
+
+    @EventHandler
+    private void onPostTick(TickEvent.Post event) {
+        Long2ObjectMap<BlockState> updates = blockUpdates.isEmpty() ? null : new Long2ObjectOpenHashMap<>(blockUpdates);
+        blockUpdates.clear();
+
+        int viewDist = getRenderDistance() + 1;
+        int chunkX = ChunkSectionPos.getSectionCoord(mc.player.getBlockX());
+        int chunkZ = ChunkSectionPos.getSectionCoord(mc.player.getBlockZ());
+
         MeteorExecutor.execute(() -> {
-            if (!isActive()) return;
-            ESPChunk schunk = ESPChunk.searchChunk(chunk, blocks.get());
-
-            if (schunk.size() > 0) {
-                synchronized (chunks) {
-                    chunks.put(chunk.getPos().toLong(), schunk);
-                    schunk.update();
-
-                    // Update neighbour chunks
-                    updateChunk(chunk.getPos().x - 1, chunk.getPos().z);
-                    updateChunk(chunk.getPos().x + 1, chunk.getPos().z);
-                    updateChunk(chunk.getPos().x, chunk.getPos().z - 1);
-                    updateChunk(chunk.getPos().x, chunk.getPos().z + 1);
+            synchronized (chunks) {
+                if (!isActive()) return;
+
+                checkDimension();
+                if (updates != null) applyBlockUpdates(updates, chunkX, chunkZ, viewDist);
+
+                // Drop chunks which went out of render distance
+                for (Iterator<ESPChunk> it = chunks.values().iterator(); it.hasNext();) {
+                    ESPChunk chunk = it.next();
+
+                    if (chunk.shouldBeDeleted(chunkX, chunkZ, viewDist)) {
+                        chunk.unload();
+                        it.remove();
+
+                        dirty = true;
+                    }
                 }
-            }
 
-            if (event != null) ChunkDataEvent.returnChunkDataEvent(event);
+                if (dirty) publish();
+            }
         });
     }
 
-    @EventHandler
-    private void onBlockUpdate(BlockUpdateEvent event) {
-        // Minecraft probably reuses the event.pos BlockPos instance because it causes problems when trying to use it inside another thread
-        int bx = event.pos.getX();
-        int by = event.pos.getY();
-        int bz = event.pos.getZ();
+    private void applyBlockUpdates(Long2ObjectMap<BlockState> updates, int playerChunkX, int playerChunkZ, int viewDist) {
+        for (Long2ObjectMap.Entry<BlockState> entry : updates.long2ObjectEntrySet()) {
+            long pos = entry.getLongKey();
+            BlockState state = entry.getValue();
 
-        int chunkX = bx >> 4;
-        int chunkZ = bz >> 4;
-        long key = ChunkPos.toLong(chunkX, chunkZ);
+            // Compare against what we're tracking, the position could have changed back and forth during the tick
+            boolean track = blocks.contains(state.getBlock());
+            if (track == (getNeighbours(pos) != -1)) continue;
 
-        boolean added = blocks.get().contains(event.newState.getBlock()) && !blocks.get().contains(event.oldState.getBlock());
-        boolean removed = !added && !blocks.get().contains(event.newState.getBlock()) && blocks.get().contains(event.oldState.getBlock());
+            int bx = BlockPos.unpackLongX(pos);
+            int by = BlockPos.unpackLongY(pos);
+            int bz = BlockPos.unpackLongZ(pos);
 
-        if (added || removed) {
-            MeteorExecutor.execute(() -> {
-                synchronized (chunks) {
-                    ESPChunk chunk = chunks.get(key);
+            long key = ChunkPos.toLong(bx >> 4, bz >> 4);
+            ESPChunk chunk = chunks.get(key);
 
-                    if (chunk == null) {
-                        chunk = new ESPChunk(chunkX, chunkZ);
-                        if (chunk.shouldBeDeleted()) return;
+            if (chunk == null) {
+                chunk = new ESPChunk(bx >> 4, bz >> 4);
+                if (chunk.shouldBeDeleted(playerChunkX, playerChunkZ, viewDist)) continue;
 
-                        chunks.put(key, chunk);
-                    }
+                chunks.put(key, chunk);
+            }
 
-                    blockPos.set(bx, by, bz);
+            blockPos.set(bx, by, bz);
 
-                    if (added) chunk.add(blockPos);
-                    else chunk.remove(blockPos);
+            if (track) chunk.add(blockPos, state);
+            else chunk.remove(blockPos);
 
-                    // Update neighbour blocks
-                    for (int x = -1; x < 2; x++) {
-                        for (int z = -1; z < 2; z++) {
-                            for (int y = -1; y < 2; y++) {
-                                if (x == 0 && y == 0 && z == 0) continue;
+            // Update neighbour blocks
+            for (int x = -1; x < 2; x++) {
+                for (int z = -1; z < 2; z++) {
+                    for (int y = -1; y < 2; y++) {
+                        if (x == 0 && y == 0 && z == 0) continue;
 
-                                updateBlock(bx + x, by + y, bz + z);
-                            }
-                        }
+                        updateBlock(bx + x, by + y, bz + z);
                     }
                 }
-            });
+            }
+
+            dirty = true;
         }
     }
 
-    @EventHandler
-    private void onPostTick(TickEvent.Post event) {
-        Dimension dimension = PlayerUtils.getDimension();
+    /** Hands the current results over to the render thread, must be called while holding the chunks lock. */
+    private void publish() {
+        List<ESPChunk.Snapshot> renderChunks = new ArrayList<>(chunks.size());
 
-        if (lastDimension != dimension) onActivate();
+        for (ESPChunk chunk : chunks.values()) {
+            ESPChunk.Snapshot snapshot = chunk.getSnapshot();
+            if (snapshot.size() > 0) renderChunks.add(snapshot);
+        }
 
-        lastDimension = dimension;
+        List<ESPGroup.Snapshot> renderGroups = new ArrayList<>(groups.size());
+
+        for (ESPGroup group : groups.values()) {
+            if (!group.blocks.isEmpty()) renderGroups.add(group.getSnapshot());
+        }
+
+        renderSnapshot = new RenderSnapshot(renderChunks, renderGroups);
+        dirty = false;
     }
 
     @EventHandler
     private void onRender(Render3DEvent event) {
-        synchronized (chunks) {
-            for (Iterator<ESPChunk> it = chunks.values().iterator(); it.hasNext();) {
-                ESPChunk chunk = it.next();
-
-                if (chunk.shouldBeDeleted()) {
-                    MeteorExecutor.execute(() -> {
-                        for (ESPBlock block : chunk.blocks.values()) {
-                            block.group.remove(block, false);
-                            block.loaded = false;
-                        }
-                    });
-
-                    it.remove();
-                }
-                else chunk.render(event);
-            }
+        RenderSnapshot snapshot = renderSnapshot;
+
+        if (snapshot != lastRenderSnapshot) {
+            releaseMeshes(lastRenderSnapshot, snapshot);
+            lastRenderSnapshot = snapshot;
+        }
+
+        long shapeKey = palette.update(defaultBlockConfig.get(), blockConfigs.get()) * 31 + (mergeFaces.get() ? 1 : 0);
+
+        visibleChunks.clear();
+        for (ESPChunk.Snapshot chunk : snapshot.chunks) {
+            if (chunk.prepare(event, shapeKey)) visibleChunks.add(chunk);
+        }
+
+        if (!visibleChunks.isEmpty()) {
+            // One pass for all chunks, lines before sides like a single renderer draws them
+            RetainedRenderer3D.beginBatch(event.matrices, Shaders.POS_PALETTE);
+            palette.bind();
+
+            for (ESPChunk.Snapshot chunk : visibleChunks) chunk.renderLines();
+            for (ESPChunk.Snapshot chunk : visibleChunks) chunk.renderSides();
+
+            RetainedRenderer3D.endBatch();
+        }
 
-            if (tracers.get()) {
-                for (Iterator<ESPGroup> it = groups.iterator(); it.hasNext();) {
-                    ESPGroup group = it.next();
+        if (tracers.get()) {
+            for (ESPGroup.Snapshot group : snapshot.groups) group.render(event);
+        }
+    }
+
+    private class BlockScanner implements ChunkScanner.Consumer {
+        private final Predicate<BlockState> filter;
+        private final boolean merge;
+
+        public BlockScanner(Predicate<BlockState> filter, boolean merge) {
+            this.filter = filter;
+            this.merge = merge;
+        }
+
+        @Override
+        public Predicate<BlockState> blockFilter() {
+            return filter;
+        }
+
+        @Override
+        public ChunkScanner.Scan begin(WorldChunk chunk) {
+            if (!isActive()) return null;
+
+            ESPChunk schunk = new ESPChunk(chunk.getPos().x, chunk.getPos().z);
+            return schunk.shouldBeDeleted() ? null : new ChunkSearch(chunk, schunk, merge);
+        }
+    }
+
+    private class ChunkSearch implements ChunkScanner.Scan {
+        private final BlockPos.Mutable blockPos = new BlockPos.Mutable();
+
+        private final WorldChunk chunk;
+        private final Heightmap heightmap;
+        private final ESPChunk schunk;
+        private final boolean merge;
+
+        public ChunkSearch(WorldChunk chunk, ESPChunk schunk, boolean merge) {
+            this.chunk = chunk;
+            this.heightmap = chunk.getHeightmap(Heightmap.Type.WORLD_SURFACE);
+            this.schunk = schunk;
+            this.merge = merge;
+        }
+
+        @Override
+        public void block(int x, int y, int z, BlockState state) {
+            if (y < heightmap.get(x & 15, z & 15)) schunk.add(blockPos.set(x, y, z), state, false);
+        }
+
+        @Override
+        public void end() {
+            // Merging scans only add blocks, a full scan without matches still has to drop what was found before
+            if (merge && schunk.size() == 0) return;
+
+            synchronized (chunks) {
+                // Results of a world we already left
+                if (chunk.getWorld() != mc.world) return;
+                checkDimension();
+
+                long key = chunk.getPos().toLong();
+                ESPChunk existing = chunks.get(key);
 
-                    if (group.blocks.isEmpty()) it.remove();
-                    else group.render(event);
+                if (merge && existing != null) {
+                    existing.addAll(schunk);
+                    existing.update();
                 }
+                else {
+                    if (existing != null) existing.unload();
+
+                    if (schunk.size() == 0) {
+                        if (existing == null) return;
+                        chunks.remove(key);
+                    }
+                    else {
+                        chunks.put(key, schunk);
+                        schunk.update();
+                    }
+                }
+
+                dirty = true;
+
+                // Update neighbour chunks
+                updateChunk(chunk.getPos().x - 1, chunk.getPos().z);
+                updateChunk(chunk.getPos().x + 1, chunk.getPos().z);
+                updateChunk(chunk.getPos().x, chunk.getPos().z - 1);
+                updateChunk(chunk.getPos().x, chunk.getPos().z + 1);
             }
         }
     }
+
+    /** Frees the meshes of chunks which are no longer part of the render snapshot. */
+    private void releaseMeshes(RenderSnapshot previous, RenderSnapshot current) {
+        Set<ESPChunk.Snapshot> kept = new ReferenceOpenHashSet<>(current.chunks);
+
+        for (ESPChunk.Snapshot chunk : previous.chunks) {
+            if (!kept.contains(chunk)) chunk.destroyMesh();
+        }
+    }
+
+    private static class RenderSnapshot {
+        public static final RenderSnapshot EMPTY = new RenderSnapshot(List.of(), List.of());
+
+        public final List<ESPChunk.Snapshot> chunks;
+        public final List<ESPGroup.Snapshot> groups;
+
+        public RenderSnapshot(List<ESPChunk.Snapshot> chunks, List<ESPGroup.Snapshot> groups) {
+            this.chunks = chunks;
+            this.groups = groups;
+        }
+    }
+
+    private static class DimensionCache {
+        public final Long2ObjectMap<ESPChunk> chunks;
+        public final Int2ObjectMap<ESPGroup> groups;
+
+        public DimensionCache(Long2ObjectMap<ESPChunk> chunks, Int2ObjectMap<ESPGroup> groups) {
+            this.chunks = new Long2ObjectOpenHashMap<>(chunks);
+            this.groups = new Int2ObjectOpenHashMap<>(groups);
+        }
+    }
 }
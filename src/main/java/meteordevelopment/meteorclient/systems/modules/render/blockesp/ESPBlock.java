@@ -5,10 +5,11 @@
 
 package meteordevelopment.meteorclient.systems.modules.render.blockesp;
 
-import meteordevelopment.meteorclient.events.render.Render3DEvent;
+import meteordevelopment.meteorclient.renderer.Renderer3D;
 import meteordevelopment.meteorclient.renderer.ShapeMode;
 import meteordevelopment.meteorclient.systems.modules.Modules;
 import meteordevelopment.meteorclient.utils.render.color.Color;
+import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
@@ -19,6 +20,7 @@ import static meteordevelopment.meteorclient.MeteorClient.mc;
 
 public class ESPBlock {
     private static final BlockPos.Mutable blockPos = new BlockPos.Mutable();
+    private static final BlockPos.Mutable renderPos = new BlockPos.Mutable();
 
     private static final BlockESP blockEsp = Modules.get().get(BlockESP.class);
 
@@ -44,85 +46,77 @@ public class ESPBlock {
 
     public static final int[] SIDES = { FO, BA, LE, RI, TO, BO };
 
-    public final int x, y, z;
-    private BlockState state;
-    public int neighbours;
+    /** Packed position inside a chunk, y keeps its sign so it survives negative world heights. */
+    public static int pack(int x, int y, int z) {
+        return (y << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    public static long getSidePos(long pos, int side) {
+        return switch (side) {
+            case FO -> BlockPos.add(pos, 0, 0, 1);
+            case BA -> BlockPos.add(pos, 0, 0, -1);
+            case LE -> BlockPos.add(pos, -1, 0, 0);
+            case RI -> BlockPos.add(pos, 1, 0, 0);
+            case TO -> BlockPos.add(pos, 0, 1, 0);
+            case BO -> BlockPos.add(pos, 0, -1, 0);
+            default -> pos;
+        };
+    }
 
-    public ESPGroup group;
+    // View
 
-    public boolean loaded = true;
+    public final int x, y, z;
+    public final BlockState state;
+    public final int neighbours;
+    public final ESPGroup group;
 
-    public ESPBlock(int x, int y, int z) {
+    /** Snapshot of a block tracked by an {@link ESPChunk}, the chunk itself only keeps primitive arrays. */
+    public ESPBlock(int x, int y, int z, BlockState state, int neighbours, ESPGroup group) {
         this.x = x;
         this.y = y;
         this.z = z;
+        this.state = state;
+        this.neighbours = neighbours;
+        this.group = group;
     }
 
-    public ESPBlock getSideBlock(int side) {
-        switch (side) {
-            case FO: return blockEsp.getBlock(x, y, z + 1);
-            case BA: return blockEsp.getBlock(x, y, z - 1);
-            case LE: return blockEsp.getBlock(x - 1, y, z);
-            case RI: return blockEsp.getBlock(x + 1, y, z);
-            case TO: return blockEsp.getBlock(x, y + 1, z);
-            case BO: return blockEsp.getBlock(x, y - 1, z);
-        }
-
-        return null;
+    public Block getBlock() {
+        return state.getBlock();
     }
 
-    private void assignGroup() {
-        ESPGroup firstGroup = null;
-
-        for (int side : SIDES) {
-            if ((neighbours & side) != side) continue;
-
-            ESPBlock neighbour = getSideBlock(side);
-            if (neighbour == null || neighbour.group == null) continue;
-
-            if (firstGroup == null) {
-                firstGroup = neighbour.group;
-            }
-            else {
-                if (firstGroup != neighbour.group) firstGroup.merge(neighbour.group);
-            }
-        }
-
-        if (firstGroup == null) {
-            firstGroup = blockEsp.newGroup(state.getBlock());
-        }
-
-        firstGroup.add(this);
+    public void render(Renderer3D renderer) {
+        render(renderer, x, y, z, state, neighbours);
     }
 
-    public void update() {
-        state = mc.world.getBlockState(blockPos.set(x, y, z));
-        neighbours = 0;
-
-        if (isNeighbour(Direction.SOUTH)) neighbours |= FO;
-        if (isNeighbourDiagonal(1, 0, 1)) neighbours |= FO_RI;
-        if (isNeighbour(Direction.EAST)) neighbours |= RI;
-        if (isNeighbourDiagonal(1, 0, -1)) neighbours |= BA_RI;
-        if (isNeighbour(Direction.NORTH)) neighbours |= BA;
-        if (isNeighbourDiagonal(-1, 0, -1)) neighbours |= BA_LE;
-        if (isNeighbour(Direction.WEST)) neighbours |= LE;
-        if (isNeighbourDiagonal(-1, 0, 1)) neighbours |= FO_LE;
-
-        if (isNeighbour(Direction.UP)) neighbours |= TO;
-        if (isNeighbourDiagonal(0, 1, 1)) neighbours |= TO_FO;
-        if (isNeighbourDiagonal(0, 1, -1)) neighbours |= TO_BA;
-        if (isNeighbourDiagonal(1, 1, 0)) neighbours |= TO_RI;
-        if (isNeighbourDiagonal(-1, 1, 0)) neighbours |= TO_LE;
-        if (isNeighbour(Direction.DOWN)) neighbours |= BO;
-        if (isNeighbourDiagonal(0, -1, 1)) neighbours |= BO_FO;
-        if (isNeighbourDiagonal(0, -1, -1)) neighbours |= BO_BA;
-        if (isNeighbourDiagonal(1, -1, 0)) neighbours |= BO_RI;
-        if (isNeighbourDiagonal(-1, -1, 0)) neighbours |= BO_LE;
-
-        if (group == null) assignGroup();
+    // Neighbours
+
+    public static int getNeighbours(int x, int y, int z, BlockState state) {
+        int neighbours = 0;
+
+        if (isNeighbour(x, y, z, state, Direction.SOUTH)) neighbours |= FO;
+        if (isNeighbourDiagonal(x, y, z, state, 1, 0, 1)) neighbours |= FO_RI;
+        if (isNeighbour(x, y, z, state, Direction.EAST)) neighbours |= RI;
+        if (isNeighbourDiagonal(x, y, z, state, 1, 0, -1)) neighbours |= BA_RI;
+        if (isNeighbour(x, y, z, state, Direction.NORTH)) neighbours |= BA;
+        if (isNeighbourDiagonal(x, y, z, state, -1, 0, -1)) neighbours |= BA_LE;
+        if (isNeighbour(x, y, z, state, Direction.WEST)) neighbours |= LE;
+        if (isNeighbourDiagonal(x, y, z, state, -1, 0, 1)) neighbours |= FO_LE;
+
+        if (isNeighbour(x, y, z, state, Direction.UP)) neighbours |= TO;
+        if (isNeighbourDiagonal(x, y, z, state, 0, 1, 1)) neighbours |= TO_FO;
+        if (isNeighbourDiagonal(x, y, z, state, 0, 1, -1)) neighbours |= TO_BA;
+        if (isNeighbourDiagonal(x, y, z, state, 1, 1, 0)) neighbours |= TO_RI;
+        if (isNeighbourDiagonal(x, y, z, state, -1, 1, 0)) neighbours |= TO_LE;
+        if (isNeighbour(x, y, z, state, Direction.DOWN)) neighbours |= BO;
+        if (isNeighbourDiagonal(x, y, z, state, 0, -1, 1)) neighbours |= BO_FO;
+        if (isNeighbourDiagonal(x, y, z, state, 0, -1, -1)) neighbours |= BO_BA;
+        if (isNeighbourDiagonal(x, y, z, state, 1, -1, 0)) neighbours |= BO_RI;
+        if (isNeighbourDiagonal(x, y, z, state, -1, -1, 0)) neighbours |= BO_LE;
+
+        return neighbours;
     }
 
-    private boolean isNeighbour(Direction dir) {
+    private static boolean isNeighbour(int x, int y, int z, BlockState state, Direction dir) {
         blockPos.set(x + dir.getOffsetX(), y + dir.getOffsetY(), z + dir.getOffsetZ());
         BlockState neighbourState = mc.world.getBlockState(blockPos);
 
@@ -164,12 +158,14 @@ public class ESPBlock {
         return false;
     }
 
-    private boolean isNeighbourDiagonal(double x, double y, double z) {
-        blockPos.set(this.x + x, this.y + y, this.z + z);
+    private static boolean isNeighbourDiagonal(int x, int y, int z, BlockState state, int offsetX, int offsetY, int offsetZ) {
+        blockPos.set(x + offsetX, y + offsetY, z + offsetZ);
         return state.getBlock() == mc.world.getBlockState(blockPos).getBlock();
     }
 
-    public void render(Render3DEvent event) {
+    // Render
+
+    public static void render(Renderer3D renderer, int x, int y, int z, BlockState state, int neighbours, Color sideColor, Color lineColor) {
         double x1 = x;
         double y1 = y;
         double z1 = z;
@@ -177,7 +173,7 @@ public class ESPBlock {
         double y2 = y + 1;
         double z2 = z + 1;
 
-        VoxelShape shape = state.getOutlineShape(mc.world, blockPos);
+        VoxelShape shape = state.getOutlineShape(mc.world, renderPos.set(x, y, z));
 
         if (!shape.isEmpty()) {
             x1 = x + shape.getMin(Direction.Axis.X);
@@ -191,64 +187,62 @@ public class ESPBlock {
         ESPBlockData blockData = blockEsp.getBlockData(state.getBlock());
 
         ShapeMode shapeMode = blockData.shapeMode;
-        Color lineColor = blockData.lineColor;
-        Color sideColor = blockData.sideColor;
 
         if (neighbours == 0) {
-            event.renderer.box(x1, y1, z1, x2, y2, z2, sideColor, lineColor, shapeMode, 0);
+            renderer.box(x1, y1, z1, x2, y2, z2, sideColor, lineColor, shapeMode, 0);
         }
         else {
             // Lines
             if (shapeMode.lines()) {
                 // Vertical, BA_LE
                 if (((neighbours & LE) != LE && (neighbours & BA) != BA) || ((neighbours & LE) == LE && (neighbours & BA) == BA && (neighbours & BA_LE) != BA_LE)) {
-                    event.renderer.line(x1, y1, z1, x1, y2, z1, lineColor);
+                    renderer.line(x1, y1, z1, x1, y2, z1, lineColor);
                 }
                 // Vertical, FO_LE
                 if (((neighbours & LE) != LE && (neighbours & FO) != FO) || ((neighbours & LE) == LE && (neighbours & FO) == FO && (neighbours & FO_LE) != FO_LE)) {
-                    event.renderer.line(x1, y1, z2, x1, y2, z2, lineColor);
+                    renderer.line(x1, y1, z2, x1, y2, z2, lineColor);
                 }
                 // Vertical, BA_RI
                 if (((neighbours & RI) != RI && (neighbours & BA) != BA) || ((neighbours & RI) == RI && (neighbours & BA) == BA && (neighbours & BA_RI) != BA_RI)) {
-                    event.renderer.line(x2, y1, z1, x2, y2, z1, lineColor);
+                    renderer.line(x2, y1, z1, x2, y2, z1, lineColor);
                 }
                 // Vertical, FO_RI
                 if (((neighbours & RI) != RI && (neighbours & FO) != FO) || ((neighbours & RI) == RI && (neighbours & FO) == FO && (neighbours & FO_RI) != FO_RI)) {
-                    event.renderer.line(x2, y1, z2, x2, y2, z2, lineColor);
+                    renderer.line(x2, y1, z2, x2, y2, z2, lineColor);
                 }
 
                 // Horizontal bottom, BA_LE - BA_RI
                 if (((neighbours & BA) != BA && (neighbours & BO) != BO) || ((neighbours & BA) != BA && (neighbours & BO_BA) == BO_BA)) {
-                    event.renderer.line(x1, y1, z1, x2, y1, z1, lineColor);
+                    renderer.line(x1, y1, z1, x2, y1, z1, lineColor);
                 }
                 // Horizontal bottom, FO_LE - FO_RI
                 if (((neighbours & FO) != FO && (neighbours & BO) != BO) || ((neighbours & FO) != FO && (neighbours & BO_FO) == BO_FO)) {
-                    event.renderer.line(x1, y1, z2, x2, y1, z2, lineColor);
+                    renderer.line(x1, y1, z2, x2, y1, z2, lineColor);
                 }
                 // Horizontal top, BA_LE - BA_RI
                 if (((neighbours & BA) != BA && (neighbours & TO) != TO) || ((neighbours & BA) != BA && (neighbours & TO_BA) == TO_BA)) {
-                    event.renderer.line(x1, y2, z1, x2, y2, z1, lineColor);
+                    renderer.line(x1, y2, z1, x2, y2, z1, lineColor);
                 }
                 // Horizontal top, FO_LE - FO_RI
                 if (((neighbours & FO) != FO && (neighbours & TO) != TO) || ((neighbours & FO) != FO && (neighbours & TO_FO) == TO_FO)) {
-                    event.renderer.line(x1, y2, z2, x2, y2, z2, lineColor);
+                    renderer.line(x1, y2, z2, x2, y2, z2, lineColor);
                 }
 
                 // Horizontal bottom, BA_LE - FO_LE
                 if (((neighbours & LE) != LE && (neighbours & BO) != BO) || ((neighbours & LE) != LE && (neighbours & BO_LE) == BO_LE)) {
-                    event.renderer.line(x1, y1, z1, x1, y1, z2, lineColor);
+                    renderer.line(x1, y1, z1, x1, y1, z2, lineColor);
                 }
                 // Horizontal bottom, BA_RI - FO_RI
                 if (((neighbours & RI) != RI && (neighbours & BO) != BO) || ((neighbours & RI) != RI && (neighbours & BO_RI) == BO_RI)) {
-                    event.renderer.line(x2, y1, z1, x2, y1, z2, lineColor);
+                    renderer.line(x2, y1, z1, x2, y1, z2, lineColor);
                 }
                 // Horizontal top, BA_LE - FO_LE
                 if (((neighbours & LE) != LE && (neighbours & TO) != TO) || ((neighbours & LE) != LE && (neighbours & TO_LE) == TO_LE)) {
-                    event.renderer.line(x1, y2, z1, x1, y2, z2, lineColor);
+                    renderer.line(x1, y2, z1, x1, y2, z2, lineColor);
                 }
                 // Horizontal top, BA_RI - FO_RI
                 if (((neighbours & RI) != RI && (neighbours & TO) != TO) || ((neighbours & RI) != RI && (neighbours & TO_RI) == TO_RI)) {
-                    event.renderer.line(x2, y2, z1, x2, y2, z2, lineColor);
+                    renderer.line(x2, y2, z1, x2, y2, z2, lineColor);
                 }
             }
 
@@ -256,38 +250,29 @@ public class ESPBlock {
             if (shapeMode.sides()) {
                 // Bottom
                 if ((neighbours & BO) != BO) {
-                    event.renderer.quadHorizontal(x1, y1, z1, x2, z2, sideColor);
+                    renderer.quadHorizontal(x1, y1, z1, x2, z2, sideColor);
                 }
                 // Top
                 if ((neighbours & TO) != TO) {
-                    event.renderer.quadHorizontal(x1, y2, z1, x2, z2, sideColor);
+                    renderer.quadHorizontal(x1, y2, z1, x2, z2, sideColor);
                 }
                 // Front
                 if ((neighbours & FO) != FO) {
-                    event.renderer.quadVertical(x1, y1, z2, x2, y2, z2, sideColor);
+                    renderer.quadVertical(x1, y1, z2, x2, y2, z2, sideColor);
                 }
                 // Back
                 if ((neighbours & BA) != BA) {
-                    event.renderer.quadVertical(x1, y1, z1, x2, y2, z1, sideColor);
+                    renderer.quadVertical(x1, y1, z1, x2, y2, z1, sideColor);
                 }
                 // Right
                 if ((neighbours & RI) != RI) {
-                    event.renderer.quadVertical(x2, y1, z1, x2, y2, z2, sideColor);
+                    renderer.quadVertical(x2, y1, z1, x2, y2, z2, sideColor);
                 }
                 // Left
                 if ((neighbours & LE) != LE) {
-                    event.renderer.quadVertical(x1, y1, z1, x1, y2, z2, sideColor);
+                    renderer.quadVertical(x1, y1, z1, x1, y2, z2, sideColor);
                 }
             }
         }
     }
-
-
-    public static long getKey(int x, int y, int z) {
-        return ((long) y << 16) | ((long) (z & 15) << 8) | ((long) (x & 15));
-    }
-
-    public static long getKey(BlockPos blockPos) {
-        return getKey(blockPos.getX(), blockPos.getY(), blockPos.getZ());
-    }
 }
@@ -5,70 +5,265 @@
 
 package meteordevelopment.meteorclient.systems.modules.render.blockesp;
 
-import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import meteordevelopment.meteorclient.events.render.Render3DEvent;
+import meteordevelopment.meteorclient.renderer.Renderer3D;
+import meteordevelopment.meteorclient.renderer.RetainedRenderer3D;
+import meteordevelopment.meteorclient.systems.modules.Modules;
+import meteordevelopment.meteorclient.utils.render.GreedyMesher;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
+import net.minecraft.registry.Registries;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkSectionPos;
-import net.minecraft.world.Heightmap;
-import net.minecraft.world.chunk.Chunk;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.shape.VoxelShape;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.function.Predicate;
 
 import static meteordevelopment.meteorclient.MeteorClient.mc;
 import static meteordevelopment.meteorclient.utils.Utils.getRenderDistance;
 
+/**
+ * Blocks found in a single chunk, stored as parallel primitive arrays indexed by slot. {@link ESPBlock} objects are
+ * only created when something asks for a single block.
+ */
 public class ESPChunk {
+    private static final BlockESP blockEsp = Modules.get().get(BlockESP.class);
+
+    private static final int[] EMPTY = new int[0];
+
+    private final BlockPos.Mutable blockPos = new BlockPos.Mutable();
 
     private final int x, z;
-    public Long2ObjectMap<ESPBlock> blocks;
+
+    // Packed position -> slot
+    private final Int2IntOpenHashMap slots = new Int2IntOpenHashMap();
+
+    private int[] positions = EMPTY;
+    private int[] states = EMPTY;
+    private int[] neighbours = EMPTY;
+    private int[] groups = EMPTY;
+    private int size;
+
+    // Render data of the current contents, dropped whenever they change
+    private Snapshot snapshot;
 
     public ESPChunk(int x, int z) {
         this.x = x;
         this.z = z;
+
+        slots.defaultReturnValue(-1);
     }
 
     public ESPBlock get(int x, int y, int z) {
-        return blocks == null ? null : blocks.get(ESPBlock.getKey(x, y, z));
+        int slot = slots.get(ESPBlock.pack(x, y, z));
+        if (slot == -1) return null;
+
+        return new ESPBlock(x, y, z, Block.getStateFromRawId(states[slot]), neighbours[slot], blockEsp.getGroup(groups[slot]));
     }
 
-    public void add(BlockPos blockPos, boolean update) {
-        ESPBlock block = new ESPBlock(blockPos.getX(), blockPos.getY(), blockPos.getZ());
+    /** Returns the neighbour flags of the block or -1 if the block isn't tracked. */
+    public int getNeighbours(int x, int y, int z) {
+        int slot = slots.get(ESPBlock.pack(x, y, z));
+        return slot == -1 ? -1 : neighbours[slot];
+    }
 
-        if (blocks == null) blocks = new Long2ObjectOpenHashMap<>(64);
-        blocks.put(ESPBlock.getKey(blockPos), block);
+    public int getGroup(int x, int y, int z) {
+        int slot = slots.get(ESPBlock.pack(x, y, z));
+        return slot == -1 ? ESPGroup.NONE : groups[slot];
+    }
 
-        if (update) block.update();
+    public void setGroup(int x, int y, int z, int group) {
+        int slot = slots.get(ESPBlock.pack(x, y, z));
+        if (slot != -1) groups[slot] = group;
     }
 
-    public void add(BlockPos blockPos) {
-        add(blockPos, true);
+    public void add(BlockPos blockPos, BlockState state, boolean update) {
+        int pos = ESPBlock.pack(blockPos.getX(), blockPos.getY(), blockPos.getZ());
+        int slot = slots.get(pos);
+
+        if (slot == -1) {
+            slot = addSlot(pos);
+            groups[slot] = ESPGroup.NONE;
+        }
+
+        states[slot] = Block.getRawIdFromState(state);
+        neighbours[slot] = 0;
+        snapshot = null;
+
+        if (update) update(slot);
+    }
+
+    public void add(BlockPos blockPos, BlockState state) {
+        add(blockPos, state, true);
+    }
+
+    /** Copies over blocks of a chunk which hasn't been put into the world yet, call {@link #update()} afterwards. */
+    public void addAll(ESPChunk chunk) {
+        ensureCapacity(size + chunk.size);
+
+        for (int i = 0; i < chunk.size; i++) {
+            if (slots.containsKey(chunk.positions[i])) continue;
+
+            int slot = addSlot(chunk.positions[i]);
+            states[slot] = chunk.states[i];
+            neighbours[slot] = chunk.neighbours[i];
+            groups[slot] = chunk.groups[i];
+        }
+
+        snapshot = null;
+    }
+
+    /** Drops blocks without touching their groups, used when whole block types stop being tracked. */
+    public void removeIf(Predicate<Block> predicate) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (predicate.test(Block.getStateFromRawId(states[i]).getBlock())) removeSlot(i);
+        }
+
+        slots.trim();
     }
 
     public void remove(BlockPos blockPos) {
-        if (blocks != null) {
-            ESPBlock block = blocks.remove(ESPBlock.getKey(blockPos));
-            if (block != null) block.group.remove(block);
+        int slot = slots.get(ESPBlock.pack(blockPos.getX(), blockPos.getY(), blockPos.getZ()));
+        if (slot == -1) return;
+
+        int group = groups[slot];
+        int blockNeighbours = neighbours[slot];
+
+        removeSlot(slot);
+
+        ESPGroup espGroup = blockEsp.getGroup(group);
+        if (espGroup != null) espGroup.remove(blockPos.getX(), blockPos.getY(), blockPos.getZ(), blockNeighbours, true);
+    }
+
+    /** Removes all blocks of this chunk from their groups, the chunk itself is left untouched. */
+    public void unload() {
+        Int2ObjectMap<LongSet> positionsPerGroup = new Int2ObjectOpenHashMap<>();
+
+        for (int i = 0; i < size; i++) {
+            positionsPerGroup.computeIfAbsent(groups[i], group -> new LongOpenHashSet()).add(BlockPos.asLong(getX(i), getY(i), getZ(i)));
+        }
+
+        for (Int2ObjectMap.Entry<LongSet> entry : positionsPerGroup.int2ObjectEntrySet()) {
+            ESPGroup group = blockEsp.getGroup(entry.getIntKey());
+            if (group != null) group.removeAll(entry.getValue());
         }
     }
 
     public void update() {
-        if (blocks != null) {
-            for (ESPBlock block : blocks.values()) block.update();
-        }
+        for (int i = 0; i < size; i++) update(i);
     }
 
     public void update(int x, int y, int z) {
-        if (blocks != null) {
-            ESPBlock block = blocks.get(ESPBlock.getKey(x, y, z));
-            if (block != null) block.update();
+        int slot = slots.get(ESPBlock.pack(x, y, z));
+        if (slot != -1) update(slot);
+    }
+
+    private void update(int slot) {
+        int x = getX(slot);
+        int y = getY(slot);
+        int z = getZ(slot);
+
+        BlockState state = mc.world.getBlockState(blockPos.set(x, y, z));
+
+        states[slot] = Block.getRawIdFromState(state);
+        neighbours[slot] = ESPBlock.getNeighbours(x, y, z, state);
+        snapshot = null;
+
+        if (groups[slot] == ESPGroup.NONE) assignGroup(slot, x, y, z, state.getBlock());
+    }
+
+    private void assignGroup(int slot, int x, int y, int z, Block block) {
+        long pos = BlockPos.asLong(x, y, z);
+        ESPGroup firstGroup = null;
+
+        for (int side : ESPBlock.SIDES) {
+            if ((neighbours[slot] & side) != side) continue;
+
+            ESPGroup neighbourGroup = blockEsp.getGroup(ESPBlock.getSidePos(pos, side));
+            if (neighbourGroup == null) continue;
+
+            if (firstGroup == null) {
+                firstGroup = neighbourGroup;
+            }
+            else {
+                if (firstGroup != neighbourGroup) firstGroup.merge(neighbourGroup);
+            }
         }
+
+        if (firstGroup == null) {
+            firstGroup = blockEsp.newGroup(block);
+        }
+
+        firstGroup.add(pos);
+    }
+
+    private int addSlot(int pos) {
+        ensureCapacity(size + 1);
+
+        int slot = size++;
+        positions[slot] = pos;
+        slots.put(pos, slot);
+
+        return slot;
+    }
+
+    private void removeSlot(int slot) {
+        slots.remove(positions[slot]);
+        snapshot = null;
+
+        // Move the last block into the freed slot
+        int last = --size;
+
+        if (slot != last) {
+            positions[slot] = positions[last];
+            states[slot] = states[last];
+            neighbours[slot] = neighbours[last];
+            groups[slot] = groups[last];
+
+            slots.put(positions[slot], slot);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= positions.length) return;
+        capacity = Math.max(capacity, Math.max(positions.length * 2, 16));
+
+        positions = Arrays.copyOf(positions, capacity);
+        states = Arrays.copyOf(states, capacity);
+        neighbours = Arrays.copyOf(neighbours, capacity);
+        groups = Arrays.copyOf(groups, capacity);
+    }
+
+    private int getX(int slot) {
+        return (x << 4) + (positions[slot] & 15);
+    }
+
+    private int getY(int slot) {
+        return positions[slot] >> 8;
+    }
+
+    private int getZ(int slot) {
+        return (z << 4) + ((positions[slot] >> 4) & 15);
     }
 
     public int size() {
-        return blocks == null ? 0 : blocks.size();
+        return size;
+    }
+
+    /** Estimated heap used by this chunk's arrays, excluding the fixed per object overhead. */
+    public long getMemoryUsage() {
+        long arrays = 4L * positions.length * Integer.BYTES;
+        long table = 2L * (HashCommon.arraySize(Math.max(size, 1), Int2IntOpenHashMap.DEFAULT_LOAD_FACTOR) + 1) * Integer.BYTES;
+
+        return arrays + table;
     }
 
     public boolean shouldBeDeleted() {
@@ -76,35 +271,138 @@ public class ESPChunk {
         int chunkX = ChunkSectionPos.getSectionCoord(mc.player.getBlockPos().getX());
         int chunkZ = ChunkSectionPos.getSectionCoord(mc.player.getBlockPos().getZ());
 
+        return shouldBeDeleted(chunkX, chunkZ, viewDist);
+    }
+
+    public boolean shouldBeDeleted(int chunkX, int chunkZ, int viewDist) {
         return x > chunkX + viewDist || x < chunkX - viewDist || z > chunkZ + viewDist || z < chunkZ - viewDist;
     }
 
-    public void render(Render3DEvent event) {
-        if (blocks != null) {
-            for (ESPBlock block : blocks.values()) block.render(event);
+    public Snapshot getSnapshot() {
+        if (snapshot == null) {
+            snapshot = new Snapshot(x, z, Arrays.copyOf(positions, size), Arrays.copyOf(states, size), Arrays.copyOf(neighbours, size));
         }
+
+        return snapshot;
     }
 
+    /** Immutable copy of what needs to be rendered for a chunk, safe to read from the render thread without locking. */
+    public static class Snapshot {
+        // Meshes are only built on the render thread
+        private static final GreedyMesher MESHER = new GreedyMesher();
+        private static final BlockPos.Mutable MESHER_POS = new BlockPos.Mutable();
+
+        private final int x, z;
+        private final int[] positions, states, neighbours;
+        private final int minY, maxY;
+
+        private RetainedRenderer3D mesh;
+        private long meshShapeKey;
+
+        private Snapshot(int x, int z, int[] positions, int[] states, int[] neighbours) {
+            this.x = x;
+            this.z = z;
+            this.positions = positions;
+            this.states = states;
+            this.neighbours = neighbours;
+
+            int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
 
-    public static ESPChunk searchChunk(Chunk chunk, List<Block> blocks) {
-        ESPChunk schunk = new ESPChunk(chunk.getPos().x, chunk.getPos().z);
-        if (schunk.shouldBeDeleted()) return schunk;
+            for (int pos : positions) {
+                minY = Math.min(minY, pos >> 8);
+                maxY = Math.max(maxY, pos >> 8);
+            }
+
+            this.minY = minY;
+            this.maxY = maxY + 1;
+        }
+
+        public int size() {
+            return positions.length;
+        }
+
+        /**
+         * Rebuilds the retained mesh if it's missing or the shape settings changed and returns whether it's visible.
+         * Colors come from {@link ESPPalette} when drawing. Render thread only.
+         */
+        public boolean prepare(Render3DEvent event, long shapeKey) {
+            if (positions.length == 0 || !event.renderer.culling.isChunkVisible(x, z, minY, maxY)) return false;
+
+            if (mesh == null || meshShapeKey != shapeKey) {
+                if (mesh == null) mesh = new RetainedRenderer3D();
+
+                build(mesh.begin());
+                mesh.end();
+
+                meshShapeKey = shapeKey;
+            }
+
+            return true;
+        }
+
+        /** Draws inside {@link RetainedRenderer3D#beginBatch}, after {@link #prepare(Render3DEvent, long)} returned true. */
+        public void renderLines() {
+            mesh.renderLines();
+        }
+
+        public void renderSides() {
+            mesh.renderTriangles();
+        }
+
+        private void build(Renderer3D renderer) {
+            ESPPalette palette = blockEsp.getPalette();
+            boolean merge = blockEsp.isMergingFaces();
+            if (merge) MESHER.begin(1, true, Snapshot::getFullBlockKey);
 
-        BlockPos.Mutable blockPos = new BlockPos.Mutable();
+            for (int i = 0; i < positions.length; i++) {
+                int x = (this.x << 4) + (positions[i] & 15);
+                int y = positions[i] >> 8;
+                int z = (this.z << 4) + ((positions[i] >> 4) & 15);
+
+                BlockState state = Block.getStateFromRawId(states[i]);
+                Block block = state.getBlock();
+
+                // Only full blocks have coplanar faces with their neighbours, everything else keeps its own outline
+                if (merge && isFullBlock(state, x, y, z)) MESHER.add(x, y, z, Registries.BLOCK.getRawId(block));
+                else ESPBlock.render(renderer, x, y, z, state, neighbours[i], palette.getSideKey(block), palette.getLineKey(block));
+            }
 
-        for (int x = chunk.getPos().getStartX(); x <= chunk.getPos().getEndX(); x++) {
-            for (int z = chunk.getPos().getStartZ(); z <= chunk.getPos().getEndZ(); z++) {
-                int height = chunk.getHeightmap(Heightmap.Type.WORLD_SURFACE).get(x - chunk.getPos().getStartX(), z - chunk.getPos().getStartZ());
+            if (merge && !MESHER.isEmpty()) {
+                MESHER.end(new GreedyMesher.Output() {
+                    @Override
+                    public void face(Direction side, double x1, double y1, double z1, double x2, double y2, double z2, int key) {
+                        Block block = Registries.BLOCK.get(key);
+                        if (!blockEsp.getBlockData(block).shapeMode.sides()) return;
 
-                for (int y = mc.world.getBottomY(); y < height; y++) {
-                    blockPos.set(x, y, z);
-                    BlockState bs = chunk.getBlockState(blockPos);
+                        if (side.getAxis() == Direction.Axis.Y) renderer.quadHorizontal(x1, y1, z1, x2, z2, palette.getSideKey(block));
+                        else renderer.quadVertical(x1, y1, z1, x2, y2, z2, palette.getSideKey(block));
+                    }
 
-                    if (blocks.contains(bs.getBlock())) schunk.add(blockPos, false);
-                }
+                    @Override
+                    public void line(double x1, double y1, double z1, double x2, double y2, double z2, int key, boolean top) {
+                        Block block = Registries.BLOCK.get(key);
+                        if (blockEsp.getBlockData(block).shapeMode.lines()) renderer.line(x1, y1, z1, x2, y2, z2, palette.getLineKey(block));
+                    }
+                });
             }
         }
 
-        return schunk;
+        // Blocks outside of the snapshot connect like they do in ESPBlock.getNeighbours(), by looking at the world
+        private static int getFullBlockKey(int x, int y, int z) {
+            BlockState state = mc.world.getBlockState(MESHER_POS.set(x, y, z));
+            return isFullBlock(state, x, y, z) ? Registries.BLOCK.getRawId(state.getBlock()) : -1;
+        }
+
+        private static boolean isFullBlock(BlockState state, int x, int y, int z) {
+            VoxelShape shape = state.getOutlineShape(mc.world, MESHER_POS.set(x, y, z));
+            return shape.isEmpty() || Block.isShapeFullCube(shape);
+        }
+
+        public void destroyMesh() {
+            if (mesh != null) {
+                mesh.destroy();
+                mesh = null;
+            }
+        }
     }
 }
@@ -5,89 +5,114 @@
 
 package meteordevelopment.meteorclient.systems.modules.render.blockesp;
 
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import meteordevelopment.meteorclient.events.render.Render3DEvent;
 import meteordevelopment.meteorclient.systems.modules.Modules;
-import meteordevelopment.meteorclient.utils.misc.UnorderedArrayList;
 import meteordevelopment.meteorclient.utils.render.RenderUtils;
 import net.minecraft.block.Block;
-
-import java.util.ArrayDeque;
-import java.util.Queue;
-import java.util.Set;
+import net.minecraft.util.math.BlockPos;
 
 public class ESPGroup {
+    /** Group id of blocks which haven't been assigned to a group yet. */
+    public static final int NONE = 0;
+
     private static final BlockESP blockEsp = Modules.get().get(BlockESP.class);
 
-    private final Block block;
+    public final int id;
+    public final Block block;
 
-    public final UnorderedArrayList<ESPBlock> blocks = new UnorderedArrayList<>();
+    /** Positions of the blocks in this group, packed with {@link BlockPos#asLong(int, int, int)}. */
+    public final LongArrayList blocks = new LongArrayList();
 
     private double sumX, sumY, sumZ;
 
-    public ESPGroup(Block block) {
+    public ESPGroup(int id, Block block) {
+        this.id = id;
         this.block = block;
     }
 
-    public void add(ESPBlock block, boolean removeFromOld, boolean splitGroup) {
-        blocks.add(block);
-        sumX += block.x;
-        sumY += block.y;
-        sumZ += block.z;
+    public void add(long pos) {
+        int x = BlockPos.unpackLongX(pos);
+        int y = BlockPos.unpackLongY(pos);
+        int z = BlockPos.unpackLongZ(pos);
 
-        if (block.group != null && removeFromOld) block.group.remove(block, splitGroup);
-        block.group = this;
-    }
+        blocks.add(pos);
+        sumX += x;
+        sumY += y;
+        sumZ += z;
 
-    public void add(ESPBlock block) {
-        add(block, true, true);
+        blockEsp.setGroup(x, y, z, id);
     }
 
-    public void remove(ESPBlock block, boolean splitGroup) {
-        blocks.remove(block);
-        sumX -= block.x;
-        sumY -= block.y;
-        sumZ -= block.z;
+    public void remove(int x, int y, int z, int neighbours, boolean splitGroup) {
+        int i = blocks.indexOf(BlockPos.asLong(x, y, z));
+        if (i == -1) return;
 
-        if (blocks.isEmpty()) blockEsp.removeGroup(block.group);
+        removeAt(i);
+
+        if (blocks.isEmpty()) blockEsp.removeGroup(this);
         else if (splitGroup) {
-            trySplit(block);
+            trySplit(x, y, z, neighbours);
         }
     }
 
-    public void remove(ESPBlock block) {
-        remove(block, true);
+    /** Removes all the given positions in a single pass, without splitting the group. */
+    public void removeAll(LongSet positions) {
+        for (int i = blocks.size() - 1; i >= 0; i--) {
+            if (positions.contains(blocks.getLong(i))) removeAt(i);
+        }
+
+        if (blocks.isEmpty()) blockEsp.removeGroup(this);
     }
 
-    private void trySplit(ESPBlock block) {
-        Set<ESPBlock> neighbours = new ObjectOpenHashSet<>(6);
+    private void removeAt(int i) {
+        long pos = blocks.getLong(i);
+
+        sumX -= BlockPos.unpackLongX(pos);
+        sumY -= BlockPos.unpackLongY(pos);
+        sumZ -= BlockPos.unpackLongZ(pos);
+
+        // Order doesn't matter, move the last block into the hole
+        int last = blocks.size() - 1;
+        blocks.set(i, blocks.getLong(last));
+        blocks.removeLong(last);
+    }
+
+    private void trySplit(int x, int y, int z, int blockNeighbours) {
+        long blockPos = BlockPos.asLong(x, y, z);
+        LongSet neighbours = new LongOpenHashSet(6);
 
         for (int side : ESPBlock.SIDES) {
-            if ((block.neighbours & side) == side) {
-                ESPBlock neighbour = block.getSideBlock(side);
-                if (neighbour != null) neighbours.add(neighbour);
+            if ((blockNeighbours & side) == side) {
+                long neighbour = ESPBlock.getSidePos(blockPos, side);
+                if (blockEsp.getNeighbours(neighbour) != -1) neighbours.add(neighbour);
             }
         }
         if (neighbours.size() <= 1) return;
 
-        Set<ESPBlock> remainingBlocks = new ObjectOpenHashSet<>(blocks);
-        Queue<ESPBlock> blocksToCheck = new ArrayDeque<>();
+        LongSet remainingBlocks = new LongOpenHashSet(blocks);
+        LongArrayFIFOQueue blocksToCheck = new LongArrayFIFOQueue();
 
-        blocksToCheck.offer(blocks.get(0));
-        remainingBlocks.remove(blocks.get(0));
-        neighbours.remove(blocks.get(0));
+        blocksToCheck.enqueue(blocks.getLong(0));
+        remainingBlocks.remove(blocks.getLong(0));
+        neighbours.remove(blocks.getLong(0));
 
         loop: {
             while (!blocksToCheck.isEmpty()) {
-                ESPBlock b = blocksToCheck.poll();
+                long b = blocksToCheck.dequeueLong();
+                int bNeighbours = blockEsp.getNeighbours(b);
+                if (bNeighbours == -1) continue;
 
                 for (int side : ESPBlock.SIDES) {
-                    if ((b.neighbours & side) != side) continue;
-                    ESPBlock neighbour = b.getSideBlock(side);
+                    if ((bNeighbours & side) != side) continue;
+                    long neighbour = ESPBlock.getSidePos(b, side);
 
-                    if (neighbour != null && remainingBlocks.contains(neighbour)) {
-                        blocksToCheck.offer(neighbour);
-                        remainingBlocks.remove(neighbour);
+                    if (remainingBlocks.remove(neighbour)) {
+                        blocksToCheck.enqueue(neighbour);
 
                         neighbours.remove(neighbour);
                         if (neighbours.isEmpty()) break loop;
@@ -100,49 +125,70 @@ public class ESPGroup {
             ESPGroup group = blockEsp.newGroup(this.block);
             group.blocks.ensureCapacity(remainingBlocks.size());
 
-            blocks.removeIf(remainingBlocks::contains);
-
-            for (ESPBlock b : remainingBlocks) {
-                group.add(b, false, false);
+            for (int i = blocks.size() - 1; i >= 0; i--) {
+                if (remainingBlocks.contains(blocks.getLong(i))) removeAt(i);
+            }
 
-                sumX -= b.x;
-                sumY -= b.y;
-                sumZ -= b.z;
+            for (LongIterator it = remainingBlocks.iterator(); it.hasNext();) {
+                group.add(it.nextLong());
             }
 
             if (neighbours.size() > 1) {
-                block.neighbours = 0;
+                blockNeighbours = 0;
+
+                for (LongIterator it = neighbours.iterator(); it.hasNext();) {
+                    long b = it.nextLong();
 
-                for (ESPBlock b : neighbours) {
-                    int x = b.x - block.x;
-                    if (x == 1) block.neighbours |= ESPBlock.RI;
-                    else if (x == -1) block.neighbours |= ESPBlock.LE;
+                    int offsetX = BlockPos.unpackLongX(b) - x;
+                    if (offsetX == 1) blockNeighbours |= ESPBlock.RI;
+                    else if (offsetX == -1) blockNeighbours |= ESPBlock.LE;
 
-                    int y = b.y - block.y;
-                    if (y == 1) block.neighbours |= ESPBlock.TO;
-                    else if (y == -1) block.neighbours |= ESPBlock.BO;
+                    int offsetY = BlockPos.unpackLongY(b) - y;
+                    if (offsetY == 1) blockNeighbours |= ESPBlock.TO;
+                    else if (offsetY == -1) blockNeighbours |= ESPBlock.BO;
 
-                    int z = b.z - block.z;
-                    if (z == 1) block.neighbours |= ESPBlock.FO;
-                    else if (z == -1) block.neighbours |= ESPBlock.BA;
+                    int offsetZ = BlockPos.unpackLongZ(b) - z;
+                    if (offsetZ == 1) blockNeighbours |= ESPBlock.FO;
+                    else if (offsetZ == -1) blockNeighbours |= ESPBlock.BA;
                 }
 
-                group.trySplit(block);
+                group.trySplit(x, y, z, blockNeighbours);
             }
         }
     }
 
     public void merge(ESPGroup group) {
         blocks.ensureCapacity(blocks.size() + group.blocks.size());
-        for (ESPBlock block : group.blocks) add(block, false, false);
+        for (int i = 0; i < group.blocks.size(); i++) add(group.blocks.getLong(i));
         blockEsp.removeGroup(group);
     }
 
-    public void render(Render3DEvent event) {
-        ESPBlockData blockData = blockEsp.getBlockData(block);
+    public long getMemoryUsage() {
+        return (long) blocks.elements().length * Long.BYTES;
+    }
+
+    public Snapshot getSnapshot() {
+        return new Snapshot(block, sumX / blocks.size() + 0.5, sumY / blocks.size() + 0.5, sumZ / blocks.size() + 0.5);
+    }
+
+    /** Immutable tracer target of a group, safe to read from the render thread without locking. */
+    public static class Snapshot {
+        private final Block block;
+        private final double x, y, z;
+
+        private Snapshot(Block block, double x, double y, double z) {
+            this.block = block;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
 
-        if (blockData.tracer) {
-            event.renderer.line(RenderUtils.center.x, RenderUtils.center.y, RenderUtils.center.z, sumX / blocks.size() + 0.5, sumY / blocks.size() + 0.5, sumZ / blocks.size() + 0.5, blockData.tracerColor);
+        public void render(Render3DEvent event) {
+            ESPBlockData blockData = blockEsp.getBlockData(block);
+
+            if (blockData.tracer) {
+                event.renderer.line(RenderUtils.center.x, RenderUtils.center.y, RenderUtils.center.z, x, y, z, blockData.tracerColor);
+            }
         }
     }
 }
@@ -0,0 +1,98 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.systems.modules.render.blockesp;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import meteordevelopment.meteorclient.renderer.Shader;
+import meteordevelopment.meteorclient.renderer.Texture;
+import meteordevelopment.meteorclient.utils.render.color.Color;
+import net.minecraft.block.Block;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Colors of the block configs as a two row texture, sides in the first row and lines in the second. Retained meshes
+ * store palette indices instead of colors, so changing a color, rainbow included, doesn't rebuild them.
+ */
+public class ESPPalette {
+    private final Reference2IntOpenHashMap<Block> indices = new Reference2IntOpenHashMap<>();
+    private final List<ESPBlockData> entries = new ArrayList<>();
+
+    // Colors written into the meshes, the index is stored in red and green and the row in blue
+    private final List<Color> sideKeys = new ArrayList<>();
+    private final List<Color> lineKeys = new ArrayList<>();
+
+    private final Texture texture = new Texture();
+    private ByteBuffer data;
+    private int colorsHash;
+
+    public ESPPalette() {
+        indices.defaultReturnValue(0);
+    }
+
+    /** Assigns the indices and returns a key of the settings meshes are built from, colors excluded. Render thread only. */
+    public long update(ESPBlockData defaultData, Map<Block, ESPBlockData> configs) {
+        indices.clear();
+        entries.clear();
+
+        entries.add(defaultData);
+        long key = defaultData.shapeMode.ordinal();
+
+        for (Map.Entry<Block, ESPBlockData> entry : configs.entrySet()) {
+            indices.put(entry.getKey(), entries.size());
+            entries.add(entry.getValue());
+
+            key = key * 31 + (entry.getKey().hashCode() ^ entry.getValue().shapeMode.ordinal());
+        }
+
+        while (sideKeys.size() < entries.size()) {
+            int index = sideKeys.size();
+
+            sideKeys.add(new Color(index & 255, index >> 8, 0, 255));
+            lineKeys.add(new Color(index & 255, index >> 8, 255, 255));
+        }
+
+        return key;
+    }
+
+    public Color getSideKey(Block block) {
+        return sideKeys.get(indices.getInt(block));
+    }
+
+    public Color getLineKey(Block block) {
+        return lineKeys.get(indices.getInt(block));
+    }
+
+    /** Uploads the colors if they changed and binds the palette to the bound shader. */
+    public void bind() {
+        int hash = entries.size();
+        for (ESPBlockData blockData : entries) hash = 31 * (31 * hash + blockData.sideColor.hashCode()) + blockData.lineColor.hashCode();
+
+        if (!texture.isValid() || hash != colorsHash) {
+            int width = entries.size();
+            if (data == null || data.capacity() < width * 8) data = BufferUtils.createByteBuffer(Math.max(width * 8, 64));
+
+            data.clear();
+            for (ESPBlockData blockData : entries) put(blockData.sideColor);
+            for (ESPBlockData blockData : entries) put(blockData.lineColor);
+            data.flip();
+
+            texture.upload(width, 2, data, Texture.Format.RGBA, Texture.Filter.Nearest, Texture.Filter.Nearest, true);
+            colorsHash = hash;
+        }
+
+        texture.bind(0);
+        Shader.BOUND.set("u_Palette", 0);
+    }
+
+    private void put(Color color) {
+        data.put((byte) color.r).put((byte) color.g).put((byte) color.b).put((byte) color.a);
+    }
+}
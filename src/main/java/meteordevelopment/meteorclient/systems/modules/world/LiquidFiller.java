@@ -156,8 +156,12 @@ public class LiquidFiller extends Module {
         }
         if (!item.found()) return;
 
-        // Loop blocks around the player
-        BlockIterator.register((int) Math.ceil(range.get()+1), (int) Math.ceil(range.get()), (blockPos, blockState) -> {
+        // Loop blocks around the player, a sphere only needs the blocks within its radius plus the offset of the player in their block
+        int hRadius = (int) Math.ceil(range.get()+1);
+        int vRadius = (int) Math.ceil(range.get());
+        if (shape.get() == Shape.Sphere) hRadius = vRadius = (int) Math.ceil(range.get()) + 1;
+
+        BlockIterator.register(shape.get() == Shape.Sphere ? BlockIterator.Shape.Sphere : BlockIterator.Shape.Cube, hRadius, vRadius, (blockPos, blockState) -> {
             boolean toofarSphere = Utils.squaredDistance(pX, pY, pZ, blockPos.getX() + 0.5, blockPos.getY() + 0.5, blockPos.getZ() + 0.5) > rangeSq;
             boolean toofarUniformCube = maxDist(Math.floor(pX), Math.floor(pY), Math.floor(pZ), blockPos.getX(), blockPos.getY(), blockPos.getZ()) >= range.get();
 
@@ -19,9 +19,10 @@ import meteordevelopment.meteorclient.utils.render.RenderUtils;
 import meteordevelopment.meteorclient.utils.render.color.SettingColor;
 import meteordevelopment.meteorclient.utils.world.BlockIterator;
 import meteordevelopment.meteorclient.utils.world.BlockUtils;
+import meteordevelopment.meteorclient.utils.world.WorldWindow;
 import meteordevelopment.orbit.EventHandler;
 import meteordevelopment.orbit.EventPriority;
-import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
 import net.minecraft.network.packet.c2s.play.PlayerActionC2SPacket;
 import net.minecraft.util.Hand;
 import net.minecraft.util.math.BlockPos;
@@ -31,6 +32,7 @@ import net.minecraft.util.math.Vec3d;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.BiConsumer;
 
 public class Nuker extends Module {
     private final SettingGroup sgGeneral = settings.getDefaultGroup();
@@ -132,6 +134,15 @@ public class Nuker extends Module {
             .build()
     );
 
+    private final Setting<Integer> searchBlocksPerTick = sgGeneral.add(new IntSetting.Builder()
+            .name("search-blocks-per-tick")
+            .description("How many blocks are searched each tick, spreading large ranges over several ticks. Blocks are only sorted and broken once the whole range was searched. 0 searches everything every tick.")
+            .defaultValue(0)
+            .min(0)
+            .sliderMax(20000)
+            .build()
+    );
+
     private final Setting<Nuker.SortMode> sortMode = sgGeneral.add(new EnumSetting.Builder<Nuker.SortMode>()
             .name("sort-mode")
             .description("The blocks you want to mine first.")
@@ -169,14 +180,14 @@ public class Nuker extends Module {
             .build()
     );
 
-    private final Setting<List<Block>> blacklist = sgWhitelist.add(new BlockListSetting.Builder()
+    private final BlockListSetting blacklist = sgWhitelist.add(new BlockListSetting.Builder()
             .name("blacklist")
             .description("The blocks you don't want to mine.")
             .visible(() -> listMode.get() == ListMode.Blacklist)
             .build()
     );
 
-    private final Setting<List<Block>> whitelist = sgWhitelist.add(new BlockListSetting.Builder()
+    private final BlockListSetting whitelist = sgWhitelist.add(new BlockListSetting.Builder()
             .name("whitelist")
             .description("The blocks you want to mine.")
             .visible(() -> listMode.get() == ListMode.Whitelist)
@@ -246,6 +257,8 @@ public class Nuker extends Module {
 
     private final Pool<BlockPos.Mutable> blockPosPool = new Pool<>(BlockPos.Mutable::new);
     private final List<BlockPos.Mutable> blocks = new ArrayList<>();
+    private final BlockIterator.Cursor cursor = new BlockIterator.Cursor(() -> searchComplete = true);
+    private boolean searchComplete;
 
     private boolean firstBlock;
     private final BlockPos.Mutable lastBlockPos = new BlockPos.Mutable();
@@ -268,6 +281,9 @@ public class Nuker extends Module {
         firstBlock = true;
         timer = 0;
         noBlockTimer = 0;
+        cursor.reset();
+        searchComplete = false;
+        clearBlocks();
     }
 
     @EventHandler
@@ -343,8 +359,14 @@ public class Nuker extends Module {
         }
         box = new Box(pos1, pos2);
 
-        // Find blocks to break
-        BlockIterator.register(Math.max((int) Math.ceil(range.get()+1), maxh), Math.max((int) Math.ceil(range.get()), maxv), (blockPos, blockState) -> {
+        // Find blocks to break, a sphere only needs the blocks within its radius plus the offset of the player in their block
+        int hRadius = Math.max((int) Math.ceil(range.get()+1), maxh);
+        int vRadius = Math.max((int) Math.ceil(range.get()), maxv);
+        if (shape.get() == Shape.Sphere) hRadius = vRadius = (int) Math.ceil(range.get()) + 1;
+
+        WorldWindow.request(hRadius, vRadius);
+
+        BiConsumer<BlockPos, BlockState> search = (blockPos, blockState) -> {
             // Check for air, unbreakable blocks and distance
             boolean toofarSphere = Utils.squaredDistance(pX, pY, pZ, blockPos.getX() + 0.5, blockPos.getY() + 0.5, blockPos.getZ() + 0.5) > rangeSq;
             boolean toofarUniformCube = maxDist(Math.floor(pX), Math.floor(pY), Math.floor(pZ), blockPos.getX(), blockPos.getY(), blockPos.getZ()) >= range.get();
@@ -363,15 +385,34 @@ public class Nuker extends Module {
             if (mode.get() == Mode.Smash && blockState.getHardness(mc.world, blockPos) != 0) return;
 
             // Check whitelist or blacklist
-            if (listMode.get() == ListMode.Whitelist && !whitelist.get().contains(blockState.getBlock())) return;
-            if (listMode.get() == ListMode.Blacklist && blacklist.get().contains(blockState.getBlock())) return;
+            if (listMode.get() == ListMode.Whitelist && !whitelist.contains(blockState.getBlock())) return;
+            if (listMode.get() == ListMode.Blacklist && blacklist.contains(blockState.getBlock())) return;
 
             // Add block
             blocks.add(blockPosPool.get().set(blockPos));
-        });
+        };
+
+        boolean amortized = searchBlocksPerTick.get() > 0;
+        BlockIterator.Shape searchShape = shape.get() == Shape.Sphere ? BlockIterator.Shape.Sphere : BlockIterator.Shape.Cube;
+
+        if (amortized) BlockIterator.register(searchShape, hRadius, vRadius, searchBlocksPerTick.get(), cursor, search);
+        else BlockIterator.register(searchShape, hRadius, vRadius, search);
 
         // Break block if found
         BlockIterator.after(() -> {
+            // Keep collecting until the whole range was searched so the sort mode applies to all of it
+            if (amortized) {
+                if (!searchComplete) return;
+                searchComplete = false;
+
+                // Blocks found in earlier ticks could have been broken since
+                blocks.removeIf(blockPos -> {
+                    if (BlockUtils.canBreak(blockPos)) return false;
+                    blockPosPool.free(blockPos);
+                    return true;
+                });
+            }
+
             // Sort blocks
             if (sortMode.get() == SortMode.TopDown)
                 blocks.sort(Comparator.comparingDouble(value -> -1*value.getY()));
@@ -395,7 +436,11 @@ public class Nuker extends Module {
                 firstBlock = false;
                 lastBlockPos.set(blocks.get(0));
 
-                if (timer > 0) return;
+                if (timer > 0) {
+                    // The next search starts over, don't carry this one's blocks into it
+                    if (amortized) clearBlocks();
+                    return;
+                }
             }
 
             // Break
@@ -419,11 +464,15 @@ public class Nuker extends Module {
             firstBlock = false;
 
             // Clear current block positions
-            for (BlockPos.Mutable blockPos : blocks) blockPosPool.free(blockPos);
-            blocks.clear();
+            clearBlocks();
         });
     }
 
+    private void clearBlocks() {
+        for (BlockPos.Mutable blockPos : blocks) blockPosPool.free(blockPos);
+        blocks.clear();
+    }
+
     private void breakBlock(BlockPos blockPos) {
         if (packetMine.get()) {
             mc.getNetworkHandler().sendPacket(new PlayerActionC2SPacket(PlayerActionC2SPacket.Action.START_DESTROY_BLOCK, blockPos, BlockUtils.getDirection(blockPos)));
@@ -11,7 +11,6 @@ import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import meteordevelopment.meteorclient.MeteorClient;
-import meteordevelopment.meteorclient.events.world.ChunkDataEvent;
 import meteordevelopment.meteorclient.gui.GuiTheme;
 import meteordevelopment.meteorclient.gui.WindowScreen;
 import meteordevelopment.meteorclient.gui.widgets.WWidget;
@@ -24,16 +23,19 @@ import meteordevelopment.meteorclient.systems.modules.Categories;
 import meteordevelopment.meteorclient.systems.modules.Module;
 import meteordevelopment.meteorclient.utils.Utils;
 import meteordevelopment.meteorclient.utils.render.MeteorToast;
+import meteordevelopment.meteorclient.utils.world.ChunkScanner;
 import meteordevelopment.orbit.EventHandler;
 import net.minecraft.block.entity.*;
 import net.minecraft.item.Items;
 import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.WorldChunk;
 
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Predicate;
 
 public class StashFinder extends Module {
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
@@ -82,6 +84,43 @@ public class StashFinder extends Module {
 
     public List<Chunk> chunks = new ArrayList<>();
 
+    private final ChunkScanner.Consumer scanner = new ChunkScanner.Consumer() {
+        private final Predicate<BlockEntity> filter = blockEntity -> storageBlocks.get().contains(blockEntity.getType());
+
+        @Override
+        public Predicate<BlockEntity> blockEntityFilter() {
+            return filter;
+        }
+
+        @Override
+        public ChunkScanner.Scan begin(WorldChunk worldChunk) {
+            // Check the distance.
+            double chunkXAbs = Math.abs(worldChunk.getPos().x * 16);
+            double chunkZAbs = Math.abs(worldChunk.getPos().z * 16);
+            if (Math.sqrt(chunkXAbs * chunkXAbs + chunkZAbs * chunkZAbs) < minimumDistance.get()) return null;
+
+            Chunk chunk = new Chunk(worldChunk.getPos());
+
+            return new ChunkScanner.Scan() {
+                @Override
+                public void blockEntity(BlockEntity blockEntity) {
+                    if (blockEntity instanceof ChestBlockEntity) chunk.chests++;
+                    else if (blockEntity instanceof BarrelBlockEntity) chunk.barrels++;
+                    else if (blockEntity instanceof ShulkerBoxBlockEntity) chunk.shulkers++;
+                    else if (blockEntity instanceof EnderChestBlockEntity) chunk.enderChests++;
+                    else if (blockEntity instanceof AbstractFurnaceBlockEntity) chunk.furnaces++;
+                    else if (blockEntity instanceof DispenserBlockEntity) chunk.dispensersDroppers++;
+                    else if (blockEntity instanceof HopperBlockEntity) chunk.hoppers++;
+                }
+
+                @Override
+                public void end() {
+                    if (chunk.getTotal() >= minimumStorageCount.get()) mc.execute(() -> onStashFound(chunk));
+                }
+            };
+        }
+    };
+
     public StashFinder() {
         super(Categories.World, "stash-finder", "Searches loaded chunks for storage blocks. Saves to <your minecraft folder>/meteor-client");
     }
@@ -89,52 +128,37 @@ public class StashFinder extends Module {
     @Override
     public void onActivate() {
         load();
+
+        ChunkScanner.register(scanner);
     }
 
-    @EventHandler
-    private void onChunkData(ChunkDataEvent event) {
-        // Check the distance.
-        double chunkXAbs = Math.abs(event.chunk.getPos().x * 16);
-        double chunkZAbs = Math.abs(event.chunk.getPos().z * 16);
-        if (Math.sqrt(chunkXAbs * chunkXAbs + chunkZAbs * chunkZAbs) < minimumDistance.get()) return;
-
-        Chunk chunk = new Chunk(event.chunk.getPos());
-
-        for (BlockEntity blockEntity : event.chunk.getBlockEntities().values()) {
-            if (!storageBlocks.get().contains(blockEntity.getType())) continue;
-
-            if (blockEntity instanceof ChestBlockEntity) chunk.chests++;
-            else if (blockEntity instanceof BarrelBlockEntity) chunk.barrels++;
-            else if (blockEntity instanceof ShulkerBoxBlockEntity) chunk.shulkers++;
-            else if (blockEntity instanceof EnderChestBlockEntity) chunk.enderChests++;
-            else if (blockEntity instanceof AbstractFurnaceBlockEntity) chunk.furnaces++;
-            else if (blockEntity instanceof DispenserBlockEntity) chunk.dispensersDroppers++;
-            else if (blockEntity instanceof HopperBlockEntity) chunk.hoppers++;
-        }
+    @Override
+    public void onDeactivate() {
+        ChunkScanner.unregister(scanner);
+    }
 
-        if (chunk.getTotal() >= minimumStorageCount.get()) {
-            Chunk prevChunk = null;
-            int i = chunks.indexOf(chunk);
+    private void onStashFound(Chunk chunk) {
+        if (!isActive()) return;
 
-            if (i < 0) chunks.add(chunk);
-            else prevChunk = chunks.set(i, chunk);
+        Chunk prevChunk = null;
+        int i = chunks.indexOf(chunk);
 
-            saveJson();
-            saveCsv();
+        if (i < 0) chunks.add(chunk);
+        else prevChunk = chunks.set(i, chunk);
 
-            if (sendNotifications.get() && (!chunk.equals(prevChunk) || !chunk.countsEqual(prevChunk))) {
-                switch (notificationMode.get()) {
-                    case Chat -> info("Found stash at (highlight)%s(default), (highlight)%s(default).", chunk.x, chunk.z);
-                    case Toast -> mc.getToastManager().add(new MeteorToast(Items.CHEST, title, "Found Stash!"));
-                    case Both -> {
-                        info("Found stash at (highlight)%s(default), (highlight)%s(default).", chunk.x, chunk.z);
-                        mc.getToastManager().add(new MeteorToast(Items.CHEST, title, "Found Stash!"));
-                    }
+        saveJson();
+        saveCsv();
+
+        if (sendNotifications.get() && (!chunk.equals(prevChunk) || !chunk.countsEqual(prevChunk))) {
+            switch (notificationMode.get()) {
+                case Chat -> info("Found stash at (highlight)%s(default), (highlight)%s(default).", chunk.x, chunk.z);
+                case Toast -> mc.getToastManager().add(new MeteorToast(Items.CHEST, title, "Found Stash!"));
+                case Both -> {
+                    info("Found stash at (highlight)%s(default), (highlight)%s(default).", chunk.x, chunk.z);
+                    mc.getToastManager().add(new MeteorToast(Items.CHEST, title, "Found Stash!"));
                 }
             }
         }
-
-        ChunkDataEvent.returnChunkDataEvent(event);
     }
 
     @Override
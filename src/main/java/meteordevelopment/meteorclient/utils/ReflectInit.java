@@ -11,14 +11,30 @@ import meteordevelopment.meteorclient.addons.MeteorAddon;
 import org.reflections.Reflections;
 import org.reflections.scanners.Scanners;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Runs {@link PreInit} and {@link PostInit} methods of Meteor and its addons. Packages built with the init index
+ * processor list their methods in {@value #INDEX}, already sorted by dependencies, other packages are scanned with
+ * Reflections.
+ */
 public class ReflectInit {
-    private static final List<Reflections> reflections = new ArrayList<>();
+    private static final String INDEX = "META-INF/meteor-init.idx";
+
+    private static final List<String> packages = new ArrayList<>();
+    private static final Map<String, Reflections> reflections = new HashMap<>();
+
+    // Indexed init methods by phase, in the order they have to run
+    private static final Map<String, List<String[]>> index = new HashMap<>();
 
     public static void registerPackages() {
         add(MeteorClient.ADDON);
@@ -30,46 +46,123 @@ public class ReflectInit {
                 throw new RuntimeException("Addon \"%s\" is too old and cannot be ran.".formatted(addon.name), e);
             }
         }
+
+        loadIndex();
     }
 
     private static void add(MeteorAddon addon) {
         String pkg = addon.getPackage();
         if (pkg == null || pkg.isBlank()) return;
-        reflections.add(new Reflections(pkg, Scanners.MethodsAnnotated));
+        packages.add(pkg);
+    }
+
+    private static void loadIndex() {
+        try {
+            Enumeration<URL> urls = ReflectInit.class.getClassLoader().getResources(INDEX);
+
+            while (urls.hasMoreElements()) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(urls.nextElement().openStream(), StandardCharsets.UTF_8))) {
+                    for (String line; (line = reader.readLine()) != null;) {
+                        if (line.isBlank() || line.startsWith("#")) continue;
+
+                        String[] parts = line.split(" ");
+                        if (parts.length == 3) index.computeIfAbsent(parts[0], phase -> new ArrayList<>()).add(new String[] { parts[1], parts[2] });
+                    }
+                }
+            }
+        } catch (IOException e) {
+            MeteorClient.LOG.error("Failed to read the init index, falling back to scanning.", e);
+            index.clear();
+        }
     }
 
     public static void init(Class<? extends Annotation> annotation) {
-        for (Reflections reflection : reflections) {
-            Set<Method> initTasks = reflection.getMethodsAnnotatedWith(annotation);
-            if (initTasks == null) return;
+        String phase = annotation == PreInit.class ? "pre" : "post";
+        List<Timing> timings = new ArrayList<>();
+
+        long start = System.nanoTime();
+        int indexed = 0;
+
+        for (String pkg : packages) {
+            if (isIndexed(pkg)) {
+                indexed++;
 
-            Map<Class<?>, List<Method>> byClass = initTasks.stream().collect(Collectors.groupingBy(Method::getDeclaringClass));
-            Set<Method> left = new HashSet<>(initTasks);
+                for (String[] init : index.getOrDefault(phase, Collections.emptyList())) {
+                    if (isInPackage(init[0], pkg)) runIndexed(init[0], init[1], timings);
+                }
+            }
+            else scan(pkg, annotation, timings);
+        }
 
-            for (Method m; (m = left.stream().findAny().orElse(null)) != null;) {
-                reflectInit(m, annotation, left, byClass);
+        timings.sort(Comparator.comparingLong(Timing::nanos).reversed());
+        for (Timing timing : timings) MeteorClient.LOG.debug("@{} {} took {} ms", annotation.getSimpleName(), timing.name, timing.nanos / 1_000_000.0);
+
+        MeteorClient.LOG.info("Ran {} @{} methods in {} ms, {} of {} packages indexed. Slowest: {}",
+            timings.size(),
+            annotation.getSimpleName(),
+            (System.nanoTime() - start) / 1_000_000,
+            indexed,
+            packages.size(),
+            timings.stream().limit(5).map(timing -> "%s %.1f ms".formatted(timing.name, timing.nanos / 1_000_000.0)).collect(Collectors.joining(", "))
+        );
+    }
+
+    // Index
+
+    private static boolean isIndexed(String pkg) {
+        for (List<String[]> inits : index.values()) {
+            for (String[] init : inits) {
+                if (isInPackage(init[0], pkg)) return true;
             }
         }
+
+        return false;
     }
 
-    private static <T extends Annotation> void reflectInit(Method task, Class<T> annotation, Set<Method> left, Map<Class<?>, List<Method>> byClass) {
+    private static boolean isInPackage(String className, String pkg) {
+        return className.startsWith(pkg) && className.length() > pkg.length() && className.charAt(pkg.length()) == '.';
+    }
+
+    private static void runIndexed(String className, String methodName, List<Timing> timings) {
+        Method task;
+
+        try {
+            task = Class.forName(className, true, ReflectInit.class.getClassLoader()).getMethod(methodName);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            throw new RuntimeException("Init method \"%s.%s\" from the init index doesn't exist, the index is out of date.".formatted(className, methodName), e);
+        }
+
+        run(task, timings);
+    }
+
+    // Scanning
+
+    private static void scan(String pkg, Class<? extends Annotation> annotation, List<Timing> timings) {
+        Reflections reflection = reflections.computeIfAbsent(pkg, p -> new Reflections(p, Scanners.MethodsAnnotated));
+
+        Set<Method> initTasks = reflection.getMethodsAnnotatedWith(annotation);
+        if (initTasks == null) return;
+
+        Map<Class<?>, List<Method>> byClass = initTasks.stream().collect(Collectors.groupingBy(Method::getDeclaringClass));
+        Set<Method> left = new HashSet<>(initTasks);
+
+        for (Method m : initTasks) {
+            if (left.contains(m)) reflectInit(m, annotation, left, byClass, timings);
+        }
+    }
+
+    private static <T extends Annotation> void reflectInit(Method task, Class<T> annotation, Set<Method> left, Map<Class<?>, List<Method>> byClass, List<Timing> timings) {
         left.remove(task);
 
         for (Class<?> clazz : getDependencies(task, annotation)) {
             for (Method m : byClass.getOrDefault(clazz, Collections.emptyList())) {
                 if (left.contains(m)) {
-                    reflectInit(m, annotation, left, byClass);
+                    reflectInit(m, annotation, left, byClass, timings);
                 }
             }
         }
 
-        try {
-            task.invoke(null);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            e.printStackTrace();
-        } catch (NullPointerException e) {
-            throw new RuntimeException("Method \"%s\" using Init annotations from non-static context".formatted(task.getName()), e);
-        }
+        run(task, timings);
     }
 
     private static <T extends Annotation> Class<?>[] getDependencies(Method task, Class<T> annotation) {
@@ -84,4 +177,20 @@ public class ReflectInit {
 
         return new Class<?>[]{};
     }
+
+    private static void run(Method task, List<Timing> timings) {
+        long start = System.nanoTime();
+
+        try {
+            task.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            e.printStackTrace();
+        } catch (NullPointerException e) {
+            throw new RuntimeException("Method \"%s\" using Init annotations from non-static context".formatted(task.getName()), e);
+        }
+
+        timings.add(new Timing(task.getDeclaringClass().getSimpleName() + "." + task.getName(), System.nanoTime() - start));
+    }
+
+    private record Timing(String name, long nanos) {}
 }
@@ -70,6 +70,7 @@ public class Utils {
     public static final Color WHITE = new Color(255, 255, 255);
     public static boolean rendering3D = true;
     public static double frameTime;
+    public static long frameCount;
     public static Screen screenToOpen;
     public static VertexSorter vertexSorter;
 
@@ -11,15 +11,23 @@ import baritone.api.process.IBaritoneProcess;
 import meteordevelopment.meteorclient.MeteorClient;
 import meteordevelopment.meteorclient.mixin.ClientPlayerInteractionManagerAccessor;
 import meteordevelopment.meteorclient.mixin.MinecraftClientAccessor;
+import meteordevelopment.meteorclient.renderer.Culling;
+import meteordevelopment.meteorclient.renderer.MeshAllocator;
+import meteordevelopment.meteorclient.renderer.StreamBuffer;
+import meteordevelopment.meteorclient.renderer.text.Font;
 import meteordevelopment.meteorclient.systems.config.Config;
 import meteordevelopment.meteorclient.systems.modules.Module;
 import meteordevelopment.meteorclient.systems.modules.Modules;
 import meteordevelopment.meteorclient.utils.PreInit;
 import meteordevelopment.meteorclient.utils.Utils;
 import meteordevelopment.meteorclient.utils.player.ChatUtils;
+import meteordevelopment.meteorclient.utils.player.DamageUtils;
 import meteordevelopment.meteorclient.utils.player.PlayerUtils;
+import meteordevelopment.meteorclient.utils.world.BlockIterator;
 import meteordevelopment.meteorclient.utils.world.Dimension;
+import meteordevelopment.meteorclient.utils.world.HoleIndex;
 import meteordevelopment.meteorclient.utils.world.TickRate;
+import meteordevelopment.meteorclient.utils.world.WorldWindow;
 import meteordevelopment.starscript.Script;
 import meteordevelopment.starscript.Section;
 import meteordevelopment.starscript.StandardLib;
@@ -88,6 +96,19 @@ public class MeteorStarscript {
             .set("is_module_active", MeteorStarscript::isModuleActive)
             .set("get_module_info", MeteorStarscript::getModuleInfo)
             .set("prefix", MeteorStarscript::getMeteorPrefix)
+            .set("mesh_uploaded_bytes", () -> Value.number(StreamBuffer.getUploadedBytes()))
+            .set("mesh_memory", () -> Value.number(MeshAllocator.getUsedBytes()))
+            .set("mesh_memory_pooled", () -> Value.number(MeshAllocator.getPooledBytes()))
+            .set("culling_submitted", () -> Value.number(Culling.getSubmitted()))
+            .set("culling_culled", () -> Value.number(Culling.getCulled()))
+            .set("text_layout_hits", () -> Value.number(Font.getLayoutHits()))
+            .set("text_layout_misses", () -> Value.number(Font.getLayoutMisses()))
+            .set("block_iterator_time", () -> Value.number(BlockIterator.getLastTickTime() / 1_000_000.0))
+            .set("block_iterator_blocks", () -> Value.number(BlockIterator.getLastTickBlocks()))
+            .set("world_window_filled_blocks", () -> Value.number(WorldWindow.getFilledBlocks()))
+            .set("hole_index_checked_blocks", () -> Value.number(HoleIndex.getCheckedBlocks()))
+            .set("exposure_cache_hits", () -> Value.number(DamageUtils.getExposureCacheHits()))
+            .set("exposure_cache_misses", () -> Value.number(DamageUtils.getExposureCacheMisses()))
         );
 
         // Baritone
@@ -0,0 +1,41 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.utils.misc;
+
+import net.minecraft.util.collection.IndexedIterable;
+
+/**
+ * Membership bitset indexed by registry raw id. Updates replace the whole bitset so readers on other threads (chunk
+ * meshing, chunk scanning) always see a complete snapshot without locking.
+ */
+public class RegistryIdSet<T> {
+    private static final long[] EMPTY = new long[0];
+
+    private final IndexedIterable<T> registry;
+    private volatile long[] bits = EMPTY;
+
+    public RegistryIdSet(IndexedIterable<T> registry) {
+        this.registry = registry;
+    }
+
+    public void update(Iterable<? extends T> values) {
+        long[] bits = new long[(registry.size() + 63) >> 6];
+
+        for (T value : values) {
+            int id = registry.getRawId(value);
+            if (id >= 0 && (id >> 6) < bits.length) bits[id >> 6] |= 1L << id;
+        }
+
+        this.bits = bits;
+    }
+
+    public boolean contains(T value) {
+        int id = registry.getRawId(value);
+        long[] bits = this.bits;
+
+        return id >= 0 && (id >> 6) < bits.length && (bits[id >> 6] & (1L << id)) != 0;
+    }
+}
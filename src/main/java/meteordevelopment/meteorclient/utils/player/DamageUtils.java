@@ -5,8 +5,15 @@
 
 package meteordevelopment.meteorclient.utils.player;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import meteordevelopment.meteorclient.MeteorClient;
 import meteordevelopment.meteorclient.events.game.GameJoinedEvent;
+import meteordevelopment.meteorclient.events.game.GameLeftEvent;
+import meteordevelopment.meteorclient.events.world.BlockUpdateEvent;
+import meteordevelopment.meteorclient.events.world.ChunkDataEvent;
+import meteordevelopment.meteorclient.events.world.ChunkUnloadEvent;
+import meteordevelopment.meteorclient.events.world.TickEvent;
 import meteordevelopment.meteorclient.mixininterface.IExplosion;
 import meteordevelopment.meteorclient.mixininterface.IRaycastContext;
 import meteordevelopment.meteorclient.mixininterface.IVec3d;
@@ -16,6 +23,7 @@ import meteordevelopment.meteorclient.utils.entity.fakeplayer.FakePlayerEntity;
 import meteordevelopment.orbit.EventHandler;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
+import net.minecraft.client.world.ClientWorld;
 import net.minecraft.enchantment.EnchantmentHelper;
 import net.minecraft.enchantment.Enchantments;
 import net.minecraft.entity.DamageUtil;
@@ -35,15 +43,34 @@ import net.minecraft.world.GameMode;
 import net.minecraft.world.RaycastContext;
 import net.minecraft.world.explosion.Explosion;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import static meteordevelopment.meteorclient.MeteorClient.mc;
 
 public class DamageUtils {
+    // Exposure is computed for positions snapped to this fraction of a block, so small movements still hit the cache
+    private static final double EXPOSURE_GRID = 32;
+    // Ticks a cached exposure is kept without being used
+    private static final int EXPOSURE_TTL = 10;
+    private static final int EXPOSURE_CACHE_SIZE = 32768;
+
     private static final Vec3d vec3d = new Vec3d(0, 0, 0);
+    private static final Vec3d exposureSource = new Vec3d(0, 0, 0);
     private static Explosion explosion;
     private static RaycastContext raycastContext;
 
+    private static final Map<ExposureKey, CachedExposure> exposures = new HashMap<>();
+    // Cached exposures by the chunk sections their corridor touches, removed entries are dropped from the lists lazily
+    private static final Long2ObjectMap<List<CachedExposure>> exposureSections = new Long2ObjectOpenHashMap<>();
+    private static final ExposureKey exposureKey = new ExposureKey();
+    private static ClientWorld exposureWorld;
+    private static int tick;
+    private static long exposureHits, exposureMisses;
+
     @PreInit
     public static void init() {
         MeteorClient.EVENT_BUS.subscribe(DamageUtils.class);
@@ -53,6 +80,107 @@ public class DamageUtils {
     private static void onGameJoined(GameJoinedEvent event) {
         explosion = new Explosion(mc.world, null, 0, 0, 0, 6, false, Explosion.DestructionType.DESTROY);
         raycastContext = new RaycastContext(null, null, RaycastContext.ShapeType.COLLIDER, RaycastContext.FluidHandling.ANY, mc.player);
+
+        clearExposures();
+    }
+
+    @EventHandler
+    private static void onGameLeft(GameLeftEvent event) {
+        clearExposures();
+    }
+
+    @EventHandler
+    private static void onTick(TickEvent.Post event) {
+        tick++;
+
+        // Dimension changes replace the world without leaving the game
+        if (exposureWorld != mc.world) {
+            exposureWorld = mc.world;
+            clearExposures();
+        }
+
+        if (exposureSections.isEmpty()) return;
+
+        // Every cached exposure is in at least one section, so this visits all of them
+        exposureSections.values().removeIf(section -> {
+            section.removeIf(exposure -> {
+                if (!exposure.removed && tick - exposure.lastUsed > EXPOSURE_TTL) removeExposure(exposure);
+                return exposure.removed;
+            });
+
+            return section.isEmpty();
+        });
+    }
+
+    @EventHandler
+    private static void onBlockUpdate(BlockUpdateEvent event) {
+        if (exposures.isEmpty()) return;
+
+        BlockPos pos = event.pos;
+        invalidateExposures(ChunkSectionPos.asLong(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4), pos.getX(), pos.getY(), pos.getZ(), pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    @EventHandler
+    private static void onChunkData(ChunkDataEvent event) {
+        invalidateChunk(event.chunk.getPos().x, event.chunk.getPos().z);
+    }
+
+    @EventHandler
+    private static void onChunkUnload(ChunkUnloadEvent event) {
+        invalidateChunk(event.x, event.z);
+    }
+
+    private static void invalidateChunk(int chunkX, int chunkZ) {
+        if (exposures.isEmpty()) return;
+
+        int x = chunkX << 4;
+        int z = chunkZ << 4;
+
+        for (int sy = mc.world.getBottomSectionCoord(); sy < mc.world.getTopSectionCoord(); sy++) {
+            invalidateExposures(ChunkSectionPos.asLong(chunkX, sy, chunkZ), x, Integer.MIN_VALUE, z, x + 15, Integer.MAX_VALUE, z + 15);
+        }
+    }
+
+    private static void invalidateExposures(long sectionKey, int x1, int y1, int z1, int x2, int y2, int z2) {
+        List<CachedExposure> section = exposureSections.get(sectionKey);
+        if (section == null) return;
+
+        section.removeIf(exposure -> {
+            if (!exposure.removed && exposure.intersects(x1, y1, z1, x2, y2, z2)) removeExposure(exposure);
+            return exposure.removed;
+        });
+
+        if (section.isEmpty()) exposureSections.remove(sectionKey);
+    }
+
+    private static void addExposure(CachedExposure exposure) {
+        exposures.put(exposure.key, exposure);
+
+        for (int x = exposure.x1 >> 4; x <= exposure.x2 >> 4; x++) {
+            for (int y = exposure.y1 >> 4; y <= exposure.y2 >> 4; y++) {
+                for (int z = exposure.z1 >> 4; z <= exposure.z2 >> 4; z++) {
+                    long key = ChunkSectionPos.asLong(x, y, z);
+                    List<CachedExposure> section = exposureSections.get(key);
+
+                    if (section == null) {
+                        section = new ArrayList<>();
+                        exposureSections.put(key, section);
+                    }
+
+                    section.add(exposure);
+                }
+            }
+        }
+    }
+
+    private static void removeExposure(CachedExposure exposure) {
+        exposures.remove(exposure.key);
+        exposure.removed = true;
+    }
+
+    private static void clearExposures() {
+        exposures.clear();
+        exposureSections.clear();
     }
 
     // Crystal damage
@@ -212,6 +340,31 @@ public class DamageUtils {
             box = box.offset(v.x, v.y, v.z);
         }
 
+        // Snap the source and the box to the grid, keeping the size of the box
+        int sx = snap(source.x), sy = snap(source.y), sz = snap(source.z);
+        int bx = snap(box.minX), by = snap(box.minY), bz = snap(box.minZ);
+
+        ((IVec3d) exposureSource).set(sx / EXPOSURE_GRID, sy / EXPOSURE_GRID, sz / EXPOSURE_GRID);
+        box = box.offset(bx / EXPOSURE_GRID - box.minX, by / EXPOSURE_GRID - box.minY, bz / EXPOSURE_GRID - box.minZ);
+
+        exposureKey.set(sx, sy, sz, bx, by, bz, box, obsidianPos, ignoreTerrain);
+        CachedExposure cached = exposures.get(exposureKey);
+
+        if (cached != null) {
+            cached.lastUsed = tick;
+            exposureHits++;
+
+            return cached.exposure;
+        }
+
+        exposureMisses++;
+        double exposure = computeExposure(exposureSource, entity, box, raycastContext, obsidianPos, ignoreTerrain);
+
+        if (exposures.size() < EXPOSURE_CACHE_SIZE) addExposure(new CachedExposure(exposureKey.copy(), exposure, exposureSource, box, tick));
+        return exposure;
+    }
+
+    private static double computeExposure(Vec3d source, Entity entity, Box box, RaycastContext raycastContext, BlockPos obsidianPos, boolean ignoreTerrain) {
         double d = 1 / ((box.maxX - box.minX) * 2 + 1);
         double e = 1 / ((box.maxY - box.minY) * 2 + 1);
         double f = 1 / ((box.maxZ - box.minZ) * 2 + 1);
@@ -245,6 +398,18 @@ public class DamageUtils {
         return 0;
     }
 
+    private static int snap(double value) {
+        return (int) Math.round(value * EXPOSURE_GRID);
+    }
+
+    public static long getExposureCacheHits() {
+        return exposureHits;
+    }
+
+    public static long getExposureCacheMisses() {
+        return exposureMisses;
+    }
+
     private static BlockHitResult raycast(RaycastContext context, BlockPos obsidianPos, boolean ignoreTerrain) {
         return BlockView.raycast(context.getStart(), context.getEnd(), context, (raycastContext, blockPos) -> {
             BlockState blockState;
@@ -271,4 +436,98 @@ public class DamageUtils {
             return BlockHitResult.createMissed(raycastContext.getEnd(), Direction.getFacing(vec3d.x, vec3d.y, vec3d.z), BlockPos.ofFloored(raycastContext.getEnd()));
         });
     }
+
+    private static class ExposureKey {
+        private int sx, sy, sz;
+        private int bx, by, bz;
+        private double width, height, depth;
+        private long obsidianPos;
+        private boolean ignoreTerrain;
+
+        public void set(int sx, int sy, int sz, int bx, int by, int bz, Box box, BlockPos obsidianPos, boolean ignoreTerrain) {
+            this.sx = sx;
+            this.sy = sy;
+            this.sz = sz;
+            this.bx = bx;
+            this.by = by;
+            this.bz = bz;
+            this.width = box.maxX - box.minX;
+            this.height = box.maxY - box.minY;
+            this.depth = box.maxZ - box.minZ;
+            this.obsidianPos = obsidianPos == null ? Long.MIN_VALUE : obsidianPos.asLong();
+            this.ignoreTerrain = ignoreTerrain;
+        }
+
+        public ExposureKey copy() {
+            ExposureKey key = new ExposureKey();
+
+            key.sx = sx;
+            key.sy = sy;
+            key.sz = sz;
+            key.bx = bx;
+            key.by = by;
+            key.bz = bz;
+            key.width = width;
+            key.height = height;
+            key.depth = depth;
+            key.obsidianPos = obsidianPos;
+            key.ignoreTerrain = ignoreTerrain;
+
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ExposureKey key)) return false;
+
+            return sx == key.sx && sy == key.sy && sz == key.sz
+                && bx == key.bx && by == key.by && bz == key.bz
+                && width == key.width && height == key.height && depth == key.depth
+                && obsidianPos == key.obsidianPos && ignoreTerrain == key.ignoreTerrain;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = sx;
+            result = 31 * result + sy;
+            result = 31 * result + sz;
+            result = 31 * result + bx;
+            result = 31 * result + by;
+            result = 31 * result + bz;
+            result = 31 * result + Double.hashCode(width);
+            result = 31 * result + Double.hashCode(height);
+            result = 31 * result + Double.hashCode(depth);
+            result = 31 * result + Long.hashCode(obsidianPos);
+            result = 31 * result + (ignoreTerrain ? 1 : 0);
+            return result;
+        }
+    }
+
+    private static class CachedExposure {
+        public final ExposureKey key;
+        public final double exposure;
+        public int lastUsed;
+        public boolean removed;
+
+        // Blocks the rays can pass through, a change to any of them invalidates the exposure
+        private final int x1, y1, z1, x2, y2, z2;
+
+        public CachedExposure(ExposureKey key, double exposure, Vec3d source, Box box, int tick) {
+            this.key = key;
+            this.exposure = exposure;
+            this.lastUsed = tick;
+
+            x1 = MathHelper.floor(Math.min(source.x, box.minX));
+            y1 = MathHelper.floor(Math.min(source.y, box.minY));
+            z1 = MathHelper.floor(Math.min(source.z, box.minZ));
+            x2 = MathHelper.floor(Math.max(source.x, box.maxX));
+            y2 = MathHelper.floor(Math.max(source.y, box.maxY));
+            z2 = MathHelper.floor(Math.max(source.z, box.maxZ));
+        }
+
+        public boolean intersects(int x1, int y1, int z1, int x2, int y2, int z2) {
+            return x1 <= this.x2 && x2 >= this.x1 && y1 <= this.y2 && y2 >= this.y1 && z1 <= this.z2 && z2 >= this.z1;
+        }
+    }
 }
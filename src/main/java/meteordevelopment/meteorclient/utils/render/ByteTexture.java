@@ -60,6 +60,21 @@ public class ByteTexture extends AbstractTexture {
         glTexImage2D(GL_TEXTURE_2D, 0, format.toOpenGL(), width, height, 0, format.toOpenGL(), GL_UNSIGNED_BYTE, buffer);
     }
 
+    /** Replaces a region of the texture with pixels whose rows are {@code rowLength} pixels apart, has to be called on the render thread. */
+    public void upload(int x, int y, int width, int height, int rowLength, Format format, long pixels) {
+        bindTexture();
+
+        glPixelStorei(GL_UNPACK_ROW_LENGTH, rowLength);
+        glPixelStorei(GL_UNPACK_SKIP_ROWS, 0);
+        glPixelStorei(GL_UNPACK_SKIP_PIXELS, 0);
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+
+        glTexSubImage2D(GL_TEXTURE_2D, 0, x, y, width, height, format.toOpenGL(), GL_UNSIGNED_BYTE, pixels);
+
+        glPixelStorei(GL_UNPACK_ROW_LENGTH, 0);
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+    }
+
     @Override
     public void load(ResourceManager manager) throws IOException {}
 
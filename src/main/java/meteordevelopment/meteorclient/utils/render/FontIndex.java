@@ -0,0 +1,129 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.utils.render;
+
+import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.renderer.text.FontInfo;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Family and type of every system font file, saved between launches so files are only parsed again when their size or
+ * modification time changed. Files which aren't usable fonts are remembered too.
+ */
+public class FontIndex {
+    private static final File FILE = new File(MeteorClient.FOLDER, "fonts.nbt");
+    private static final int VERSION = 1;
+
+    private Map<String, Entry> entries = new HashMap<>();
+    private boolean changed;
+
+    public static FontIndex load() {
+        FontIndex index = new FontIndex();
+        if (!FILE.exists()) return index;
+
+        try {
+            NbtCompound tag = NbtIo.read(FILE);
+            if (tag == null || tag.getInt("version") != VERSION) return index;
+
+            for (NbtElement element : tag.getList("fonts", NbtElement.COMPOUND_TYPE)) {
+                NbtCompound fontTag = (NbtCompound) element;
+
+                FontInfo info = null;
+                if (fontTag.contains("family")) info = new FontInfo(fontTag.getString("family"), FontInfo.Type.valueOf(fontTag.getString("type")));
+
+                index.entries.put(fontTag.getString("path"), new Entry(fontTag.getLong("size"), fontTag.getLong("modified"), info));
+            }
+        }
+        catch (IOException | IllegalArgumentException e) {
+            MeteorClient.LOG.error("Failed to read the font index, all fonts will be parsed again.", e);
+            index.entries.clear();
+        }
+
+        return index;
+    }
+
+    /** Font info of each file in the same order, {@code null} for files which aren't usable fonts. */
+    public FontInfo[] get(List<File> files) {
+        FontInfo[] infos = new FontInfo[files.size()];
+        Entry[] updated = new Entry[files.size()];
+
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            Entry entry = entries.get(file.getAbsolutePath());
+
+            if (entry != null && entry.size == file.length() && entry.modified == file.lastModified()) {
+                infos[i] = entry.info;
+                updated[i] = entry;
+            }
+        }
+
+        // Only new and changed files are read, each of them is parsed on its own so they can be parsed in parallel
+        IntStream.range(0, files.size()).parallel().filter(i -> updated[i] == null).forEach(i -> {
+            File file = files.get(i);
+
+            infos[i] = FontUtils.getSysFontInfo(file);
+            updated[i] = new Entry(file.length(), file.lastModified(), infos[i]);
+        });
+
+        // Files which are gone are dropped from the index
+        Map<String, Entry> entries = new HashMap<>();
+        for (int i = 0; i < files.size(); i++) entries.put(files.get(i).getAbsolutePath(), updated[i]);
+
+        changed |= !entries.equals(this.entries);
+        this.entries = entries;
+
+        return infos;
+    }
+
+    public void save() {
+        if (!changed) return;
+
+        NbtCompound tag = new NbtCompound();
+        tag.putInt("version", VERSION);
+
+        NbtList fontsTag = new NbtList();
+
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            NbtCompound fontTag = new NbtCompound();
+
+            fontTag.putString("path", entry.getKey());
+            fontTag.putLong("size", entry.getValue().size);
+            fontTag.putLong("modified", entry.getValue().modified);
+
+            FontInfo info = entry.getValue().info;
+            if (info != null) {
+                fontTag.putString("family", info.family());
+                fontTag.putString("type", info.type().name());
+            }
+
+            fontsTag.add(fontTag);
+        }
+
+        tag.put("fonts", fontsTag);
+
+        try {
+            MeteorClient.FOLDER.mkdirs();
+            NbtIo.write(tag, FILE);
+
+            changed = false;
+        }
+        catch (IOException e) {
+            MeteorClient.LOG.error("Failed to save the font index.", e);
+        }
+    }
+
+    private record Entry(long size, long modified, FontInfo info) {}
+}
@@ -20,6 +20,7 @@ import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -103,19 +104,18 @@ public class FontUtils {
         }
     }
 
-    public static void loadSystem(List<FontFamily> fontList, File dir) {
-        if (!dir.exists() || !dir.isDirectory()) return;
+    /** Adds the fonts from every search path, only files which aren't in the index yet are parsed. */
+    public static void loadSystem(List<FontFamily> fontList, FontIndex index) {
+        List<File> files = new ArrayList<>();
 
-        File[] files = dir.listFiles((file) -> (file.isFile() && file.getName().endsWith(".ttf") || file.isDirectory()));
-        if (files == null) return;
+        for (String fontPath : getSearchPaths()) {
+            findSystemFonts(new File(fontPath), files);
+        }
 
-        for (File file : files) {
-            if (file.isDirectory()) {
-                loadSystem(fontList, file);
-                continue;
-            }
+        FontInfo[] infos = index.get(files);
 
-            FontInfo fontInfo = FontUtils.getSysFontInfo(file);
+        for (int i = 0; i < files.size(); i++) {
+            FontInfo fontInfo = infos[i];
             if (fontInfo == null) continue;
 
             boolean isBuiltin = false;
@@ -127,13 +127,25 @@ public class FontUtils {
             }
             if (isBuiltin) continue;
 
-            FontFace fontFace = new SystemFontFace(fontInfo, file.toPath());
+            FontFace fontFace = new SystemFontFace(fontInfo, files.get(i).toPath());
             if (!addFont(fontList, fontFace)) {
                 MeteorClient.LOG.warn("Failed to load system font {}", fontFace);
             }
         }
     }
 
+    private static void findSystemFonts(File dir, List<File> fonts) {
+        if (!dir.exists() || !dir.isDirectory()) return;
+
+        File[] files = dir.listFiles((file) -> (file.isFile() && file.getName().endsWith(".ttf") || file.isDirectory()));
+        if (files == null) return;
+
+        for (File file : files) {
+            if (file.isDirectory()) findSystemFonts(file, fonts);
+            else fonts.add(file);
+        }
+    }
+
     public static boolean addFont(List<FontFamily> fontList, FontFace font) {
         if (font == null) return false;
 
@@ -0,0 +1,297 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.utils.render;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+
+import java.util.Arrays;
+
+/**
+ * Merges the outlines of neighbouring block sized cells before they reach the renderer. Faces between connected cells
+ * are dropped, coplanar faces with the same key are joined into rectangles and collinear edges into single lines.
+ * Two cells are connected when they are next to each other and have the same key, usually a block id or hole type.
+ * Keys must not be negative. Not thread safe, use one instance per thread.
+ */
+public class GreedyMesher {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final Lookup NONE = (x, y, z) -> -1;
+
+    private final Long2IntOpenHashMap cells = new Long2IntOpenHashMap();
+
+    // Visible faces, grouped by side and plane
+    private final Long2ObjectMap<Long2IntOpenHashMap> planes = new Long2ObjectOpenHashMap<>();
+
+    // Outline edges one unit long, per axis, keyed by their lowest point
+    private final Long2IntOpenHashMap[] edges = new Long2IntOpenHashMap[3];
+
+    private Lookup outside = NONE;
+    private double height;
+    private boolean stacked;
+
+    private final int[] min = new int[3], max = new int[3], point = new int[3];
+
+    public GreedyMesher() {
+        cells.defaultReturnValue(-1);
+
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = new Long2IntOpenHashMap();
+            edges[i].defaultReturnValue(-1);
+        }
+    }
+
+    /**
+     * Starts collecting cells which are {@code height} blocks tall. Cells are only connected vertically when {@code stacked}
+     * is true and the height is exactly one block. {@code outside} returns the key of cells that weren't added, so
+     * faces and edges bordering geometry built separately (like a neighbouring chunk) are dropped too, may be null.
+     */
+    public void begin(double height, boolean stacked, Lookup outside) {
+        this.height = height;
+        this.stacked = stacked && height == 1;
+        this.outside = outside != null ? outside : NONE;
+
+        cells.clear();
+    }
+
+    public void add(int x, int y, int z, int key) {
+        cells.put(BlockPos.asLong(x, y, z), key);
+    }
+
+    public boolean isEmpty() {
+        return cells.isEmpty();
+    }
+
+    /** Merges everything added since {@link #begin(double, boolean, Lookup)} and hands the result to the output. */
+    public void end(Output output) {
+        for (Long2IntMap.Entry entry : cells.long2IntEntrySet()) {
+            long pos = entry.getLongKey();
+            int key = entry.getIntValue();
+
+            int x = BlockPos.unpackLongX(pos);
+            int y = BlockPos.unpackLongY(pos);
+            int z = BlockPos.unpackLongZ(pos);
+
+            for (Direction side : DIRECTIONS) {
+                if (isConnected(x, y, z, side, key)) continue;
+
+                addFace(x, y, z, side, key);
+                addEdges(x, y, z, side, key);
+            }
+        }
+
+        for (Long2ObjectMap.Entry<Long2IntOpenHashMap> entry : planes.long2ObjectEntrySet()) {
+            mergeFaces(DIRECTIONS[(int) (entry.getLongKey() >>> 32)], (int) entry.getLongKey(), entry.getValue(), output);
+        }
+
+        for (int axis = 0; axis < edges.length; axis++) {
+            mergeEdges(axis, edges[axis], output);
+            edges[axis].clear();
+        }
+
+        planes.clear();
+        cells.clear();
+        outside = NONE;
+    }
+
+    // Cells
+
+    private int getKey(int x, int y, int z) {
+        int key = cells.get(BlockPos.asLong(x, y, z));
+        return key != -1 ? key : outside.get(x, y, z);
+    }
+
+    private boolean isConnected(int x, int y, int z, Direction side, int key) {
+        if (!stacked && side.getAxis() == Direction.Axis.Y) return false;
+        return getKey(x + side.getOffsetX(), y + side.getOffsetY(), z + side.getOffsetZ()) == key;
+    }
+
+    private boolean isFaceVisible(int x, int y, int z, Direction side, int key) {
+        return getKey(x, y, z) == key && !isConnected(x, y, z, side, key);
+    }
+
+    // Faces
+
+    private void addFace(int x, int y, int z, Direction side, int key) {
+        int plane = switch (side.getAxis()) {
+            case X -> x;
+            case Y -> y;
+            case Z -> z;
+        };
+
+        long planeKey = ((long) side.ordinal() << 32) | (plane & 0xFFFFFFFFL);
+
+        Long2IntOpenHashMap faces = planes.get(planeKey);
+        if (faces == null) {
+            faces = new Long2IntOpenHashMap();
+            faces.defaultReturnValue(-1);
+            planes.put(planeKey, faces);
+        }
+
+        switch (side.getAxis()) {
+            case X -> faces.put(packFace(z, y), key);
+            case Y -> faces.put(packFace(x, z), key);
+            case Z -> faces.put(packFace(x, y), key);
+        }
+    }
+
+    private void mergeFaces(Direction side, int plane, Long2IntOpenHashMap faces, Output output) {
+        // Sorted by v then u, so every rectangle starts at its lowest corner
+        long[] starts = faces.keySet().toLongArray();
+        Arrays.sort(starts);
+
+        // Side faces of cells which aren't a full block tall have gaps between them vertically
+        boolean mergeV = side.getAxis() == Direction.Axis.Y || stacked;
+
+        for (long start : starts) {
+            int key = faces.get(start);
+            if (key == -1) continue;
+
+            int u = getFaceU(start);
+            int v = getFaceV(start);
+
+            int width = 1;
+            while (faces.get(packFace(u + width, v)) == key) width++;
+
+            int length = 1;
+            if (mergeV) {
+                grow:
+                while (true) {
+                    for (int i = 0; i < width; i++) {
+                        if (faces.get(packFace(u + i, v + length)) != key) break grow;
+                    }
+
+                    length++;
+                }
+            }
+
+            for (int j = 0; j < length; j++) {
+                for (int i = 0; i < width; i++) faces.remove(packFace(u + i, v + j));
+            }
+
+            boolean positive = side.getDirection() == Direction.AxisDirection.POSITIVE;
+
+            switch (side.getAxis()) {
+                case X -> {
+                    double x = plane + (positive ? 1 : 0);
+                    output.face(side, x, getY(v, false), u, x, getY(v + length - 1, true), u + width, key);
+                }
+                case Y -> {
+                    double y = getY(plane, positive);
+                    output.face(side, u, y, v, u + width, y, v + length, key);
+                }
+                case Z -> {
+                    double z = plane + (positive ? 1 : 0);
+                    output.face(side, u, getY(v, false), z, u + width, getY(v + length - 1, true), z, key);
+                }
+            }
+        }
+    }
+
+    private static long packFace(int u, int v) {
+        return ((long) v << 32) | ((long) u - Integer.MIN_VALUE);
+    }
+
+    private static int getFaceU(long face) {
+        return (int) ((face & 0xFFFFFFFFL) + Integer.MIN_VALUE);
+    }
+
+    private static int getFaceV(long face) {
+        return (int) (face >> 32);
+    }
+
+    // Edges
+
+    private void addEdges(int x, int y, int z, Direction side, int key) {
+        // Cell bounds in edge space, where the bottom and top of a cell get their own y unless cells are stacked
+        min[0] = x;
+        min[1] = getLatticeY(y, false);
+        min[2] = z;
+        max[0] = x + 1;
+        max[1] = getLatticeY(y, true);
+        max[2] = z + 1;
+
+        int faceAxis = side.getAxis().ordinal();
+        int facePos = side.getDirection() == Direction.AxisDirection.POSITIVE ? max[faceAxis] : min[faceAxis];
+
+        for (Direction edgeSide : DIRECTIONS) {
+            if (edgeSide.getAxis() == side.getAxis()) continue;
+
+            // Neighbouring face in the same plane continues the surface, so there's no edge between them. Side faces of
+            // cells which aren't stacked are never merged vertically, the gap between them keeps both edges
+            if (isMergedAlong(side, edgeSide) && isFaceVisible(x + edgeSide.getOffsetX(), y + edgeSide.getOffsetY(), z + edgeSide.getOffsetZ(), side, key)) continue;
+
+            int edgeAxis = edgeSide.getAxis().ordinal();
+            int lineAxis = 3 - faceAxis - edgeAxis;
+
+            point[faceAxis] = facePos;
+            point[edgeAxis] = edgeSide.getDirection() == Direction.AxisDirection.POSITIVE ? max[edgeAxis] : min[edgeAxis];
+            point[lineAxis] = min[lineAxis];
+
+            edges[lineAxis].putIfAbsent(BlockPos.asLong(point[0], point[1], point[2]), key);
+        }
+    }
+
+    private boolean isMergedAlong(Direction side, Direction edgeSide) {
+        return stacked || side.getAxis() == Direction.Axis.Y || edgeSide.getAxis() != Direction.Axis.Y;
+    }
+
+    private void mergeEdges(int axis, Long2IntOpenHashMap axisEdges, Output output) {
+        int dx = axis == 0 ? 1 : 0;
+        int dy = axis == 1 ? 1 : 0;
+        int dz = axis == 2 ? 1 : 0;
+
+        for (Long2IntMap.Entry entry : axisEdges.long2IntEntrySet()) {
+            long start = entry.getLongKey();
+            int key = entry.getIntValue();
+
+            // Only walk from the first edge of a run
+            if (axisEdges.get(BlockPos.add(start, -dx, -dy, -dz)) == key) continue;
+
+            int length = 1;
+            while (axisEdges.get(BlockPos.add(start, dx * length, dy * length, dz * length)) == key) length++;
+
+            int x = BlockPos.unpackLongX(start);
+            int y = BlockPos.unpackLongY(start);
+            int z = BlockPos.unpackLongZ(start);
+
+            boolean top = !stacked && axis != 1 && (y & 1) == 1;
+            output.line(x, getWorldY(y), z, x + dx * length, getWorldY(y + dy * length), z + dz * length, key, top);
+        }
+    }
+
+    // Heights
+
+    private int getLatticeY(int y, boolean top) {
+        if (stacked) return top ? y + 1 : y;
+        return y * 2 + (top ? 1 : 0);
+    }
+
+    private double getWorldY(int latticeY) {
+        if (stacked) return latticeY;
+        return (latticeY >> 1) + (latticeY & 1) * height;
+    }
+
+    private double getY(int y, boolean top) {
+        return getWorldY(getLatticeY(y, top));
+    }
+
+    public interface Lookup {
+        /** Key of the cell at the position or -1 if there is none. */
+        int get(int x, int y, int z);
+    }
+
+    public interface Output {
+        /** Axis aligned rectangle facing {@code side}, the coordinates along the side's axis are equal. */
+        void face(Direction side, double x1, double y1, double z1, double x2, double y2, double z2, int key);
+
+        /** Outline edge, {@code top} is set for horizontal edges on top of cells which aren't stacked. */
+        void line(double x1, double y1, double z1, double x2, double y2, double z2, int key, boolean top);
+    }
+}
@@ -13,19 +13,32 @@ import meteordevelopment.meteorclient.utils.misc.Pool;
 import meteordevelopment.orbit.EventHandler;
 import meteordevelopment.orbit.EventPriority;
 import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.EmptyChunk;
+import net.minecraft.world.chunk.WorldChunk;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.function.BiConsumer;
 
 import static meteordevelopment.meteorclient.MeteorClient.mc;
 
+/**
+ * Walks the blocks around the player once per tick for every module that registered a callback during the tick. Block
+ * states are read straight from the chunk sections and callbacks with the same region are grouped, so each block only
+ * visits the groups whose region covers it.
+ * <p>
+ * Callbacks registered with a {@link Cursor} are amortized instead: each tick they get at most their budget of blocks,
+ * continuing where the previous tick stopped, until the whole region has been delivered.
+ */
 public class BlockIterator {
     private static final Pool<Callback> callbackPool = new Pool<>(Callback::new);
-    private static final List<Callback> callbacks = new ArrayList<>();
+    private static final Pool<Region> regionPool = new Pool<>(Region::new);
+    private static final List<Region> regions = new ArrayList<>();
 
+    private static final List<Cursor> cursors = new ArrayList<>();
     private static final List<Runnable> afterCallbacks = new ArrayList<>();
 
     private static final BlockPos.Mutable blockPos = new BlockPos.Mutable();
@@ -33,6 +46,9 @@ public class BlockIterator {
 
     private static boolean disableCurrent;
 
+    private static long lastTickTime;
+    private static int lastTickBlocks;
+
     @PreInit
     public static void init() {
         MeteorClient.EVENT_BUS.subscribe(BlockIterator.class);
@@ -42,56 +58,145 @@ public class BlockIterator {
     private static void onTick(TickEvent.Pre event) {
         if (!Utils.canUpdate()) return;
 
+        long start = System.nanoTime();
+        int blocks = 0;
+
         int px = mc.player.getBlockX();
         int py = mc.player.getBlockY();
         int pz = mc.player.getBlockZ();
 
-        for (int x = px - hRadius; x <= px + hRadius; x++) {
-            for (int z = pz - hRadius; z <= pz + hRadius; z++) {
-                for (int y = Math.max(mc.world.getBottomY(), py - vRadius); y <= py + vRadius; y++) {
-                    if (y > mc.world.getTopY()) break;
+        // The top limit is inclusive, callbacks get void air for the layer just above the world
+        int topY = mc.world.getTopY();
+        int minY = Math.max(mc.world.getBottomY(), py - vRadius);
+        int maxY = Math.min(topY, py + vRadius);
+
+        if (!regions.isEmpty()) {
+            // Reading from the world window is cheaper when one of the modules keeps it around anyway
+            boolean windowed = WorldWindow.covers(hRadius, vRadius);
+
+            for (int cx = (px - hRadius) >> 4; cx <= (px + hRadius) >> 4; cx++) {
+                for (int cz = (pz - hRadius) >> 4; cz <= (pz + hRadius) >> 4; cz++) {
+                    WorldChunk chunk = mc.world.getChunk(cx, cz);
+                    ChunkSection[] sections = chunk.getSectionArray();
+                    boolean loaded = !(chunk instanceof EmptyChunk);
+
+                    int x1 = Math.max(px - hRadius, cx << 4);
+                    int x2 = Math.min(px + hRadius, (cx << 4) + 15);
+                    int z1 = Math.max(pz - hRadius, cz << 4);
+                    int z2 = Math.min(pz + hRadius, (cz << 4) + 15);
 
-                    blockPos.set(x, y, z);
-                    BlockState blockState = mc.world.getBlockState(blockPos);
+                    for (int x = x1; x <= x2; x++) {
+                        for (int z = z1; z <= z2; z++) {
+                            int dy = updateColumn(x - px, z - pz);
+                            if (dy < 0) continue;
 
-                    int dx = Math.abs(x - px);
-                    int dy = Math.abs(y - py);
-                    int dz = Math.abs(z - pz);
+                            for (int y = Math.max(minY, py - dy); y <= Math.min(maxY, py + dy); y++) {
+                                BlockState blockState;
 
-                    for (Iterator<Callback> it = callbacks.iterator(); it.hasNext(); ) {
-                        Callback callback = it.next();
+                                // Same states World.getBlockState returns above the world, for unloaded chunks and empty sections
+                                if (windowed) blockState = WorldWindow.getBlockState(x, y, z);
+                                else if (!loaded || y >= topY) blockState = Blocks.VOID_AIR.getDefaultState();
+                                else {
+                                    ChunkSection section = sections[chunk.getSectionIndex(y)];
+                                    blockState = section.isEmpty() ? Blocks.AIR.getDefaultState() : section.getBlockState(x & 15, y & 15, z & 15);
+                                }
 
-                        if (dx <= callback.hRadius && dy <= callback.vRadius && dz <= callback.hRadius) {
-                            disableCurrent = false;
-                            callback.function.accept(blockPos, blockState);
-                            if (disableCurrent) it.remove();
+                                blockPos.set(x, y, z);
+                                blocks++;
+
+                                for (int i = 0; i < regions.size(); i++) {
+                                    Region region = regions.get(i);
+                                    if (Math.abs(y - py) <= region.columnRadius) region.accept(blockPos, blockState);
+                                }
+                            }
                         }
                     }
                 }
             }
         }
 
+        for (Cursor cursor : cursors) blocks += cursor.advance();
+        cursors.clear();
+
         hRadius = 0;
         vRadius = 0;
 
-        for (Callback callback : callbacks) callbackPool.free(callback);
-        callbacks.clear();
+        for (Region region : regions) {
+            for (Callback callback : region.callbacks) callbackPool.free(callback);
+            region.callbacks.clear();
+
+            regionPool.free(region);
+        }
+        regions.clear();
 
         for (Runnable callback : afterCallbacks) callback.run();
         afterCallbacks.clear();
+
+        lastTickTime = System.nanoTime() - start;
+        lastTickBlocks = blocks;
+    }
+
+    /** Works out how far each region reaches vertically in this column, returns the furthest or -1 if none reach it. */
+    private static int updateColumn(int dx, int dz) {
+        int dy = -1;
+
+        for (int i = 0; i < regions.size(); i++) {
+            Region region = regions.get(i);
+
+            region.columnRadius = region.getVerticalRadius(dx, dz);
+            dy = Math.max(dy, region.columnRadius);
+        }
+
+        return dy;
     }
 
     public static void register(int horizontalRadius, int verticalRadius, BiConsumer<BlockPos, BlockState> function) {
+        register(Shape.Cube, horizontalRadius, verticalRadius, function);
+    }
+
+    public static void register(Shape shape, int horizontalRadius, int verticalRadius, BiConsumer<BlockPos, BlockState> function) {
         hRadius = Math.max(hRadius, horizontalRadius);
         vRadius = Math.max(vRadius, verticalRadius);
 
         Callback callback = callbackPool.get();
 
         callback.function = function;
-        callback.hRadius = horizontalRadius;
-        callback.vRadius = verticalRadius;
+        callback.disabled = false;
 
-        callbacks.add(callback);
+        getRegion(shape, horizontalRadius, verticalRadius).callbacks.add(callback);
+    }
+
+    /**
+     * Registers an amortized callback. Every tick the callback receives at most {@code budget} blocks of the region
+     * around where the player stood when the current epoch started, continuing from the cursor. Has to be called every
+     * tick for the scan to keep progressing.
+     */
+    public static void register(Shape shape, int horizontalRadius, int verticalRadius, int budget, Cursor cursor, BiConsumer<BlockPos, BlockState> function) {
+        // A different region can't continue the old epoch
+        if (cursor.started && (cursor.shape != shape || cursor.hRadius != horizontalRadius || cursor.vRadius != verticalRadius)) cursor.reset();
+
+        cursor.shape = shape;
+        cursor.hRadius = horizontalRadius;
+        cursor.vRadius = verticalRadius;
+        cursor.budget = Math.max(budget, 1);
+        cursor.function = function;
+
+        if (!cursors.contains(cursor)) cursors.add(cursor);
+    }
+
+    private static Region getRegion(Shape shape, int horizontalRadius, int verticalRadius) {
+        for (Region region : regions) {
+            if (region.shape == shape && region.hRadius == horizontalRadius && region.vRadius == verticalRadius) return region;
+        }
+
+        Region region = regionPool.get();
+
+        region.shape = shape;
+        region.hRadius = horizontalRadius;
+        region.vRadius = verticalRadius;
+
+        regions.add(region);
+        return region;
     }
 
     public static void disableCurrent() {
@@ -102,8 +207,162 @@ public class BlockIterator {
         afterCallbacks.add(callback);
     }
 
+    // Stats
+
+    /** Nanoseconds the last tick's iteration took, including the callbacks. */
+    public static long getLastTickTime() {
+        return lastTickTime;
+    }
+
+    public static int getLastTickBlocks() {
+        return lastTickBlocks;
+    }
+
+    /** How far a shape reaches up and down at the horizontal offset, -1 if it doesn't reach the column. */
+    private static int getVerticalRadius(Shape shape, int hRadius, int vRadius, int dx, int dz) {
+        return switch (shape) {
+            case Cube -> Math.abs(dx) <= hRadius && Math.abs(dz) <= hRadius ? vRadius : -1;
+            case Column -> dx * dx + dz * dz <= hRadius * hRadius ? vRadius : -1;
+            case Sphere -> {
+                int distanceSq = dx * dx + dz * dz;
+                if (distanceSq > hRadius * hRadius) yield -1;
+                if (hRadius == 0) yield vRadius;
+
+                // Integer offsets within the ellipse, the same as x² + y² + z² <= r² for a sphere
+                yield (int) Math.floor(vRadius * Math.sqrt(1 - (double) distanceSq / (hRadius * hRadius)) + 1e-9);
+            }
+        };
+    }
+
+    public enum Shape {
+        /** Every block within the radii on each axis. */
+        Cube,
+        /** Ellipsoid with the horizontal radius along x and z and the vertical one along y. */
+        Sphere,
+        /** Upright cylinder with the horizontal radius, reaching the vertical radius up and down. */
+        Column
+    }
+
+    private static class Region {
+        public final List<Callback> callbacks = new ArrayList<>();
+
+        public Shape shape;
+        public int hRadius, vRadius;
+
+        // Vertical radius in the column being iterated, -1 if the region doesn't reach it
+        public int columnRadius;
+
+        public int getVerticalRadius(int dx, int dz) {
+            return BlockIterator.getVerticalRadius(shape, hRadius, vRadius, dx, dz);
+        }
+
+        public void accept(BlockPos blockPos, BlockState blockState) {
+            for (int i = 0; i < callbacks.size(); i++) {
+                Callback callback = callbacks.get(i);
+                if (callback.disabled) continue;
+
+                disableCurrent = false;
+                callback.function.accept(blockPos, blockState);
+                if (disableCurrent) callback.disabled = true;
+            }
+        }
+    }
+
     private static class Callback {
         public BiConsumer<BlockPos, BlockState> function;
-        public int hRadius, vRadius;
+        public boolean disabled;
+    }
+
+    /**
+     * Position of an amortized scan, kept by the module between ticks. An epoch is one pass over the whole region, the
+     * next one starts around the player's position at that time.
+     */
+    public static class Cursor {
+        private final Runnable onEpochComplete;
+
+        private Shape shape;
+        private int hRadius, vRadius, budget;
+        private BiConsumer<BlockPos, BlockState> function;
+
+        private boolean started;
+        private int originX, originY, originZ;
+        private int dx, dz, y;
+        private int epoch;
+
+        /** @param onEpochComplete called after the last block of each epoch was delivered, can be {@code null} */
+        public Cursor(Runnable onEpochComplete) {
+            this.onEpochComplete = onEpochComplete;
+        }
+
+        /** Drops the current epoch, the next tick starts a new one. */
+        public void reset() {
+            started = false;
+        }
+
+        /** Number of completed epochs. */
+        public int getEpoch() {
+            return epoch;
+        }
+
+        /** Delivers up to the budget of blocks and returns how many were delivered. */
+        private int advance() {
+            if (!started) {
+                originX = mc.player.getBlockX();
+                originY = mc.player.getBlockY();
+                originZ = mc.player.getBlockZ();
+
+                dx = dz = -hRadius;
+                y = Integer.MIN_VALUE;
+                started = true;
+            }
+
+            int bottomY = mc.world.getBottomY();
+            int topY = mc.world.getTopY();
+            int blocks = 0;
+
+            while (blocks < budget && dx <= hRadius) {
+                int columnRadius = getVerticalRadius(shape, hRadius, vRadius, dx, dz);
+                int maxY = Math.min(topY, originY + columnRadius);
+
+                if (y == Integer.MIN_VALUE) y = Math.max(bottomY, originY - columnRadius);
+
+                boolean disabled = false;
+
+                for (; columnRadius >= 0 && y <= maxY && blocks < budget; y++) {
+                    blockPos.set(originX + dx, y, originZ + dz);
+                    blocks++;
+
+                    disableCurrent = false;
+                    function.accept(blockPos, WorldWindow.getBlockState(blockPos.getX(), y, blockPos.getZ()));
+
+                    // Disabling an amortized callback only stops it for this tick
+                    if (disableCurrent) {
+                        disabled = true;
+                        y++;
+                        break;
+                    }
+                }
+
+                if (columnRadius < 0 || y > maxY) {
+                    y = Integer.MIN_VALUE;
+
+                    if (++dz > hRadius) {
+                        dz = -hRadius;
+                        dx++;
+                    }
+                }
+
+                if (disabled) break;
+            }
+
+            if (dx > hRadius) {
+                started = false;
+                epoch++;
+
+                if (onEpochComplete != null) onEpochComplete.run();
+            }
+
+            return blocks;
+        }
     }
 }
@@ -30,6 +30,7 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.util.shape.VoxelShapes;
+import net.minecraft.world.BlockView;
 import net.minecraft.world.LightType;
 import net.minecraft.world.World;
 
@@ -285,8 +286,12 @@ public class BlockUtils {
     private static final ThreadLocal<BlockPos.Mutable> EXPOSED_POS = ThreadLocal.withInitial(BlockPos.Mutable::new);
 
     public static boolean isExposed(BlockPos blockPos) {
+        return isExposed(mc.world, blockPos);
+    }
+
+    public static boolean isExposed(BlockView view, BlockPos blockPos) {
         for (Direction direction : Direction.values()) {
-            if (!mc.world.getBlockState(EXPOSED_POS.get().set(blockPos, direction)).isOpaque()) return true;
+            if (!view.getBlockState(EXPOSED_POS.get().set(blockPos, direction)).isOpaque()) return true;
         }
 
         return false;
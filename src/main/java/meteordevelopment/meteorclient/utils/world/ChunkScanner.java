@@ -0,0 +1,335 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.utils.world;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.events.game.GameLeftEvent;
+import meteordevelopment.meteorclient.events.world.ChunkDataEvent;
+import meteordevelopment.meteorclient.events.world.TickEvent;
+import meteordevelopment.meteorclient.utils.PreInit;
+import meteordevelopment.meteorclient.utils.Utils;
+import meteordevelopment.orbit.EventHandler;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.util.collection.PaletteStorage;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.Palette;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static meteordevelopment.meteorclient.MeteorClient.mc;
+
+/**
+ * Scans freshly received chunks once and dispatches matching blocks and block entities to every registered {@link Consumer}.
+ * Sections whose palette can't contain anything a consumer asked for are skipped without reading their storage.
+ */
+public class ChunkScanner {
+    private static final int MAX_CACHED_PALETTE_SIZE = 256;
+
+    private static final List<Consumer> consumers = new CopyOnWriteArrayList<>();
+    private static final Long2ObjectMap<Task> pending = new Long2ObjectOpenHashMap<>();
+
+    private static ThreadPoolExecutor executor;
+
+    @PreInit
+    public static void init() {
+        int threads = MathHelper.clamp(Runtime.getRuntime().availableProcessors() / 2, 1, 4);
+        AtomicInteger threadNumber = new AtomicInteger(1);
+
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), (task) -> {
+            Thread thread = new Thread(task);
+            thread.setDaemon(true);
+            thread.setName("Meteor-Chunk-Scanner-" + threadNumber.getAndIncrement());
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        MeteorClient.EVENT_BUS.subscribe(ChunkScanner.class);
+    }
+
+    /** Starts delivering every newly received chunk to the consumer. */
+    public static void register(Consumer consumer) {
+        if (!consumers.contains(consumer)) consumers.add(consumer);
+    }
+
+    public static void unregister(Consumer consumer) {
+        consumers.remove(consumer);
+    }
+
+    /** Queues a scan of a single chunk for the consumer, sharing the pass with any scan of that chunk which hasn't started yet. */
+    public static void scan(WorldChunk chunk, Consumer consumer) {
+        long key = chunk.getPos().toLong();
+
+        synchronized (pending) {
+            Task task = pending.get(key);
+
+            if (task != null && task.chunk == chunk && !task.started) {
+                if (!task.consumers.contains(consumer)) task.consumers.add(consumer);
+                return;
+            }
+
+            submit(chunk, List.of(consumer));
+        }
+    }
+
+    /** Queues a scan of all loaded chunks for the consumer, used when a module is activated or reconfigured. */
+    public static void scanLoaded(Consumer consumer) {
+        for (Chunk chunk : Utils.chunks()) {
+            if (chunk instanceof WorldChunk worldChunk) scan(worldChunk, consumer);
+        }
+    }
+
+    @EventHandler
+    private static void onChunkData(ChunkDataEvent event) {
+        if (!consumers.isEmpty()) {
+            synchronized (pending) {
+                submit(event.chunk, consumers);
+            }
+        }
+
+        ChunkDataEvent.returnChunkDataEvent(event);
+    }
+
+    @EventHandler
+    private static void onTick(TickEvent.Post event) {
+        if (!Utils.canUpdate()) return;
+
+        // Drop queued scans of chunks which have been unloaded or replaced in the meantime
+        synchronized (pending) {
+            pending.values().removeIf(task -> {
+                Chunk loaded = mc.world.getChunk(task.chunk.getPos().x, task.chunk.getPos().z, ChunkStatus.FULL, false);
+                if (loaded == task.chunk) return false;
+
+                cancel(task);
+                return true;
+            });
+        }
+    }
+
+    @EventHandler
+    private static void onGameLeft(GameLeftEvent event) {
+        synchronized (pending) {
+            for (Task task : pending.values()) cancel(task);
+            pending.clear();
+        }
+    }
+
+    private static void submit(WorldChunk chunk, List<Consumer> consumers) {
+        Task task = new Task(chunk, consumers);
+
+        // New data for a chunk makes any queued scan of the old data useless, but its consumers still want the chunk
+        Task previous = pending.put(task.key, task);
+        if (previous != null) {
+            for (Consumer consumer : previous.consumers) {
+                if (!task.consumers.contains(consumer)) task.consumers.add(consumer);
+            }
+
+            cancel(previous);
+        }
+
+        executor.execute(task);
+    }
+
+    private static void cancel(Task task) {
+        task.cancelled = true;
+        executor.remove(task);
+    }
+
+    private static void scanChunk(WorldChunk chunk, List<Consumer> consumers, List<BlockEntity> blockEntities) {
+        // Consumers which want this chunk, capped at 32 per pass so a single int can hold a palette entry's match mask
+        int count = Math.min(consumers.size(), Integer.SIZE);
+
+        Scan[] scans = new Scan[count];
+        Predicate<BlockState>[] blockFilters = new Predicate[count];
+        Predicate<BlockEntity>[] blockEntityFilters = new Predicate[count];
+
+        boolean anyBlockFilter = false;
+        boolean anyBlockEntityFilter = false;
+
+        for (int i = 0; i < count; i++) {
+            Consumer consumer = consumers.get(i);
+
+            scans[i] = consumer.begin(chunk);
+            if (scans[i] == null) continue;
+
+            blockFilters[i] = consumer.blockFilter();
+            blockEntityFilters[i] = consumer.blockEntityFilter();
+
+            if (blockFilters[i] != null) anyBlockFilter = true;
+            if (blockEntityFilters[i] != null) anyBlockEntityFilter = true;
+        }
+
+        // Blocks
+        if (anyBlockFilter) {
+            ChunkSection[] sections = chunk.getSectionArray();
+
+            for (int i = 0; i < sections.length; i++) {
+                ChunkSection section = sections[i];
+                if (section != null) scanSection(chunk, section, chunk.sectionIndexToCoord(i), scans, blockFilters);
+            }
+        }
+
+        // Block entities
+        if (anyBlockEntityFilter) {
+            for (BlockEntity blockEntity : blockEntities) {
+                for (int i = 0; i < count; i++) {
+                    if (scans[i] != null && blockEntityFilters[i] != null && blockEntityFilters[i].test(blockEntity)) scans[i].blockEntity(blockEntity);
+                }
+            }
+        }
+
+        for (Scan scan : scans) {
+            if (scan != null) scan.end();
+        }
+
+        if (consumers.size() > count) scanChunk(chunk, consumers.subList(count, consumers.size()), blockEntities);
+    }
+
+    private static void scanSection(WorldChunk chunk, ChunkSection section, int sectionY, Scan[] scans, Predicate<BlockState>[] blockFilters) {
+        // Read the data snapshot once so a concurrent resize of the container can't swap the palette under us
+        PalettedContainer.Data<BlockState> data = section.getBlockStateContainer().data;
+        Palette<BlockState> palette = data.palette();
+        PaletteStorage storage = data.storage();
+
+        // Resolve small palettes to a bitmask of interested consumers per entry, skipping the section if nobody is interested
+        int[] masks = null;
+        int paletteSize = palette.getSize();
+
+        if (paletteSize <= MAX_CACHED_PALETTE_SIZE) {
+            masks = new int[paletteSize];
+            int any = 0;
+
+            for (int id = 0; id < paletteSize; id++) {
+                masks[id] = getMask(palette.get(id), scans, blockFilters);
+                any |= masks[id];
+            }
+
+            if (any == 0) return;
+        }
+        else if (!hasAny(section, scans, blockFilters)) return;
+
+        int startX = chunk.getPos().getStartX();
+        int startY = sectionY << 4;
+        int startZ = chunk.getPos().getStartZ();
+
+        for (int index = 0; index < storage.getSize(); index++) {
+            int id = storage.get(index);
+            BlockState state = null;
+
+            int mask;
+            if (masks != null) mask = masks[id];
+            else {
+                state = palette.get(id);
+                mask = getMask(state, scans, blockFilters);
+            }
+
+            if (mask == 0) continue;
+            if (state == null) state = palette.get(id);
+
+            // Storage index is (y << 8) | (z << 4) | x
+            int x = startX + (index & 15);
+            int y = startY + (index >> 8);
+            int z = startZ + ((index >> 4) & 15);
+
+            for (int i = 0; mask != 0; i++, mask >>>= 1) {
+                if ((mask & 1) != 0) scans[i].block(x, y, z, state);
+            }
+        }
+    }
+
+    private static int getMask(BlockState state, Scan[] scans, Predicate<BlockState>[] blockFilters) {
+        int mask = 0;
+
+        for (int i = 0; i < scans.length; i++) {
+            if (scans[i] != null && blockFilters[i] != null && blockFilters[i].test(state)) mask |= 1 << i;
+        }
+
+        return mask;
+    }
+
+    private static boolean hasAny(ChunkSection section, Scan[] scans, Predicate<BlockState>[] blockFilters) {
+        for (int i = 0; i < scans.length; i++) {
+            if (scans[i] != null && blockFilters[i] != null && section.hasAny(blockFilters[i])) return true;
+        }
+
+        return false;
+    }
+
+    /** Something interested in the contents of chunks. All methods except registration are called on a scanner thread. */
+    public interface Consumer {
+        /** Block states to deliver, evaluated once per palette entry. {@code null} if this consumer doesn't care about blocks. */
+        default Predicate<BlockState> blockFilter() {
+            return null;
+        }
+
+        /** Block entities to deliver. {@code null} if this consumer doesn't care about block entities. */
+        default Predicate<BlockEntity> blockEntityFilter() {
+            return null;
+        }
+
+        /** Called before the chunk is scanned, returns {@code null} to skip the chunk. */
+        Scan begin(WorldChunk chunk);
+    }
+
+    /** Receives the results of scanning a single chunk, in world coordinates. */
+    public interface Scan {
+        default void block(int x, int y, int z, BlockState state) {}
+
+        default void blockEntity(BlockEntity blockEntity) {}
+
+        void end();
+    }
+
+    private static class Task implements Runnable {
+        private final WorldChunk chunk;
+        private final long key;
+
+        private final List<Consumer> consumers;
+        private final List<BlockEntity> blockEntities;
+
+        private boolean started;
+        private volatile boolean cancelled;
+
+        public Task(WorldChunk chunk, List<Consumer> consumers) {
+            this.chunk = chunk;
+            this.key = chunk.getPos().toLong();
+            this.consumers = new ArrayList<>(consumers);
+
+            // The block entity map isn't safe to read off the main thread
+            this.blockEntities = new ArrayList<>(chunk.getBlockEntities().values());
+        }
+
+        @Override
+        public void run() {
+            List<Consumer> consumers;
+
+            synchronized (pending) {
+                if (cancelled) return;
+
+                started = true;
+                pending.remove(key, this);
+
+                consumers = List.copyOf(this.consumers);
+            }
+
+            scanChunk(chunk, consumers, blockEntities);
+        }
+    }
+}
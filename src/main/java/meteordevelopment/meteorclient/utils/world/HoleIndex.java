@@ -0,0 +1,350 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.utils.world;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.events.game.GameLeftEvent;
+import meteordevelopment.meteorclient.events.world.BlockUpdateEvent;
+import meteordevelopment.meteorclient.events.world.ChunkDataEvent;
+import meteordevelopment.meteorclient.events.world.ChunkUnloadEvent;
+import meteordevelopment.meteorclient.events.world.TickEvent;
+import meteordevelopment.meteorclient.mixin.AbstractBlockAccessor;
+import meteordevelopment.meteorclient.utils.PreInit;
+import meteordevelopment.meteorclient.utils.Utils;
+import meteordevelopment.orbit.EventHandler;
+import meteordevelopment.orbit.EventPriority;
+import net.minecraft.block.Block;
+import net.minecraft.block.Blocks;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+
+import java.util.Collection;
+
+import static meteordevelopment.meteorclient.MeteorClient.mc;
+
+/**
+ * Bedrock, obsidian, mixed and double holes around the player. Holes are only looked for again where blocks changed,
+ * chunks were loaded or unloaded or the player moved into new area, instead of every module searching its whole radius each tick.
+ * <p>
+ * Like the {@link WorldWindow} the index is opt-in: it's kept while something calls {@link #request(int, int)} every
+ * tick. Consumers filter the holes by height, webs and whatever else they care about.
+ */
+public class HoleIndex {
+    /** Highest number of passable blocks above a hole that is counted, {@link Hole#height()} never exceeds it. */
+    public static final int MAX_HEIGHT = 6;
+
+    // Ticks without a request before the index is released
+    private static final int RELEASE_TICKS = 20;
+
+    private static final Direction[] SIDES = { Direction.NORTH, Direction.SOUTH, Direction.WEST, Direction.EAST };
+
+    private static final Long2ObjectMap<Hole> holes = new Long2ObjectOpenHashMap<>();
+
+    private static boolean active, valid;
+    private static int hRadius, vRadius;
+    private static int centerX, centerY, centerZ;
+
+    private static ClientWorld world;
+    private static int requestedH, requestedV;
+    private static int idleTicks;
+
+    private static long checkedBlocks;
+
+    @PreInit
+    public static void init() {
+        MeteorClient.EVENT_BUS.subscribe(HoleIndex.class);
+    }
+
+    /** Makes sure the index covers the given radii around the player. Has to be called every tick to keep the index. */
+    public static void request(int horizontalRadius, int verticalRadius) {
+        if (!Utils.canUpdate()) return;
+
+        requestedH = Math.max(requestedH, horizontalRadius);
+        requestedV = Math.max(requestedV, verticalRadius);
+        idleTicks = 0;
+
+        if (!active || horizontalRadius > hRadius || verticalRadius > vRadius) {
+            resize(Math.max(horizontalRadius, hRadius), Math.max(verticalRadius, vRadius));
+        }
+
+        requestWindow();
+        update();
+    }
+
+    // Runs right after the world window moved to the player
+    @EventHandler(priority = EventPriority.HIGHEST)
+    private static void onTick(TickEvent.Pre event) {
+        if (!active) return;
+
+        if (!Utils.canUpdate() || idleTicks++ >= RELEASE_TICKS) {
+            release();
+            return;
+        }
+
+        if (idleTicks == 1 && (requestedH < hRadius || requestedV < vRadius) && Math.max(hRadius - requestedH, vRadius - requestedV) > 4) {
+            resize(requestedH, requestedV);
+        }
+
+        requestedH = 0;
+        requestedV = 0;
+
+        requestWindow();
+        update();
+    }
+
+    // Lower priority than the world window so it already has the new state
+    @EventHandler(priority = EventPriority.LOW)
+    private static void onBlockUpdate(BlockUpdateEvent event) {
+        if (!active || !valid) return;
+
+        // Holes next to the block, holes it's the floor of and holes it's in the air column of
+        BlockPos pos = event.pos;
+        check(pos.getX() - 2, pos.getY() - MAX_HEIGHT + 1, pos.getZ() - 2, pos.getX() + 2, pos.getY() + 1, pos.getZ() + 2);
+    }
+
+    @EventHandler(priority = EventPriority.LOW)
+    private static void onChunkData(ChunkDataEvent event) {
+        checkChunk(event.chunk.getPos().x, event.chunk.getPos().z);
+    }
+
+    @EventHandler(priority = EventPriority.LOW)
+    private static void onChunkUnload(ChunkUnloadEvent event) {
+        checkChunk(event.x, event.z);
+    }
+
+    @EventHandler
+    private static void onGameLeft(GameLeftEvent event) {
+        release();
+    }
+
+    // Queries
+
+    /** The hole at the position, {@code null} if there's none or the position isn't covered by the index. */
+    public static Hole get(int x, int y, int z) {
+        return holes.get(BlockPos.asLong(x, y, z));
+    }
+
+    public static Hole get(BlockPos pos) {
+        return holes.get(pos.asLong());
+    }
+
+    /** Every hole in the index. A double hole is in it twice, once for each of its blocks. */
+    public static Collection<Hole> getHoles() {
+        return holes.values();
+    }
+
+    /** Blocks checked for holes since the game started. */
+    public static long getCheckedBlocks() {
+        return checkedBlocks;
+    }
+
+    // Index
+
+    private static void requestWindow() {
+        // Checks read two blocks to the sides of a hole, one below and its air column above
+        WorldWindow.request(hRadius + 2, vRadius + MAX_HEIGHT);
+    }
+
+    private static void resize(int horizontalRadius, int verticalRadius) {
+        hRadius = horizontalRadius;
+        vRadius = verticalRadius;
+
+        active = true;
+        valid = false;
+    }
+
+    private static void release() {
+        holes.clear();
+
+        active = false;
+        valid = false;
+        world = null;
+
+        hRadius = vRadius = 0;
+        requestedH = requestedV = 0;
+    }
+
+    /** Moves the index to the player, checking only the blocks which weren't covered before. */
+    private static void update() {
+        int x = mc.player.getBlockX();
+        int y = mc.player.getBlockY();
+        int z = mc.player.getBlockZ();
+
+        if (world != mc.world) {
+            world = mc.world;
+            valid = false;
+        }
+
+        if (!valid) {
+            holes.clear();
+
+            centerX = x;
+            centerY = y;
+            centerZ = z;
+            valid = true;
+
+            check(x - hRadius, y - vRadius, z - hRadius, x + hRadius, y + vRadius, z + hRadius);
+            return;
+        }
+
+        int dx = x - centerX;
+        int dy = y - centerY;
+        int dz = z - centerZ;
+        if (dx == 0 && dy == 0 && dz == 0) return;
+
+        centerX = x;
+        centerY = y;
+        centerZ = z;
+
+        holes.values().removeIf(hole -> !contains(hole.pos().getX(), hole.pos().getY(), hole.pos().getZ()));
+
+        // Slabs which came into range, corners are checked twice at most
+        if (dx > 0) check(x + hRadius - dx + 1, y - vRadius, z - hRadius, x + hRadius, y + vRadius, z + hRadius);
+        else if (dx < 0) check(x - hRadius, y - vRadius, z - hRadius, x - hRadius - dx - 1, y + vRadius, z + hRadius);
+
+        if (dy > 0) check(x - hRadius, y + vRadius - dy + 1, z - hRadius, x + hRadius, y + vRadius, z + hRadius);
+        else if (dy < 0) check(x - hRadius, y - vRadius, z - hRadius, x + hRadius, y - vRadius - dy - 1, z + hRadius);
+
+        if (dz > 0) check(x - hRadius, y - vRadius, z + hRadius - dz + 1, x + hRadius, y + vRadius, z + hRadius);
+        else if (dz < 0) check(x - hRadius, y - vRadius, z - hRadius, x + hRadius, y + vRadius, z - hRadius - dz - 1);
+    }
+
+    private static boolean contains(int x, int y, int z) {
+        return Math.abs(x - centerX) <= hRadius && Math.abs(y - centerY) <= vRadius && Math.abs(z - centerZ) <= hRadius;
+    }
+
+    private static void checkChunk(int chunkX, int chunkZ) {
+        if (!active || !valid) return;
+
+        int x = chunkX << 4;
+        int z = chunkZ << 4;
+
+        check(x - 2, centerY - vRadius, z - 2, x + 17, centerY + vRadius, z + 17);
+    }
+
+    /** Checks every position of the box inside of the index for a hole, the box is clamped to the index. */
+    private static void check(int x1, int y1, int z1, int x2, int y2, int z2) {
+        x1 = Math.max(x1, centerX - hRadius);
+        y1 = Math.max(y1, centerY - vRadius);
+        z1 = Math.max(z1, centerZ - hRadius);
+        x2 = Math.min(x2, centerX + hRadius);
+        y2 = Math.min(y2, centerY + vRadius);
+        z2 = Math.min(z2, centerZ + hRadius);
+
+        for (int x = x1; x <= x2; x++) {
+            for (int z = z1; z <= z2; z++) {
+                for (int y = y1; y <= y2; y++) {
+                    long key = BlockPos.asLong(x, y, z);
+                    Hole hole = getHole(x, y, z);
+
+                    if (hole == null) holes.remove(key);
+                    else {
+                        Hole previous = holes.get(key);
+                        if (!hole.equals(previous)) holes.put(key, hole);
+                    }
+
+                    checkedBlocks++;
+                }
+            }
+        }
+    }
+
+    private static Hole getHole(int x, int y, int z) {
+        // Most blocks are rejected by these two reads
+        if (!isHoleBlock(WorldWindow.getBlock(x, y - 1, z))) return null;
+        if (isCollidable(WorldWindow.getBlock(x, y, z))) return null;
+
+        int bedrock = 0, obsidian = 0;
+        Direction partner = null;
+
+        if (WorldWindow.getBlock(x, y - 1, z) == Blocks.BEDROCK) bedrock++;
+        else obsidian++;
+
+        for (Direction side : SIDES) {
+            int ox = x + side.getOffsetX();
+            int oz = z + side.getOffsetZ();
+            Block block = WorldWindow.getBlock(ox, y, oz);
+
+            if (block == Blocks.BEDROCK) bedrock++;
+            else if (block == Blocks.OBSIDIAN) obsidian++;
+            else if (partner == null && !isCollidable(block)) {
+                // Double hole, the other block has to be closed off everywhere else
+                for (Direction dir : Direction.values()) {
+                    if (dir == side.getOpposite() || dir == Direction.UP) continue;
+
+                    Block block1 = WorldWindow.getBlock(ox + dir.getOffsetX(), y + dir.getOffsetY(), oz + dir.getOffsetZ());
+
+                    if (block1 == Blocks.BEDROCK) bedrock++;
+                    else if (block1 == Blocks.OBSIDIAN) obsidian++;
+                    else return null;
+                }
+
+                partner = side;
+            }
+            else return null;
+        }
+
+        Type type = obsidian == 0 ? Type.Bedrock : (bedrock == 0 ? Type.Obsidian : Type.Mixed);
+        int height = getHeight(x, y, z);
+        boolean web = WorldWindow.getBlock(x, y, z) == Blocks.COBWEB;
+
+        if (partner != null) {
+            int px = x + partner.getOffsetX();
+            int pz = z + partner.getOffsetZ();
+
+            height = Math.min(height, getHeight(px, y, pz));
+            web |= WorldWindow.getBlock(px, y, pz) == Blocks.COBWEB;
+        }
+
+        return new Hole(new BlockPos(x, y, z), type, partner, height, web);
+    }
+
+    private static int getHeight(int x, int y, int z) {
+        int height = 0;
+        while (height < MAX_HEIGHT && !isCollidable(WorldWindow.getBlock(x, y + height, z))) height++;
+
+        return height;
+    }
+
+    private static boolean isHoleBlock(Block block) {
+        return block == Blocks.BEDROCK || block == Blocks.OBSIDIAN;
+    }
+
+    private static boolean isCollidable(Block block) {
+        return ((AbstractBlockAccessor) block).isCollidable();
+    }
+
+    /**
+     * @param partner direction of the other block of a double hole, {@code null} for single holes
+     * @param height passable blocks above the floor, for double holes the lower of both blocks, capped at {@link #MAX_HEIGHT}
+     * @param web whether the hole, or either block of a double hole, has a cobweb in it
+     */
+    public record Hole(BlockPos pos, Type type, Direction partner, int height, boolean web) {
+        public boolean isDouble() {
+            return partner != null;
+        }
+
+        /** Whether the hole or the other block of a double hole is at the position. */
+        public boolean covers(int x, int y, int z) {
+            if (pos.getX() == x && pos.getY() == y && pos.getZ() == z) return true;
+            return partner != null && pos.getX() + partner.getOffsetX() == x && pos.getY() == y && pos.getZ() + partner.getOffsetZ() == z;
+        }
+
+        /** Dir bits of the side shared with the other block, used to skip it when rendering. */
+        public byte exclude() {
+            return partner == null ? 0 : Dir.get(partner);
+        }
+    }
+
+    public enum Type {
+        Bedrock,
+        Obsidian,
+        Mixed
+    }
+}
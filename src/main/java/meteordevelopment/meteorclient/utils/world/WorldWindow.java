@@ -0,0 +1,278 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.utils.world;
+
+import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.events.game.GameLeftEvent;
+import meteordevelopment.meteorclient.events.world.BlockUpdateEvent;
+import meteordevelopment.meteorclient.events.world.ChunkDataEvent;
+import meteordevelopment.meteorclient.events.world.ChunkUnloadEvent;
+import meteordevelopment.meteorclient.events.world.TickEvent;
+import meteordevelopment.meteorclient.utils.PreInit;
+import meteordevelopment.meteorclient.utils.Utils;
+import meteordevelopment.orbit.EventHandler;
+import meteordevelopment.orbit.EventPriority;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.EmptyChunk;
+import net.minecraft.world.chunk.WorldChunk;
+
+import static meteordevelopment.meteorclient.MeteorClient.mc;
+
+/**
+ * Block state ids of the area around the player, kept up to date from block updates and chunk loads instead of being
+ * read from the world again every tick. The window is stored as a ring buffer, so when the player moves only the slabs
+ * which came into range are read.
+ * <p>
+ * The window is opt-in: it only exists while something calls {@link #request(int, int)} every tick. Reads outside of it
+ * fall back to the world, so queries are always correct.
+ */
+public class WorldWindow {
+    // Ticks without a request before the window is released
+    private static final int RELEASE_TICKS = 20;
+
+    private static final int AIR = Block.getRawIdFromState(Blocks.AIR.getDefaultState());
+    private static final int VOID_AIR = Block.getRawIdFromState(Blocks.VOID_AIR.getDefaultState());
+
+    private static int[] ids;
+    private static int sizeXZ, sizeY, maskXZ, maskY, shiftY, shiftZ;
+
+    // Radii covered by the window and the block it's centered on
+    private static int hRadius, vRadius;
+    private static int centerX, centerY, centerZ;
+    private static boolean valid;
+
+    private static ClientWorld world;
+    private static int requestedH, requestedV;
+    private static int idleTicks;
+
+    private static long filledBlocks;
+
+    private static final BlockPos.Mutable mutable = new BlockPos.Mutable();
+
+    @PreInit
+    public static void init() {
+        MeteorClient.EVENT_BUS.subscribe(WorldWindow.class);
+    }
+
+    /**
+     * Makes sure the window covers the given radii around the player for this and the next tick. Has to be called every
+     * tick by anything that wants the window to stay around.
+     */
+    public static void request(int horizontalRadius, int verticalRadius) {
+        if (!Utils.canUpdate()) return;
+
+        requestedH = Math.max(requestedH, horizontalRadius);
+        requestedV = Math.max(requestedV, verticalRadius);
+        idleTicks = 0;
+
+        if (ids == null || horizontalRadius > hRadius || verticalRadius > vRadius) {
+            resize(Math.max(horizontalRadius, hRadius), Math.max(verticalRadius, vRadius));
+        }
+
+        update();
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST + 1)
+    private static void onTick(TickEvent.Pre event) {
+        if (ids == null) return;
+
+        if (!Utils.canUpdate() || idleTicks++ >= RELEASE_TICKS) {
+            release();
+            return;
+        }
+
+        // Shrink to what was asked for during the last tick, growing happens right away in request()
+        if (idleTicks == 1 && (requestedH < hRadius || requestedV < vRadius) && Math.max(hRadius - requestedH, vRadius - requestedV) > 4) {
+            resize(requestedH, requestedV);
+        }
+
+        requestedH = 0;
+        requestedV = 0;
+
+        update();
+    }
+
+    @EventHandler
+    private static void onBlockUpdate(BlockUpdateEvent event) {
+        if (ids == null || !valid) return;
+
+        BlockPos pos = event.pos;
+        if (contains(pos.getX(), pos.getY(), pos.getZ())) ids[index(pos.getX(), pos.getY(), pos.getZ())] = Block.getRawIdFromState(event.newState);
+    }
+
+    @EventHandler
+    private static void onChunkData(ChunkDataEvent event) {
+        fillChunk(event.chunk.getPos().x, event.chunk.getPos().z);
+    }
+
+    // The chunk is already gone, so its columns are read back as void air
+    @EventHandler
+    private static void onChunkUnload(ChunkUnloadEvent event) {
+        fillChunk(event.x, event.z);
+    }
+
+    @EventHandler
+    private static void onGameLeft(GameLeftEvent event) {
+        release();
+    }
+
+    // Queries
+
+    public static boolean contains(int x, int y, int z) {
+        return valid && Math.abs(x - centerX) <= hRadius && Math.abs(y - centerY) <= vRadius && Math.abs(z - centerZ) <= hRadius;
+    }
+
+    /** Whether the window covers the radii around the player, so a scan of that area can be read from it alone. */
+    public static boolean covers(int horizontalRadius, int verticalRadius) {
+        return valid && hRadius >= horizontalRadius && vRadius >= verticalRadius
+            && centerX == mc.player.getBlockX() && centerY == mc.player.getBlockY() && centerZ == mc.player.getBlockZ();
+    }
+
+    public static BlockState getBlockState(int x, int y, int z) {
+        if (!contains(x, y, z)) return mc.world.getBlockState(mutable.set(x, y, z));
+        return Block.getStateFromRawId(ids[index(x, y, z)]);
+    }
+
+    public static BlockState getBlockState(BlockPos pos) {
+        return getBlockState(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public static Block getBlock(int x, int y, int z) {
+        return getBlockState(x, y, z).getBlock();
+    }
+
+    public static Block getBlock(BlockPos pos) {
+        return getBlockState(pos.getX(), pos.getY(), pos.getZ()).getBlock();
+    }
+
+    /** Blocks read from the world to keep the window up to date since the game started. */
+    public static long getFilledBlocks() {
+        return filledBlocks;
+    }
+
+    // Window
+
+    private static int index(int x, int y, int z) {
+        return (x & maskXZ) | ((z & maskXZ) << shiftZ) | ((y & maskY) << shiftY);
+    }
+
+    private static void resize(int horizontalRadius, int verticalRadius) {
+        hRadius = horizontalRadius;
+        vRadius = verticalRadius;
+
+        // Power of two sizes so the ring buffer can wrap coordinates with a mask
+        sizeXZ = MathHelper.smallestEncompassingPowerOfTwo(hRadius * 2 + 1);
+        sizeY = MathHelper.smallestEncompassingPowerOfTwo(vRadius * 2 + 1);
+        maskXZ = sizeXZ - 1;
+        maskY = sizeY - 1;
+        shiftZ = Integer.numberOfTrailingZeros(sizeXZ);
+        shiftY = shiftZ * 2;
+
+        if (ids == null || ids.length != sizeXZ * sizeXZ * sizeY) ids = new int[sizeXZ * sizeXZ * sizeY];
+        valid = false;
+    }
+
+    private static void release() {
+        ids = null;
+        valid = false;
+        world = null;
+
+        hRadius = vRadius = 0;
+        requestedH = requestedV = 0;
+    }
+
+    /** Moves the window to the player, reading only the blocks which weren't inside of it before. */
+    private static void update() {
+        int x = mc.player.getBlockX();
+        int y = mc.player.getBlockY();
+        int z = mc.player.getBlockZ();
+
+        if (world != mc.world) {
+            world = mc.world;
+            valid = false;
+        }
+
+        int dx = x - centerX;
+        int dy = y - centerY;
+        int dz = z - centerZ;
+
+        if (!valid || Math.abs(dx) > hRadius * 2 || Math.abs(dy) > vRadius * 2 || Math.abs(dz) > hRadius * 2) {
+            centerX = x;
+            centerY = y;
+            centerZ = z;
+            valid = true;
+
+            fill(x - hRadius, y - vRadius, z - hRadius, x + hRadius, y + vRadius, z + hRadius);
+            return;
+        }
+
+        if (dx == 0 && dy == 0 && dz == 0) return;
+
+        centerX = x;
+        centerY = y;
+        centerZ = z;
+
+        // Each slab spans the whole new window on the other two axes, so corners are read twice at most
+        if (dx > 0) fill(x + hRadius - dx + 1, y - vRadius, z - hRadius, x + hRadius, y + vRadius, z + hRadius);
+        else if (dx < 0) fill(x - hRadius, y - vRadius, z - hRadius, x - hRadius - dx - 1, y + vRadius, z + hRadius);
+
+        if (dy > 0) fill(x - hRadius, y + vRadius - dy + 1, z - hRadius, x + hRadius, y + vRadius, z + hRadius);
+        else if (dy < 0) fill(x - hRadius, y - vRadius, z - hRadius, x + hRadius, y - vRadius - dy - 1, z + hRadius);
+
+        if (dz > 0) fill(x - hRadius, y - vRadius, z + hRadius - dz + 1, x + hRadius, y + vRadius, z + hRadius);
+        else if (dz < 0) fill(x - hRadius, y - vRadius, z - hRadius, x + hRadius, y + vRadius, z - hRadius - dz - 1);
+    }
+
+    private static void fillChunk(int chunkX, int chunkZ) {
+        if (ids == null || !valid) return;
+
+        int x = chunkX << 4;
+        int z = chunkZ << 4;
+
+        fill(Math.max(x, centerX - hRadius), centerY - vRadius, Math.max(z, centerZ - hRadius), Math.min(x + 15, centerX + hRadius), centerY + vRadius, Math.min(z + 15, centerZ + hRadius));
+    }
+
+    /** Reads the blocks of the box from the chunk sections, the box has to be inside of the window. */
+    private static void fill(int x1, int y1, int z1, int x2, int y2, int z2) {
+        if (x1 > x2 || y1 > y2 || z1 > z2) return;
+
+        int bottomY = mc.world.getBottomY();
+        int topY = mc.world.getTopY() - 1;
+
+        for (int cx = x1 >> 4; cx <= x2 >> 4; cx++) {
+            for (int cz = z1 >> 4; cz <= z2 >> 4; cz++) {
+                WorldChunk chunk = mc.world.getChunk(cx, cz);
+                ChunkSection[] sections = chunk.getSectionArray();
+                boolean loaded = !(chunk instanceof EmptyChunk);
+
+                for (int x = Math.max(x1, cx << 4); x <= Math.min(x2, (cx << 4) + 15); x++) {
+                    for (int z = Math.max(z1, cz << 4); z <= Math.min(z2, (cz << 4) + 15); z++) {
+                        for (int y = y1; y <= y2; y++) {
+                            int id;
+
+                            // Same states World.getBlockState returns outside of the world, in unloaded chunks and empty sections
+                            if (!loaded || y < bottomY || y > topY) id = VOID_AIR;
+                            else {
+                                ChunkSection section = sections[chunk.getSectionIndex(y)];
+                                id = section.isEmpty() ? AIR : Block.getRawIdFromState(section.getBlockState(x & 15, y & 15, z & 15));
+                            }
+
+                            ids[index(x, y, z)] = id;
+                        }
+                    }
+                }
+
+                filledBlocks += (long) (Math.min(x2, (cx << 4) + 15) - Math.max(x1, cx << 4) + 1) * (Math.min(z2, (cz << 4) + 15) - Math.max(z1, cz << 4) + 1) * (y2 - y1 + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+#version 330 core
+
+// Unit cube
+layout (location = 0) in vec3 corner;
+layout (location = 1) in float faces;
+
+// Per box
+layout (location = 2) in vec3 boxMin;
+layout (location = 3) in vec3 boxMax;
+layout (location = 4) in vec4 sideColor;
+layout (location = 5) in vec4 lineColor;
+layout (location = 6) in float exclude;
+
+uniform mat4 u_Proj;
+uniform mat4 u_ModelView;
+uniform bool u_Lines;
+
+out vec4 v_Color;
+
+void main() {
+    // Every vertex of a primitive has the same faces, so moving them all outside of the clip volume discards it
+    if ((int(exclude) & int(faces)) != 0) {
+        gl_Position = vec4(2.0, 2.0, 2.0, 1.0);
+        v_Color = vec4(0.0);
+        return;
+    }
+
+    gl_Position = u_Proj * u_ModelView * vec4(mix(boxMin, boxMax, corner), 1.0);
+
+    v_Color = u_Lines ? lineColor : sideColor;
+}
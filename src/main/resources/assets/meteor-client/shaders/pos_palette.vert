@@ -0,0 +1,18 @@
+#version 330 core
+
+layout (location = 0) in vec4 pos;
+layout (location = 1) in vec4 color;
+
+uniform mat4 u_Proj;
+uniform mat4 u_ModelView;
+uniform sampler2D u_Palette;
+
+out vec4 v_Color;
+
+void main() {
+    gl_Position = u_Proj * u_ModelView * pos;
+
+    // Red and green hold the palette index, blue picks the side or line row
+    int index = int(color.r * 255.0 + 0.5) + int(color.g * 255.0 + 0.5) * 256;
+    v_Color = texelFetch(u_Palette, ivec2(index, color.b > 0.5 ? 1 : 0), 0);
+}
@@ -0,0 +1,16 @@
+#version 330 core
+
+out vec4 color;
+
+uniform sampler2D u_Texture;
+
+in vec2 v_TexCoord;
+in vec4 v_Color;
+
+void main() {
+    // The glyph edge is at 0.5, smoothed over about one screen pixel whatever the text is scaled to
+    float distance = texture(u_Texture, v_TexCoord).r;
+    float width = fwidth(distance) * 0.5;
+
+    color = vec4(1.0, 1.0, 1.0, smoothstep(0.5 - width, 0.5 + width, distance)) * v_Color;
+}